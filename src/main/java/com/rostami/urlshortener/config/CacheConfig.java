@@ -0,0 +1,36 @@
+package com.rostami.urlshortener.config;
+
+import com.rostami.urlshortener.service.cache.UrlCacheInvalidationListener;
+import com.rostami.urlshortener.service.hotkey.HotKeyBroadcastListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.cache", name = "invalidation-enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer urlCacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+                                                                       UrlCacheInvalidationListener listener,
+                                                                       UrlCacheProperties properties) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(listener, new ChannelTopic(properties.getInvalidationChannel()));
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.hot-keys", name = {"enabled", "broadcast-enabled"}, havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer hotKeyBroadcastContainer(RedisConnectionFactory connectionFactory,
+                                                                  HotKeyBroadcastListener listener,
+                                                                  UrlHotKeyProperties properties) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(listener, new ChannelTopic(properties.getBroadcastChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,20 @@
+package com.rostami.urlshortener.config;
+
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Binds the near cache once every singleton exists. Declaring the cache as a MeterBinder would have the
+     * meter registry create it, and with it the redis template, while lettuce is still waiting for that registry.
+     */
+    @Bean
+    public SmartInitializingSingleton urlNearCacheMetricsBinder(MeterRegistry registry, UrlNearCache nearCache) {
+        return () -> nearCache.bindTo(registry);
+    }
+}
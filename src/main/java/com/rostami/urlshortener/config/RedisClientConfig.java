@@ -0,0 +1,18 @@
+package com.rostami.urlshortener.config;
+
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RedisClientConfig {
+
+    @Bean
+    public ClientResourcesBuilderCustomizer redisIoThreadsCustomizer(UrlServerProperties properties) {
+        return builder -> {
+            if (properties.getRedisIoThreads() > 0) {
+                builder.ioThreadPoolSize(properties.getRedisIoThreads());
+            }
+        };
+    }
+}
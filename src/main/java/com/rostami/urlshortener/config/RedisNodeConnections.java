@@ -0,0 +1,98 @@
+package com.rostami.urlshortener.config;
+
+import com.google.common.net.HostAndPort;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.resource.ClientResources;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisConfiguration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat repositories on redis nodes other than the one spring boot connects to: the shards of the sharded
+ * layout and the replicas resolves read from. They share spring boot's client resources, credentials,
+ * database and timeout, and are closed along with the context.
+ */
+public class RedisNodeConnections implements DisposableBean {
+    private static final int DEFAULT_PORT = 6379;
+
+    private final RedisProperties redisProperties;
+    private final ClientResources clientResources;
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+    public RedisNodeConnections(RedisProperties redisProperties, ClientResources clientResources) {
+        this.redisProperties = redisProperties;
+        this.clientResources = clientResources;
+    }
+
+    /**
+     * @param node host:port of a primary
+     */
+    public FlatUrlRepository primary(String node) {
+        HostAndPort hostAndPort = hostAndPort(node);
+        var configuration = new RedisStandaloneConfiguration(hostAndPort.getHost(), hostAndPort.getPort());
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return flatRepository(configuration, ReadFrom.UPSTREAM);
+    }
+
+    /**
+     * @param primary  host:port of the primary
+     * @param replicas host:port of its replicas
+     */
+    public FlatUrlRepository replicas(String primary, List<String> replicas, ReadFrom readFrom) {
+        HostAndPort primaryHostAndPort = hostAndPort(primary);
+        var configuration = new RedisStaticMasterReplicaConfiguration(primaryHostAndPort.getHost(), primaryHostAndPort.getPort());
+        for (String replica : replicas) {
+            HostAndPort hostAndPort = hostAndPort(replica);
+            configuration.node(hostAndPort.getHost(), hostAndPort.getPort());
+        }
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return flatRepository(configuration, readFrom);
+    }
+
+    /**
+     * @param nodes host:port of some of the cluster's nodes
+     */
+    public FlatUrlRepository cluster(List<String> nodes, ReadFrom readFrom) {
+        var configuration = new RedisClusterConfiguration(nodes);
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return flatRepository(configuration, readFrom);
+    }
+
+    @Override
+    public void destroy() {
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    private FlatUrlRepository flatRepository(RedisConfiguration configuration, ReadFrom readFrom) {
+        var clientConfiguration = LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
+                .readFrom(readFrom);
+        if (redisProperties.isSsl()) clientConfiguration.useSsl();
+        if (redisProperties.getTimeout() != null) clientConfiguration.commandTimeout(redisProperties.getTimeout());
+        var connectionFactory = new LettuceConnectionFactory(configuration, clientConfiguration.build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactories.add(connectionFactory);
+        return new FlatUrlRepository(new StringRedisTemplate(connectionFactory), new ReactiveStringRedisTemplate(connectionFactory));
+    }
+
+    private static HostAndPort hostAndPort(String node) {
+        return HostAndPort.fromString(node).withDefaultPort(DEFAULT_PORT);
+    }
+}
@@ -0,0 +1,34 @@
+package com.rostami.urlshortener.config;
+
+import com.rostami.urlshortener.service.code.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+public class ShortCodeConfig {
+
+    @Bean
+    public SequenceAllocator sequenceAllocator(StringRedisTemplate redisTemplate, ShortCodeProperties properties) {
+        return new RedisSequenceAllocator(redisTemplate, properties.getSequenceKey());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.code", name = "generator", havingValue = "hash", matchIfMissing = true)
+    public ShortCodeGenerator hashShortCodeGenerator(ShortCodeProperties properties) {
+        return new HashShortCodeGenerator(properties.getHashLength());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.code", name = "generator", havingValue = "counter")
+    public ShortCodeGenerator counterShortCodeGenerator(SequenceAllocator sequenceAllocator) {
+        return new CounterShortCodeGenerator(sequenceAllocator);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.code", name = "generator", havingValue = "block")
+    public ShortCodeGenerator blockShortCodeGenerator(SequenceAllocator sequenceAllocator, ShortCodeProperties properties) {
+        return new BlockShortCodeGenerator(sequenceAllocator, properties.getBlockSize());
+    }
+}
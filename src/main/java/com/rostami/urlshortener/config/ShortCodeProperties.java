@@ -0,0 +1,35 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.code")
+public class ShortCodeProperties {
+    /**
+     * Code generation strategy: hash, counter or block.
+     */
+    private String generator = "hash";
+
+    /**
+     * Length of the codes produced by the hash generator.
+     */
+    private int hashLength = 7;
+
+    /**
+     * Redis key of the sequence shared by the counter and block generators.
+     */
+    private String sequenceKey = "url-shortener:sequence";
+
+    /**
+     * Number of ids the block generator reserves per round trip.
+     */
+    private long blockSize = 1_000;
+
+    /**
+     * How many codes are tried before a create gives up because every one of them was taken.
+     */
+    private int maxAttempts = 5;
+}
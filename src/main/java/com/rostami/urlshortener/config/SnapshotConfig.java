@@ -0,0 +1,57 @@
+package com.rostami.urlshortener.config;
+
+import com.rostami.urlshortener.service.snapshot.UrlSnapshotService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+import java.io.BufferedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Snapshot export and import on startup. With {@code spring.main.web-application-type=none} the application
+ * exits once they are done, which makes a one-off run a command line tool:
+ * <pre>
+ * java -jar url-shortener.jar --spring.main.web-application-type=none \
+ *     --url-shortener.snapshot.export-to=links.snapshot
+ * </pre>
+ * When both are set the export runs first.
+ */
+@Slf4j
+@Configuration
+public class SnapshotConfig {
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(prefix = "url-shortener.snapshot", name = "export-to")
+    public ApplicationRunner snapshotExport(UrlSnapshotProperties properties, UrlSnapshotService snapshotService) {
+        return args -> {
+            Path path = Path.of(properties.getExportTo());
+            log.info("Exporting short urls to {}", path);
+            long started = System.nanoTime();
+            try (var out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+                long mappings = snapshotService.exportTo(out);
+                log.info("Exported {} short urls in {} s", mappings, (System.nanoTime() - started) / 1_000_000_000);
+            }
+        };
+    }
+
+    @Bean
+    @Order(2)
+    @ConditionalOnProperty(prefix = "url-shortener.snapshot", name = "import-from")
+    public ApplicationRunner snapshotImport(UrlSnapshotProperties properties, UrlSnapshotService snapshotService) {
+        return args -> {
+            Path path = Path.of(properties.getImportFrom());
+            log.info("Importing short urls from {}", path);
+            long started = System.nanoTime();
+            try (var in = Files.newInputStream(path)) {
+                var result = snapshotService.importFrom(in);
+                log.info("Import finished in {} s: {}", (System.nanoTime() - started) / 1_000_000_000, result);
+            }
+        };
+    }
+}
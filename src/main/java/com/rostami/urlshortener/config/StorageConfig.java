@@ -0,0 +1,190 @@
+package com.rostami.urlshortener.config;
+
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import com.rostami.urlshortener.service.storage.BucketedUrlRepository;
+import com.rostami.urlshortener.service.storage.ChangeCapturingUrlRepository;
+import com.rostami.urlshortener.service.storage.FlatLayoutMigrator;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.service.storage.HedgedUrlRepository;
+import com.rostami.urlshortener.service.storage.LocalUrlRepository;
+import com.rostami.urlshortener.service.storage.ReplicaReadingUrlRepository;
+import com.rostami.urlshortener.service.storage.ShardedUrlRepository;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import com.rostami.urlshortener.service.storage.WriteBehindUrlRepository;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.resource.ClientResources;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Slf4j
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public RedisNodeConnections redisNodeConnections(RedisProperties redisProperties, ClientResources clientResources) {
+        return new RedisNodeConnections(redisProperties, clientResources);
+    }
+
+    /**
+     * Also runs on a Redis Cluster (spring.redis.cluster.nodes). Unless read-from is upstream, resolves read
+     * from the cluster's replicas or from the replica-nodes of the standalone primary; with read-from
+     * upstream and hedging enabled, they read from the primary and are hedged to those replicas. With change
+     * capture enabled, creates are also appended to the change stream, see {@link ChangeCapturingUrlRepository}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "layout", havingValue = "flat", matchIfMissing = true)
+    public UrlRepository flatUrlRepository(UrlStorageProperties properties,
+                                           UrlResilienceProperties resilienceProperties,
+                                           UrlChangeProperties changeProperties,
+                                           RedisProperties redisProperties,
+                                           RedisNodeConnections nodeConnections,
+                                           StringRedisTemplate redisTemplate,
+                                           ReactiveStringRedisTemplate reactiveRedisTemplate,
+                                           UrlMetrics metrics) {
+        boolean cluster = redisProperties.getCluster() != null && !redisProperties.getCluster().getNodes().isEmpty();
+        if (changeProperties.isEnabled() && cluster)
+            throw new IllegalStateException("url-shortener.changes.enabled needs a standalone redis:"
+                    + " a short url and the change stream have to be written by one script");
+        var repository = changeProperties.isEnabled()
+                ? new ChangeCapturingUrlRepository(redisTemplate, reactiveRedisTemplate, changeProperties)
+                : new FlatUrlRepository(redisTemplate, reactiveRedisTemplate);
+        ReadFrom readFrom = ReadFrom.valueOf(properties.getReadFrom());
+        if (resilienceProperties.isHedgingEnabled()) {
+            if (!isUpstream(readFrom))
+                throw new IllegalStateException("url-shortener.resilience.hedging-enabled needs url-shortener.storage.read-from=upstream");
+            return new HedgedUrlRepository(repository,
+                    replicas(properties, redisProperties, nodeConnections, ReadFrom.REPLICA), resilienceProperties, metrics);
+        }
+        if (isUpstream(readFrom)) return repository;
+        return new ReplicaReadingUrlRepository(repository, replicas(properties, redisProperties, nodeConnections, readFrom));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "layout", havingValue = "sharded")
+    public ShardedUrlRepository shardedUrlRepository(UrlStorageProperties properties,
+                                                     UrlChangeProperties changeProperties,
+                                                     RedisNodeConnections nodeConnections) {
+        rejectChangeCapture(changeProperties, "sharded");
+        if (properties.getShards().isEmpty())
+            throw new IllegalStateException("The sharded layout needs url-shortener.storage.shards");
+        ReadFrom readFrom = ReadFrom.valueOf(properties.getReadFrom());
+        Map<String, UrlRepository> shards = new LinkedHashMap<>();
+        for (UrlStorageProperties.Shard shard : properties.getShards()) {
+            UrlRepository repository = nodeConnections.primary(shard.getPrimary());
+            if (!isUpstream(readFrom) && !shard.getReplicas().isEmpty())
+                repository = new ReplicaReadingUrlRepository(repository,
+                        nodeConnections.replicas(shard.getPrimary(), shard.getReplicas(), readFrom));
+            if (shards.put(shard.getName(), repository) != null)
+                throw new IllegalStateException("Shard " + shard.getName() + " is listed twice");
+        }
+        log.info("Sharding short urls over {}", shards.keySet());
+        return new ShardedUrlRepository(shards, properties.getShardVirtualNodes(), properties.isShardSuccessorReads());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "layout", havingValue = "bucketed")
+    public UrlRepository bucketedUrlRepository(UrlStorageProperties properties,
+                                               UrlChangeProperties changeProperties,
+                                               StringRedisTemplate redisTemplate,
+                                               ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        rejectChangeCapture(changeProperties, "bucketed");
+        return new BucketedUrlRepository(properties, redisTemplate, reactiveRedisTemplate);
+    }
+
+    /**
+     * Keeps the mappings on this node's disk. Redis is still used by the sequence based code generators,
+     * dedup, click analytics and cache invalidation, so a node without redis also needs
+     * {@code url-shortener.code.generator=hash} and those features disabled.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "layout", havingValue = "local")
+    public UrlRepository localUrlRepository(UrlStorageProperties properties, UrlChangeProperties changeProperties) {
+        rejectChangeCapture(changeProperties, "local");
+        return new LocalUrlRepository(properties);
+    }
+
+    /**
+     * Puts the layout's repository behind a local write-ahead log, see {@link WriteBehindUrlRepository}.
+     * Short urls written to the storage are evicted from the near caches of all nodes, which may have cached
+     * them as missing meanwhile.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "url-shortener.write-behind", name = "enabled", havingValue = "true")
+    public UrlRepository writeBehindUrlRepository(UrlWriteBehindProperties properties,
+                                                  ShortCodeProperties codeProperties,
+                                                  UrlRepository urlRepository,
+                                                  UrlNearCache nearCache,
+                                                  UrlMetrics metrics) {
+        if ("hash".equals(codeProperties.getGenerator()))
+            throw new IllegalStateException("url-shortener.write-behind needs url-shortener.code.generator=counter or block;"
+                    + " hash codes can be taken without this node knowing");
+        return new WriteBehindUrlRepository(properties, urlRepository, metrics, nearCache::invalidateEverywhere);
+    }
+
+    /**
+     * Copies the short urls that moved to another shard, as after adding one, on startup; see
+     * {@link ShardedUrlRepository#rebalance(int, java.time.Duration)}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "rebalance", havingValue = "true")
+    public ApplicationRunner shardRebalance(UrlStorageProperties properties,
+                                            UrlExpiryProperties expiryProperties,
+                                            ShardedUrlRepository shardedUrlRepository) {
+        return args -> {
+            log.info("Rebalancing short urls over the shards");
+            log.info("Rebalance finished: {}",
+                    shardedUrlRepository.rebalance(properties.getRebalanceBatchSize(), expiryProperties.getExpiredRetention()));
+        };
+    }
+
+    /**
+     * Copies the flat mappings into the buckets on startup, see {@link FlatLayoutMigrator}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "url-shortener.storage", name = "migrate", havingValue = "true")
+    public ApplicationRunner flatLayoutMigration(UrlStorageProperties properties,
+                                                 UrlExpiryProperties expiryProperties,
+                                                 StringRedisTemplate redisTemplate,
+                                                 ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        return args -> {
+            var bucketedRepository = new BucketedUrlRepository(properties, redisTemplate, reactiveRedisTemplate);
+            var migrator = new FlatLayoutMigrator(properties, expiryProperties, redisTemplate, bucketedRepository);
+            log.info("Migrating flat short urls into buckets");
+            log.info("Migration finished: {}", migrator.migrate());
+        };
+    }
+
+    private static UrlRepository replicas(UrlStorageProperties properties,
+                                          RedisProperties redisProperties,
+                                          RedisNodeConnections nodeConnections,
+                                          ReadFrom readFrom) {
+        if (redisProperties.getCluster() != null && !redisProperties.getCluster().getNodes().isEmpty())
+            return nodeConnections.cluster(redisProperties.getCluster().getNodes(), readFrom);
+        if (properties.getReplicaNodes().isEmpty())
+            throw new IllegalStateException("Reading from replicas needs spring.redis.cluster.nodes"
+                    + " or url-shortener.storage.replica-nodes");
+        String primary = redisProperties.getHost() + ":" + redisProperties.getPort();
+        return nodeConnections.replicas(primary, properties.getReplicaNodes(), readFrom);
+    }
+
+    private static void rejectChangeCapture(UrlChangeProperties changeProperties, String layout) {
+        if (changeProperties.isEnabled())
+            throw new IllegalStateException("url-shortener.changes.enabled is not supported by the " + layout + " layout");
+    }
+
+    private static boolean isUpstream(ReadFrom readFrom) {
+        return readFrom == ReadFrom.UPSTREAM || readFrom == ReadFrom.MASTER;
+    }
+}
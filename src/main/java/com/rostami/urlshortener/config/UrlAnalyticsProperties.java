@@ -0,0 +1,43 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.analytics")
+public class UrlAnalyticsProperties {
+    /**
+     * Whether resolves are counted as clicks.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the clicks aggregated in memory are flushed to redis.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Upper bound of distinct short urls counted in memory between two flushes; clicks on further short urls
+     * only count towards the total.
+     */
+    private int maxTrackedCodes = 100_000;
+
+    /**
+     * Number of HINCRBY commands sent in one pipeline when flushing.
+     */
+    private int flushChunkSize = 1_000;
+
+    /**
+     * Hash holding the click count of every short url.
+     */
+    private String clicksKey = "url-shortener:clicks";
+
+    /**
+     * Counter holding the clicks of all short urls together.
+     */
+    private String totalClicksKey = "url-shortener:clicks:total";
+}
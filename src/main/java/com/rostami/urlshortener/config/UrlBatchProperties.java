@@ -0,0 +1,25 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.batch")
+public class UrlBatchProperties {
+    /**
+     * Maximum number of urls accepted by a single batch request.
+     */
+    private int maxSize = 100_000;
+
+    /**
+     * Number of mappings claimed per redis pipeline.
+     */
+    private int writeChunkSize = 1_000;
+
+    /**
+     * Number of short urls resolved per MGET.
+     */
+    private int readChunkSize = 1_000;
+}
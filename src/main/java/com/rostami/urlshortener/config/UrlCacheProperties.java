@@ -0,0 +1,42 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.cache")
+public class UrlCacheProperties {
+    /**
+     * Whether resolved urls are kept in the in-process near cache.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Upper bound of entries (hits and misses together) held by the near cache.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * How long a resolved url is served from memory before going back to redis.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long an unknown short url is remembered as missing.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(5);
+
+    /**
+     * Whether invalidations are published to and received from other nodes.
+     */
+    private boolean invalidationEnabled = true;
+
+    /**
+     * Redis pub/sub channel carrying the short urls to evict.
+     */
+    private String invalidationChannel = "url-shortener:cache-invalidation";
+}
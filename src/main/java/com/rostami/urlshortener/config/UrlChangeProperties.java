@@ -0,0 +1,67 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.changes")
+public class UrlChangeProperties {
+    /**
+     * Whether every created short url is appended to the change stream, by the same script that claims it.
+     * Needs the flat layout on a standalone redis.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Stream the create events are appended to.
+     */
+    private String streamKey = "url-shortener:changes";
+
+    /**
+     * Length the stream is trimmed to on every append (approximately, MAXLEN ~). Readers that fall further
+     * behind miss events and have to rescan.
+     */
+    private long maxLength = 1_000_000;
+
+    /**
+     * Whether this node reads the change stream and hands the events to its change listeners.
+     */
+    private boolean readerEnabled = false;
+
+    /**
+     * Consumer group of the readers; readers in one group share the events, every group gets all of them.
+     * A new group starts with the oldest event still in the stream.
+     */
+    private String group = "url-shortener";
+
+    /**
+     * Name of this node's reader within the group; defaults to the process' pid@host. Keep it stable across
+     * restarts, so the events read but not acknowledged before one are read again.
+     */
+    private String consumer = "";
+
+    /**
+     * Upper bound of events read with one XREADGROUP and handed to the listeners at once.
+     */
+    private int readBatchSize = 500;
+
+    /**
+     * How long one XREADGROUP waits for new events.
+     */
+    private Duration readBlock = Duration.ofSeconds(2);
+
+    /**
+     * How long the reader waits before reading a batch again that the listeners failed to take.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    /**
+     * Number of times a batch is handed to the listeners before it is acknowledged anyway and counted as
+     * dropped.
+     */
+    private int maxAttempts = 10;
+}
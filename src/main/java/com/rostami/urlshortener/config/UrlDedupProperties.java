@@ -0,0 +1,30 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.dedup")
+public class UrlDedupProperties {
+    /**
+     * Whether creates of an already shortened url return the existing short url instead of writing again.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Prefix of the reverse index keys, mapping a digest of the original url to its short url.
+     */
+    private String reverseKeyPrefix = "url-shortener:reverse:";
+
+    /**
+     * Number of urls one bloom filter generation is sized for before it is rotated out.
+     */
+    private long expectedInsertions = 1_000_000;
+
+    /**
+     * Target false positive probability of the bloom filter.
+     */
+    private double falsePositiveProbability = 0.01;
+}
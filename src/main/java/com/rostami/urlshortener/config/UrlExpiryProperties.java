@@ -0,0 +1,18 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.expiry")
+public class UrlExpiryProperties {
+    /**
+     * How long an expired short url is kept in redis after its deadline, so resolves can tell it expired
+     * rather than never existed; redis drops the key afterwards.
+     */
+    private Duration expiredRetention = Duration.ofDays(1);
+}
@@ -0,0 +1,72 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.hot-keys")
+public class UrlHotKeyProperties {
+    /**
+     * Whether heavily resolved short urls are detected and pinned in memory.
+     */
+    private boolean enabled = true;
+
+    /**
+     * One in this many resolves is counted; hot short urls stand out all the same, at a fraction of the cost.
+     */
+    private int sampleRate = 16;
+
+    /**
+     * Counters per row of the Count-Min sketch; the wider, the fewer cold short urls look hot.
+     */
+    private int sketchWidth = 1 << 16;
+
+    /**
+     * Rows of the Count-Min sketch.
+     */
+    private int sketchDepth = 4;
+
+    /**
+     * Number of the most resolved short urls considered at the end of every detection interval.
+     */
+    private int topK = 64;
+
+    /**
+     * Resolves per second on this node from which a short url is hot.
+     */
+    private long threshold = 500;
+
+    /**
+     * How often hot short urls are detected; the sketch is cleared after each interval.
+     */
+    private Duration detectionInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long a short url stays pinned after it was last seen hot, here or on another node.
+     */
+    private Duration pinDuration = Duration.ofMinutes(1);
+
+    /**
+     * How often the pinned short urls are read again from the storage, in one batch.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(5);
+
+    /**
+     * Upper bound of pinned short urls, including the ones other nodes found hot.
+     */
+    private int maxPinned = 1_000;
+
+    /**
+     * Whether every node publishes its hot short urls, so the others pin them too.
+     */
+    private boolean broadcastEnabled = true;
+
+    /**
+     * Redis pub/sub channel carrying the hot short urls.
+     */
+    private String broadcastChannel = "url-shortener:hot-keys";
+}
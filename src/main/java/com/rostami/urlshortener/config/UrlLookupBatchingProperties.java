@@ -0,0 +1,32 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.lookup-batching")
+public class UrlLookupBatchingProperties {
+    /**
+     * Whether concurrent resolves that miss the near cache are sent to the storage together, as one batch.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Upper bound of short urls per batch.
+     */
+    private int maxBatchSize = 128;
+
+    /**
+     * Longest a resolve waits for others to join its batch; the price every batched resolve may pay in latency.
+     */
+    private Duration maxWait = Duration.ofNanos(200_000);
+
+    /**
+     * Number of batches sent to the storage at the same time.
+     */
+    private int concurrency = 4;
+}
@@ -0,0 +1,15 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.lookup-coalescing")
+public class UrlLookupCoalescingProperties {
+    /**
+     * Whether concurrent lookups of the same short url share one storage lookup.
+     */
+    private boolean enabled = true;
+}
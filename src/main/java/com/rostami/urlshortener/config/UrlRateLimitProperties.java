@@ -0,0 +1,70 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.rate-limit")
+public class UrlRateLimitProperties {
+    /**
+     * Whether short url creation is rate limited per client.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Short urls a client may create per {@code period}, across all nodes.
+     */
+    private long limit = 100;
+
+    /**
+     * Window of the shared limit; the local buckets refill at {@code limit} per period.
+     */
+    private Duration period = Duration.ofMinutes(1);
+
+    /**
+     * Short urls a client may create at once on one node before being held to the refill rate.
+     */
+    private long burst = 20;
+
+    /**
+     * Short urls a client may import with batches per {@code period}, across all nodes; batches have a
+     * budget of their own, apart from {@code limit}.
+     */
+    private long batchLimit = 1_000_000;
+
+    /**
+     * Short urls a client may import at once on one node; also the largest batch a client can import with
+     * one request, so keep it at least at {@code url-shortener.batch.max-size}.
+     */
+    private long batchBurst = 100_000;
+
+    /**
+     * Clients tracked per node; the least recently seen are forgotten beyond that.
+     */
+    private long maxTrackedClients = 100_000;
+
+    /**
+     * How often the local consumption is added to the shared budget in redis.
+     */
+    private Duration syncInterval = Duration.ofSeconds(1);
+
+    /**
+     * Number of clients synced per pipelined round trip.
+     */
+    private int syncChunkSize = 1_000;
+
+    /**
+     * Prefix of the shared budget keys, followed by the window and the client.
+     */
+    private String keyPrefix = "url-shortener:rate-limit:";
+
+    /**
+     * Whether the client is taken from the first X-Forwarded-For address rather than the remote address.
+     * Only enable it behind a proxy that sets the header, as clients could pick their identity otherwise.
+     */
+    private boolean trustForwardedFor = false;
+}
@@ -0,0 +1,20 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.redirect")
+public class UrlRedirectProperties {
+    /**
+     * Answer with 301 instead of 302. Browsers cache permanent redirects, so later resolves may never reach us.
+     */
+    private boolean permanent = false;
+
+    /**
+     * Cache-Control header sent along with the redirect, left out when empty.
+     */
+    private String cacheControl = "private, max-age=90";
+}
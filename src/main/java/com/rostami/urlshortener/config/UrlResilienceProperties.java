@@ -0,0 +1,78 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.resilience")
+public class UrlResilienceProperties {
+    /**
+     * Whether storage lookups of resolves are bounded by the budget and guarded by the circuit breaker.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Longest a resolve waits for the storage before it is answered from the stale copy, or fails.
+     */
+    private Duration budget = Duration.ofMillis(50);
+
+    /**
+     * Number of storage lookups in flight at most; resolves beyond it are answered as if over budget.
+     */
+    private int lookupThreads = 64;
+
+    /**
+     * Number of recently resolved mappings kept to answer with while the storage is slow or failing.
+     */
+    private long staleMaximumSize = 100_000;
+
+    /**
+     * How long a resolved mapping is kept in the stale copy.
+     */
+    private Duration staleTtl = Duration.ofHours(1);
+
+    /**
+     * Number of most recent lookups the circuit breaker judges the storage by.
+     */
+    private int breakerWindow = 100;
+
+    /**
+     * Number of lookups the breaker needs to have seen before it may open.
+     */
+    private int breakerMinimumCalls = 20;
+
+    /**
+     * Share of failed or over budget lookups in the window at which the breaker opens.
+     */
+    private double breakerFailureRatio = 0.5;
+
+    /**
+     * How long an open breaker keeps lookups away from the storage before letting a trial one through.
+     */
+    private Duration breakerOpenDuration = Duration.ofSeconds(5);
+
+    /**
+     * Whether a lookup that is slower than usual is also sent to a replica, the first answer winning. Needs
+     * read-from=upstream and replicas (replica-nodes or a cluster).
+     */
+    private boolean hedgingEnabled = false;
+
+    /**
+     * Percentile of the recent primary latencies after which a lookup is hedged.
+     */
+    private double hedgePercentile = 0.95;
+
+    /**
+     * Lower bound of the hedge delay, so a fast storage isn't hedged on noise.
+     */
+    private Duration hedgeMinDelay = Duration.ofMillis(1);
+
+    /**
+     * Upper bound of the hedge delay, also used until enough latencies are known.
+     */
+    private Duration hedgeMaxDelay = Duration.ofMillis(20);
+}
@@ -0,0 +1,25 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.server")
+public class UrlServerProperties {
+    /**
+     * Threads that run servlet requests: {@code platform} keeps Tomcat's bounded pool
+     * ({@code server.tomcat.threads.max}), {@code virtual} runs every request on its own virtual thread,
+     * so a request blocked on redis no longer holds one of a few hundred pool threads.
+     * Virtual threads need Java 21; startup fails on an older runtime rather than silently falling back.
+     */
+    private String threads = "platform";
+
+    /**
+     * Lettuce event loop threads that write commands to and read replies from redis; 0 keeps lettuce's default
+     * of one per core. Request threads share one multiplexed connection instead of borrowing from a pool,
+     * so moving to virtual threads needs no pool, only enough io threads to keep up with the pipelined replies.
+     */
+    private int redisIoThreads = 0;
+}
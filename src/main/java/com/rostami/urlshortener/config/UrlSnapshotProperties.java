@@ -0,0 +1,35 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.snapshot")
+public class UrlSnapshotProperties {
+    /**
+     * File the mappings are exported to on startup; no export when unset.
+     */
+    private String exportTo;
+
+    /**
+     * Snapshot file imported on startup; no import when unset.
+     */
+    private String importFrom;
+
+    /**
+     * Number of mappings per SCAN batch on export and per snapshot block.
+     */
+    private int batchSize = 1_000;
+
+    /**
+     * Number of blocks written to the storage at once while importing.
+     */
+    private int importParallelism = 4;
+
+    /**
+     * Mappings imported per second at most, to spare the storage's other clients; 0 for no limit.
+     */
+    private double importRate = 0;
+}
@@ -0,0 +1,159 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.storage")
+public class UrlStorageProperties {
+    /**
+     * Layout of the mappings: flat (one redis string key per short url), bucketed (short urls spread over
+     * small redis hashes), local (a memory mapped log on this node's disk, no redis) or sharded (flat, over
+     * the redis instances listed in shards).
+     */
+    private String layout = "flat";
+
+    /**
+     * Prefix of the hash keys used by the bucketed layout.
+     */
+    private String bucketKeyPrefix = "url-shortener:bucket:";
+
+    /**
+     * Number of hashes of the bucketed layout. Size it to about a hundredth of the expected number of short
+     * urls, so every hash stays within redis' hash-max-listpack-entries (128 by default) and keeps its
+     * compact encoding.
+     */
+    private int buckets = 1 << 20;
+
+    /**
+     * Whether long urls are deflated in the bucketed layout. Values longer than redis'
+     * hash-max-listpack-value (64 bytes by default) turn a hash into a regular hash table, so either raise
+     * that limit or let compression keep the values under it.
+     */
+    private boolean compressionEnabled = false;
+
+    /**
+     * Length in bytes from which urls are compressed; shorter ones rarely shrink.
+     */
+    private int compressionThreshold = 64;
+
+    /**
+     * Sorted set of the expiring short urls of the bucketed layout, scored by the time they are removed.
+     */
+    private String expiryIndexKey = "url-shortener:bucket-expiry";
+
+    /**
+     * How often expired short urls are removed from the buckets.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    /**
+     * Number of expired short urls removed per round trip.
+     */
+    private int sweepBatchSize = 1_000;
+
+    /**
+     * Whether the flat mappings are copied into the buckets on startup.
+     */
+    private boolean migrate = false;
+
+    /**
+     * Number of keys asked for per SCAN while migrating.
+     */
+    private int migrationScanCount = 1_000;
+
+    /**
+     * Whether the flat keys are deleted once copied into the buckets.
+     */
+    private boolean migrationDeleteFlat = false;
+
+    /**
+     * Directory of the local layout's log.
+     */
+    private String localDirectory = "data";
+
+    /**
+     * Initial number of slots of the local layout's index, eight bytes each; it doubles whenever it is 70% full.
+     */
+    private int localIndexCapacity = 1 << 20;
+
+    /**
+     * How often the local layout's appends are written through to the disk.
+     */
+    private Duration localSyncInterval = Duration.ofSeconds(1);
+
+    /**
+     * How often the local layout checks whether its log needs compacting.
+     */
+    private Duration localCompactionInterval = Duration.ofMinutes(10);
+
+    /**
+     * Share of the local layout's log taken by expired and superseded records from which it is compacted.
+     */
+    private double localCompactionGarbageRatio = 0.5;
+
+    /**
+     * Where the flat and sharded layouts resolve from, as a lettuce ReadFrom name: upstream (the primary),
+     * replicaPreferred, replica, nearest or any. Anything but upstream reads from the replicas of
+     * spring.redis.cluster.nodes, of replica-nodes or of the shards, and falls back to the primary on a miss.
+     */
+    private String readFrom = "upstream";
+
+    /**
+     * Replicas, as host:port, of the redis instance spring.redis.host and port point to; resolves read from
+     * them unless read-from is upstream.
+     */
+    private List<String> replicaNodes = new ArrayList<>();
+
+    /**
+     * Redis instances of the sharded layout. Only the mappings are sharded; the code generators, dedup, click
+     * analytics, rate limits and cache invalidation keep using spring.redis.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Points every shard takes on the hash ring; more spread the short urls more evenly over the shards.
+     */
+    private int shardVirtualNodes = 160;
+
+    /**
+     * Whether short urls missing on their shard are also looked up on the shard that had them before the
+     * last shard was added. Turn on when adding a shard and off once rebalancing finished.
+     */
+    private boolean shardSuccessorReads = false;
+
+    /**
+     * Whether short urls are copied to the shard they belong to on startup, for after adding a shard.
+     */
+    private boolean rebalance = false;
+
+    /**
+     * Number of short urls scanned per batch while rebalancing.
+     */
+    private int rebalanceBatchSize = 1_000;
+
+    @Getter
+    @Setter
+    public static class Shard {
+        /**
+         * Places the shard on the hash ring, so keep it when the shard moves to another address.
+         */
+        private String name;
+
+        /**
+         * Primary as host:port.
+         */
+        private String primary;
+
+        /**
+         * Replicas as host:port, read from unless read-from is upstream.
+         */
+        private List<String> replicas = new ArrayList<>();
+    }
+}
@@ -0,0 +1,44 @@
+package com.rostami.urlshortener.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "url-shortener.write-behind")
+public class UrlWriteBehindProperties {
+    /**
+     * Whether creates are acknowledged once they are in the local write-ahead log and written to the storage
+     * afterwards. Needs a generator that never hands out a taken code: counter or block.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory of the write-ahead log segments. Keep it on a local disk; it must survive a restart.
+     */
+    private String directory = "wal";
+
+    /**
+     * Upper bound of creates made durable by one sync of the log.
+     */
+    private int maxCommitSize = 1_024;
+
+    /**
+     * How often the logged creates are written to the storage.
+     */
+    private Duration drainInterval = Duration.ofMillis(100);
+
+    /**
+     * Number of creates written to the storage per pipeline.
+     */
+    private int drainBatchSize = 1_000;
+
+    /**
+     * Number of creates waiting for the storage from which new ones are written to it directly, until the
+     * backlog has drained.
+     */
+    private int maxPending = 1_000_000;
+}
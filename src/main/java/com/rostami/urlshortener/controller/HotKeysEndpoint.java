@@ -0,0 +1,35 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.service.hotkey.HotKeyTracker;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Actuator endpoint ({@code /actuator/hotkeys}) showing this node's most resolved short urls of the last
+ * detection interval and the short urls it has pinned in memory.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+@RequiredArgsConstructor
+public class HotKeysEndpoint {
+    private final HotKeyTracker hotKeyTracker;
+
+    @ReadOperation
+    public HotKeys hotKeys() {
+        return new HotKeys(hotKeyTracker.topKeys(), hotKeyTracker.pinnedKeys());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class HotKeys {
+        private final List<HotKeyTracker.HotKey> top;
+        private final Set<String> pinned;
+    }
+}
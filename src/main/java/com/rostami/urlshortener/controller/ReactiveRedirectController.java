@@ -0,0 +1,39 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.config.UrlRedirectProperties;
+import com.rostami.urlshortener.service.ReactiveUrlService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux counterpart of {@link RedirectController}.
+ */
+@Controller
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRedirectController {
+    private final ReactiveUrlService urlService;
+    private final UrlRedirectProperties redirectProperties;
+
+    @GetMapping("/{shortUrl}")
+    public Mono<Void> redirect(@PathVariable String shortUrl, ServerHttpResponse response){
+        return urlService.resolveOriginalUrl(shortUrl)
+                .flatMap(originalUrl -> {
+                    response.setStatusCode(redirectProperties.isPermanent()
+                            ? HttpStatus.MOVED_PERMANENTLY
+                            : HttpStatus.FOUND);
+                    HttpHeaders headers = response.getHeaders();
+                    headers.set(HttpHeaders.LOCATION, originalUrl);
+                    if (!redirectProperties.getCacheControl().isEmpty())
+                        headers.set(HttpHeaders.CACHE_CONTROL, redirectProperties.getCacheControl());
+                    return response.setComplete();
+                });
+    }
+}
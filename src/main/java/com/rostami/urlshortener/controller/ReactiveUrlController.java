@@ -0,0 +1,58 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.dto.api.ResponseResult;
+import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import com.rostami.urlshortener.dto.out.UrlClicksResult;
+import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.service.ReactiveUrlService;
+import com.rostami.urlshortener.service.ratelimit.CreateRateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.net.InetSocketAddress;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/urlShortenerService")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlController {
+    private final ReactiveUrlService urlService;
+    private final CreateRateLimiter rateLimiter;
+
+    @PostMapping("/generateShortUrl")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<ResponseResult<String>> generateShortUrl(@Valid @RequestBody UrlCreateParam urlCreateParam,
+                                                         ServerHttpRequest request){
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        rateLimiter.acquire(remoteAddress != null ? remoteAddress.getHostString() : "unknown",
+                request.getHeaders().getFirst("X-Forwarded-For"), 1);
+        return urlService.generateShortUrl(urlCreateParam.getOriginalUrl(), urlCreateParam.getExpiresAt())
+                .map(result -> ResponseResult.<String>builder()
+                        .message("Successfully Created Short Url")
+                        .data(result.getData())
+                        .build());
+    }
+
+    @GetMapping("/loadOriginalUrl/{shortUrl}")
+    public Mono<ResponseResult<UrlFindResult>> loadOriginalUrl(@PathVariable String shortUrl){
+        return urlService.loadOriginalUrl(shortUrl)
+                .map(urlFindResult -> ResponseResult.<UrlFindResult>builder()
+                        .data(urlFindResult)
+                        .message("Successfully Load Original Url Of Short URL")
+                        .build());
+    }
+
+    @GetMapping("/loadClicks/{shortUrl}")
+    public Mono<ResponseResult<UrlClicksResult>> loadClicks(@PathVariable String shortUrl){
+        return urlService.loadClicks(shortUrl)
+                .map(urlClicksResult -> ResponseResult.<UrlClicksResult>builder()
+                        .data(urlClicksResult)
+                        .message("Successfully Load Clicks Of Short URL")
+                        .build());
+    }
+}
@@ -0,0 +1,36 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.config.UrlRedirectProperties;
+import com.rostami.urlshortener.service.UrlService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Browser facing redirect route. Writes status and headers straight to the servlet response, so neither a
+ * result object nor a message converter is involved on the hot path.
+ */
+@Controller
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RedirectController {
+    private final UrlService urlService;
+    private final UrlRedirectProperties redirectProperties;
+
+    @GetMapping("/{shortUrl}")
+    public void redirect(@PathVariable String shortUrl, HttpServletResponse response){
+        String originalUrl = urlService.resolveOriginalUrl(shortUrl);
+        response.setStatus(redirectProperties.isPermanent()
+                ? HttpStatus.MOVED_PERMANENTLY.value()
+                : HttpStatus.FOUND.value());
+        response.setHeader(HttpHeaders.LOCATION, originalUrl);
+        if (!redirectProperties.getCacheControl().isEmpty())
+            response.setHeader(HttpHeaders.CACHE_CONTROL, redirectProperties.getCacheControl());
+    }
+}
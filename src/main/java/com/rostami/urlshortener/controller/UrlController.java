@@ -1,32 +1,101 @@
 package com.rostami.urlshortener.controller;
 
+import com.rostami.urlshortener.config.UrlBatchProperties;
+import com.rostami.urlshortener.controller.api.errors.api.ApiValidationError;
 import com.rostami.urlshortener.dto.api.ResponseResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import com.rostami.urlshortener.dto.out.UrlBatchFindResult;
+import com.rostami.urlshortener.dto.out.UrlClicksResult;
 import com.rostami.urlshortener.dto.out.UrlCreateResult;
 import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
 import com.rostami.urlshortener.service.UrlService;
+import com.rostami.urlshortener.service.ratelimit.CreateRateLimiter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.BATCH_TOO_LARGE_MESSAGE;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/urlShortenerService")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UrlController {
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
     private final UrlService urlService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CreateRateLimiter rateLimiter;
+    private final UrlBatchProperties batchProperties;
 
     @PostMapping("/generateShortUrl")
-    public ResponseEntity<ResponseResult<String>> generateShortUrl(@Valid @RequestBody UrlCreateParam urlCreateParam){
-        UrlCreateResult<String> result = urlService.generateShortUrl(urlCreateParam.getOriginalUrl());
+    public ResponseEntity<ResponseResult<String>> generateShortUrl(@Valid @RequestBody UrlCreateParam urlCreateParam,
+                                                                   HttpServletRequest request){
+        rateLimiter.acquire(request.getRemoteAddr(), request.getHeader(FORWARDED_FOR), 1);
+        UrlCreateResult<String> result = urlService.generateShortUrl(urlCreateParam.getOriginalUrl(), urlCreateParam.getExpiresAt());
         return ResponseEntity.status(HttpStatus.CREATED).body(ResponseResult.<String>builder()
                 .message("Successfully Created Short Url")
                 .data(result.getData())
                 .build());
     }
 
+    /**
+     * Validates every entry on its own; invalid entries are reported with their validation errors while
+     * the valid ones are still created in one batch. Entries with an expiry are created one by one after
+     * that, and one that can't be created is reported in its own result. Every valid entry counts towards
+     * the client's batch rate limit, which is apart from the one of single creates; the client is charged
+     * once all entries are validated.
+     */
+    @PostMapping("/generateShortUrls")
+    public ResponseEntity<ResponseResult<List<UrlCreateResult<?>>>> generateShortUrls(@RequestBody List<UrlCreateParam> urlCreateParams,
+                                                                                       HttpServletRequest request){
+        if (urlCreateParams.size() > batchProperties.getMaxSize())
+            throw new IllegalArgumentException(String.format(BATCH_TOO_LARGE_MESSAGE, batchProperties.getMaxSize()));
+        List<UrlCreateResult<?>> results = new ArrayList<>(urlCreateParams.size());
+        List<Integer> validIndexes = new ArrayList<>();
+        List<String> validUrls = new ArrayList<>();
+        List<Integer> expiringIndexes = new ArrayList<>();
+        for (int i = 0; i < urlCreateParams.size(); i++) {
+            List<ApiValidationError> errors = validate(urlCreateParams.get(i));
+            results.add(errors.isEmpty() ? null : failed(errors));
+            if (!errors.isEmpty()) continue;
+            if (urlCreateParams.get(i).getExpiresAt() != null) {
+                expiringIndexes.add(i);
+            } else {
+                validIndexes.add(i);
+                validUrls.add(urlCreateParams.get(i).getOriginalUrl());
+            }
+        }
+        int valid = validUrls.size() + expiringIndexes.size();
+        if (valid > 0) rateLimiter.acquireBatch(request.getRemoteAddr(), request.getHeader(FORWARDED_FOR), valid);
+        List<UrlCreateResult<String>> created = urlService.generateShortUrls(validUrls);
+        for (int i = 0; i < created.size(); i++)
+            results.set(validIndexes.get(i), created.get(i));
+        for (int i : expiringIndexes)
+            results.set(i, generateExpiringShortUrl(urlCreateParams.get(i)));
+        return ResponseEntity.status(HttpStatus.CREATED).body(ResponseResult.<List<UrlCreateResult<?>>>builder()
+                .message("Successfully Created Short Urls")
+                .data(results)
+                .build());
+    }
+
     @GetMapping("/loadOriginalUrl/{shortUrl}")
     public ResponseEntity<ResponseResult<UrlFindResult>> loadOriginalUrl(@PathVariable String shortUrl){
         UrlFindResult urlFindResult = urlService.loadOriginalUrl(shortUrl);
@@ -35,4 +104,78 @@ public class UrlController {
                 .message("Successfully Load Original Url Of Short URL")
                 .build());
     }
+
+    /**
+     * Click count of a short url; clicks are flushed in the background, so it may lag by a flush interval
+     * for clicks served by other nodes.
+     */
+    @GetMapping("/loadClicks/{shortUrl}")
+    public ResponseEntity<ResponseResult<UrlClicksResult>> loadClicks(@PathVariable String shortUrl){
+        UrlClicksResult urlClicksResult = urlService.loadClicks(shortUrl);
+        return ResponseEntity.ok(ResponseResult.<UrlClicksResult>builder()
+                .data(urlClicksResult)
+                .message("Successfully Load Clicks Of Short URL")
+                .build());
+    }
+
+    /**
+     * Resolves many short urls at once. The body is streamed as the chunks are resolved, so the response
+     * is never held in memory as a whole; unknown short urls come back with {@code found = false}.
+     */
+    @PostMapping("/loadOriginalUrls")
+    public ResponseEntity<StreamingResponseBody> loadOriginalUrls(@RequestBody List<String> shortUrls){
+        Stream<UrlBatchFindResult> results = urlService.loadOriginalUrls(shortUrls);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+                 results) {
+                generator.writeStartObject();
+                generator.writeStringField("message", "Successfully Load Original Urls Of Short URLs");
+                generator.writeArrayFieldStart("data");
+                for (var iterator = results.iterator(); iterator.hasNext(); )
+                    generator.writeObject(iterator.next());
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Creates one entry of a batch; an expiry that has passed meanwhile or a conflict only fails the entry.
+     */
+    private UrlCreateResult<?> generateExpiringShortUrl(UrlCreateParam urlCreateParam) {
+        try {
+            return urlService.generateShortUrl(urlCreateParam.getOriginalUrl(), urlCreateParam.getExpiresAt());
+        } catch (IllegalArgumentException ex) {
+            return failed(List.of(new ApiValidationError(UrlCreateParam.class.getSimpleName(), "expiresAt",
+                    urlCreateParam.getExpiresAt(), ex.getMessage())));
+        } catch (ShortUrlConflictException ex) {
+            return failed(List.of(new ApiValidationError(UrlCreateParam.class.getSimpleName(), "originalUrl",
+                    urlCreateParam.getOriginalUrl(), ex.getMessage())));
+        }
+    }
+
+    private static UrlCreateResult<List<ApiValidationError>> failed(List<ApiValidationError> errors) {
+        return UrlCreateResult.<List<ApiValidationError>>builder()
+                .success(false)
+                .data(errors)
+                .build();
+    }
+
+    private List<ApiValidationError> validate(UrlCreateParam urlCreateParam) {
+        List<ApiValidationError> errors = new ArrayList<>();
+        if (urlCreateParam == null) {
+            errors.add(new ApiValidationError(UrlCreateParam.class.getSimpleName(), null, null, "must not be null"));
+            return errors;
+        }
+        Set<ConstraintViolation<UrlCreateParam>> violations = validator.validate(urlCreateParam);
+        violations.forEach(cv -> errors.add(new ApiValidationError(
+                UrlCreateParam.class.getSimpleName(),
+                cv.getPropertyPath().toString(),
+                cv.getInvalidValue(),
+                cv.getMessage())));
+        return errors;
+    }
 }
@@ -0,0 +1,68 @@
+package com.rostami.urlshortener.controller.api.errors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rostami.urlshortener.controller.api.core.ServiceResult;
+import com.rostami.urlshortener.controller.api.errors.api.ApiError;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized error bodies for the domain errors that scans and crawlers trigger in floods, such as unknown
+ * short urls. Such a body only differs from the previous one by its timestamp, which has a resolution of a
+ * second, so it is serialized once per second and message and the bytes are shared by every response of that
+ * second. Only meant for errors with a fixed message, as every distinct message keeps a body.
+ */
+public class PrecomputedErrorBodies {
+    private static final HttpHeaders JSON_HEADERS;
+
+    static {
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        JSON_HEADERS = HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Body> bodies = new ConcurrentHashMap<>();
+
+    public PrecomputedErrorBodies(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public ResponseEntity<byte[]> response(HttpStatus status, String message) {
+        long second = System.currentTimeMillis() / 1000;
+        Body body = bodies.get(message);
+        if (body == null || body.second != second || body.status != status) {
+            body = new Body(status, second, serialize(status, message));
+            bodies.put(message, body);
+        }
+        return new ResponseEntity<>(body.json, JSON_HEADERS, status);
+    }
+
+    private byte[] serialize(HttpStatus status, String message) {
+        var apiError = new ApiError(status);
+        apiError.setMessage(message);
+        try {
+            return objectMapper.writeValueAsBytes(ServiceResult.fail(apiError));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize the error body of " + status, ex);
+        }
+    }
+
+    private static final class Body {
+        private final HttpStatus status;
+        private final long second;
+        private final byte[] json;
+
+        private Body(HttpStatus status, long second, byte[] json) {
+            this.status = status;
+            this.second = second;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.rostami.urlshortener.controller.api.errors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rostami.urlshortener.controller.api.core.ServiceResult;
+import com.rostami.urlshortener.controller.api.errors.api.ApiError;
+import com.rostami.urlshortener.exception.NullUrlException;
+import com.rostami.urlshortener.exception.RateLimitExceededException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.StorageUnavailableException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
+import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.STORAGE_UNAVAILABLE_MESSAGE;
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * WebFlux counterpart of {@link RestExceptionHandler}, producing the same error bodies.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRestExceptionHandler {
+    private final UrlMetrics metrics;
+    private final PrecomputedErrorBodies errorBodies;
+
+    public ReactiveRestExceptionHandler(UrlMetrics metrics, ObjectMapper objectMapper) {
+        this.metrics = metrics;
+        this.errorBodies = new PrecomputedErrorBodies(objectMapper);
+    }
+
+    // ---------------------- CUSTOM Exception Handling -------------------------------------------
+
+    @ExceptionHandler(UrlNotFoundException.class)
+    protected ResponseEntity<byte[]> handleUrlnotFound(
+            UrlNotFoundException ex) {
+        metrics.error(ex);
+        return errorBodies.response(NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(UrlExpiredException.class)
+    protected ResponseEntity<byte[]> handleUrlExpired(
+            UrlExpiredException ex) {
+        metrics.error(ex);
+        return errorBodies.response(GONE, ex.getMessage());
+    }
+
+    @ExceptionHandler(NullUrlException.class)
+    protected ResponseEntity<byte[]> handleNullUrl(
+            NullUrlException ex) {
+        metrics.error(ex);
+        return errorBodies.response(NOT_FOUND, ex.getMessage());
+    }
+
+    /**
+     * A storage that can't be reached, or doesn't answer in time, is not a missing short url.
+     */
+    @ExceptionHandler({StorageUnavailableException.class, DataAccessResourceFailureException.class, QueryTimeoutException.class})
+    protected ResponseEntity<byte[]> handleStorageUnavailable(
+            RuntimeException ex) {
+        metrics.error(ex);
+        return errorBodies.response(SERVICE_UNAVAILABLE, STORAGE_UNAVAILABLE_MESSAGE);
+    }
+
+    @ExceptionHandler(ShortUrlConflictException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleShortUrlConflict(
+            ShortUrlConflictException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(CONFLICT);
+        apiError.setMessage(ex.getMessage());
+        return buildResponseEntity(apiError);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleRateLimitExceeded(
+            RateLimitExceededException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(TOO_MANY_REQUESTS);
+        apiError.setMessage(ex.getMessage());
+        return ResponseEntity.status(apiError.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ServiceResult.fail(apiError));
+    }
+
+    @ExceptionHandler(Exception.class)
+    protected ResponseEntity<ServiceResult<Void>> finalHandlingIfExceptionHandlingWasNotFound(
+            Exception ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(NOT_FOUND);
+        apiError.setMessage(ex.getMessage());
+        return buildResponseEntity(apiError);
+    }
+
+
+    // ---------------------- Default Exception Handling -------------------------------------------
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleBadRequest(
+            IllegalArgumentException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(BAD_REQUEST);
+        apiError.setMessage(ex.getMessage());
+        return buildResponseEntity(apiError);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleBindException(
+            WebExchangeBindException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(BAD_REQUEST);
+        apiError.setMessage("Validation error");
+        apiError.addValidationErrors(ex.getBindingResult().getFieldErrors());
+        apiError.addValidationError(ex.getBindingResult().getGlobalErrors());
+        return buildResponseEntity(apiError);
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleServerWebInput(
+            ServerWebInputException ex) {
+        metrics.error(ex);
+        return buildResponseEntity(new ApiError(BAD_REQUEST, "Malformed JSON request", ex));
+    }
+
+
+    // --------------------------- Util Functions ---------------------------------------
+
+    private ResponseEntity<ServiceResult<Void>> buildResponseEntity(ApiError apiError) {
+        var serviceResult = ServiceResult.fail(apiError);
+        return new ResponseEntity<>(serviceResult, apiError.getStatus());
+    }
+}
@@ -1,12 +1,21 @@
 package com.rostami.urlshortener.controller.api.errors;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rostami.urlshortener.controller.api.core.ServiceResult;
 import com.rostami.urlshortener.controller.api.errors.api.ApiError;
 import com.rostami.urlshortener.exception.NullUrlException;
+import com.rostami.urlshortener.exception.RateLimitExceededException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.StorageUnavailableException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
 import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,33 +35,79 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 import javax.annotation.Nonnull;
 import java.util.Objects;
 
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.STORAGE_UNAVAILABLE_MESSAGE;
 import static org.springframework.http.HttpStatus.*;
 
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 public class RestExceptionHandler extends ResponseEntityExceptionHandler {
+    private final UrlMetrics metrics;
+    private final PrecomputedErrorBodies errorBodies;
+
+    public RestExceptionHandler(UrlMetrics metrics, ObjectMapper objectMapper) {
+        this.metrics = metrics;
+        this.errorBodies = new PrecomputedErrorBodies(objectMapper);
+    }
+
     // ---------------------- CUSTOM Exception Handling -------------------------------------------
 
     @ExceptionHandler(UrlNotFoundException.class)
-    protected ResponseEntity<ServiceResult<Void>> handleUrlnotFound(
+    protected ResponseEntity<byte[]> handleUrlnotFound(
             UrlNotFoundException ex) {
-        var apiError = new ApiError(NOT_FOUND);
-        apiError.setMessage(ex.getMessage());
-        return buildResponseEntity(apiError);
+        metrics.error(ex);
+        return errorBodies.response(NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(UrlExpiredException.class)
+    protected ResponseEntity<byte[]> handleUrlExpired(
+            UrlExpiredException ex) {
+        metrics.error(ex);
+        return errorBodies.response(GONE, ex.getMessage());
     }
 
     @ExceptionHandler(NullUrlException.class)
-    protected ResponseEntity<ServiceResult<Void>> handleNullUrl(
+    protected ResponseEntity<byte[]> handleNullUrl(
             NullUrlException ex) {
-        var apiError = new ApiError(NOT_FOUND);
+        metrics.error(ex);
+        return errorBodies.response(NOT_FOUND, ex.getMessage());
+    }
+
+    /**
+     * A storage that can't be reached, or doesn't answer in time, is not a missing short url.
+     */
+    @ExceptionHandler({StorageUnavailableException.class, DataAccessResourceFailureException.class, QueryTimeoutException.class})
+    protected ResponseEntity<byte[]> handleStorageUnavailable(
+            RuntimeException ex) {
+        metrics.error(ex);
+        return errorBodies.response(SERVICE_UNAVAILABLE, STORAGE_UNAVAILABLE_MESSAGE);
+    }
+
+    @ExceptionHandler(ShortUrlConflictException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleShortUrlConflict(
+            ShortUrlConflictException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(CONFLICT);
         apiError.setMessage(ex.getMessage());
         return buildResponseEntity(apiError);
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    protected ResponseEntity<ServiceResult<Void>> handleRateLimitExceeded(
+            RateLimitExceededException ex) {
+        metrics.error(ex);
+        var apiError = new ApiError(TOO_MANY_REQUESTS);
+        apiError.setMessage(ex.getMessage());
+        return ResponseEntity.status(apiError.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ServiceResult.fail(apiError));
+    }
+
     @ExceptionHandler(Exception.class)
     protected ResponseEntity<ServiceResult<Void>> finalHandlingIfExceptionHandlingWasNotFound(
             Exception ex) {
+        metrics.error(ex);
         var apiError = new ApiError(NOT_FOUND);
         apiError.setMessage(ex.getMessage());
         return buildResponseEntity(apiError);
@@ -63,6 +118,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     protected ResponseEntity<ServiceResult<Void>> handleMethodArgumentTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        metrics.error(ex);
         var apiError = new ApiError(BAD_REQUEST);
         apiError.setMessage(String.format("The parameter '%s' of value '%s' could not be converted to type '%s'", ex.getName(), ex.getValue(), Objects.requireNonNull(ex.getRequiredType()).getSimpleName()));
         apiError.setDebugMessage(ex.getMessage());
@@ -72,6 +128,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler(IllegalArgumentException.class)
     protected ResponseEntity<ServiceResult<Void>> handleBadRequest(
             IllegalArgumentException ex) {
+        metrics.error(ex);
         var apiError = new ApiError(BAD_REQUEST);
         apiError.setMessage(ex.getMessage());
         return buildResponseEntity(apiError);
@@ -85,6 +142,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         String error = ex.getParameterName() + " parameter is missing";
         return buildResponseEntityForOverrideMethods(new ApiError(BAD_REQUEST, error, ex));
     }
@@ -96,6 +154,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         StringBuilder builder = new StringBuilder();
         builder.append(ex.getContentType());
         builder.append(" media type is not supported. Supported media types are ");
@@ -110,6 +169,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         var apiError = new ApiError(BAD_REQUEST);
         apiError.setMessage("Validation error");
         apiError.addValidationErrors(ex.getBindingResult().getFieldErrors());
@@ -120,6 +180,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler(javax.validation.ConstraintViolationException.class)
     protected ResponseEntity<Object> handleConstraintViolation(
             javax.validation.ConstraintViolationException ex) {
+        metrics.error(ex);
         var apiError = new ApiError(BAD_REQUEST);
         apiError.setMessage("Validation error");
         apiError.addValidationErrors(ex.getConstraintViolations());
@@ -133,6 +194,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         ServletWebRequest servletWebRequest = (ServletWebRequest) request;
         log.info("{} to {}", servletWebRequest.getHttpMethod(), servletWebRequest.getRequest().getServletPath());
         var error = "Malformed JSON request";
@@ -146,6 +208,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         var error = "Error writing JSON output";
         return buildResponseEntityForOverrideMethods(new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, error, ex));
     }
@@ -157,6 +220,7 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
             @Nonnull HttpHeaders headers,
             @Nonnull HttpStatus status,
             @Nonnull WebRequest request) {
+        metrics.error(ex);
         var apiError = new ApiError(BAD_REQUEST);
         apiError.setMessage(String.format("Could not find the %s method for URL %s", ex.getHttpMethod(), ex.getRequestURL()));
         apiError.setDebugMessage(ex.getMessage());
@@ -1,9 +1,11 @@
 package com.rostami.urlshortener.dto.in;
 
+import com.rostami.urlshortener.validation.ValidUrl;
 import lombok.*;
 
+import javax.validation.constraints.Future;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Pattern;
+import java.time.Instant;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -11,7 +13,13 @@ import javax.validation.constraints.Pattern;
 @Setter
 @Builder
 public class UrlCreateParam {
-    @Pattern(regexp = "((http|https)://)(www.)?[a-zA-Z0-9@:%._+~#?&/=]{2,256}\\.[a-z]{2,6}\\b([-a-zA-Z0-9@:%._+~#?&/=]*)")
+    @ValidUrl
     @NotNull
     private String originalUrl;
+
+    /**
+     * Optional deadline after which the short url stops resolving; permanent when absent.
+     */
+    @Future
+    private Instant expiresAt;
 }
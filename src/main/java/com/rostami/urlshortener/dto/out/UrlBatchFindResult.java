@@ -0,0 +1,15 @@
+package com.rostami.urlshortener.dto.out;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class UrlBatchFindResult {
+    private String shortUrl;
+    private String originalUrl;
+    private boolean found;
+    private boolean expired;
+}
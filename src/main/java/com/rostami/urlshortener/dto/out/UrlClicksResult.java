@@ -0,0 +1,13 @@
+package com.rostami.urlshortener.dto.out;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class UrlClicksResult {
+    private String shortUrl;
+    private long clicks;
+}
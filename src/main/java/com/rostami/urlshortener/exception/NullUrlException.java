@@ -1,15 +1,22 @@
 package com.rostami.urlshortener.exception;
 
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.NULL_URL_MESSAGE;
+
+/**
+ * Stackless, see {@link UrlNotFoundException}.
+ */
 public class NullUrlException extends RuntimeException{
+    public static final NullUrlException INSTANCE = new NullUrlException(NULL_URL_MESSAGE);
+
     public NullUrlException() {
-        super();
+        super(null, null, false, false);
     }
 
     public NullUrlException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public NullUrlException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
     }
 }
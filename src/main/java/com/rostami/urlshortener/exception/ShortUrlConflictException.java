@@ -0,0 +1,15 @@
+package com.rostami.urlshortener.exception;
+
+public class ShortUrlConflictException extends RuntimeException{
+    public ShortUrlConflictException() {
+        super();
+    }
+
+    public ShortUrlConflictException(String message) {
+        super(message);
+    }
+
+    public ShortUrlConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,23 @@
+package com.rostami.urlshortener.exception;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.STORAGE_UNAVAILABLE_MESSAGE;
+
+/**
+ * The storage is too slow or failing and there is no stale copy to answer with. Stackless, see
+ * {@link UrlNotFoundException}: while the storage is degraded it is thrown for every resolve.
+ */
+public class StorageUnavailableException extends RuntimeException{
+    public static final StorageUnavailableException INSTANCE = new StorageUnavailableException(STORAGE_UNAVAILABLE_MESSAGE);
+
+    public StorageUnavailableException() {
+        super(null, null, false, false);
+    }
+
+    public StorageUnavailableException(String message) {
+        super(message, null, false, false);
+    }
+
+    public StorageUnavailableException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
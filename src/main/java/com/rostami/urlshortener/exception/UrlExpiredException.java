@@ -0,0 +1,22 @@
+package com.rostami.urlshortener.exception;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_EXPIRED_MESSAGE;
+
+/**
+ * Stackless, see {@link UrlNotFoundException}.
+ */
+public class UrlExpiredException extends RuntimeException{
+    public static final UrlExpiredException INSTANCE = new UrlExpiredException(URL_EXPIRED_MESSAGE);
+
+    public UrlExpiredException() {
+        super(null, null, false, false);
+    }
+
+    public UrlExpiredException(String message) {
+        super(message, null, false, false);
+    }
+
+    public UrlExpiredException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -1,15 +1,24 @@
 package com.rostami.urlshortener.exception;
 
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+
+/**
+ * Thrown for unknown short urls, which scans and crawlers produce in floods. Like the other expected outcomes
+ * of a resolve it carries no stack trace, which would only point at the same line of the service every time,
+ * and the common case reuses {@link #INSTANCE}.
+ */
 public class UrlNotFoundException extends RuntimeException{
+    public static final UrlNotFoundException INSTANCE = new UrlNotFoundException(URL_NOT_FOUND_EXCEPTION_MESSAGE);
+
     public UrlNotFoundException() {
-        super();
+        super(null, null, false, false);
     }
 
     public UrlNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public UrlNotFoundException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
     }
 }
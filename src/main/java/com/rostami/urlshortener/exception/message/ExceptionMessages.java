@@ -8,4 +8,11 @@ import lombok.Setter;
 public class ExceptionMessages {
     public static final String URL_NOT_FOUND_EXCEPTION_MESSAGE = "There Is No Url For This Shorted Url.";
     public static final String NULL_URL_MESSAGE = "Url Cannot be null or empty";
+    public static final String SHORT_URL_CONFLICT_MESSAGE = "Could Not Find A Free Short Url For This Url.";
+    public static final String URL_EXPIRED_MESSAGE = "This Shorted Url Has Expired.";
+    public static final String EXPIRES_AT_IN_PAST_MESSAGE = "Expiry Of A Url Must Be In The Future.";
+    public static final String RATE_LIMIT_EXCEEDED_MESSAGE = "Too Many Short Urls Created, Try Again Later.";
+    public static final String STORAGE_UNAVAILABLE_MESSAGE = "Short Urls Cannot Be Resolved Right Now, Try Again Later.";
+    public static final String BATCH_TOO_LARGE_MESSAGE = "Batch Cannot Contain More Than %d Urls.";
+    public static final String BATCH_OVER_RATE_LIMIT_MESSAGE = "Batch Cannot Create More Than %d Urls At Once Under The Rate Limit.";
 }
@@ -0,0 +1,204 @@
+package com.rostami.urlshortener.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application level meters. Per endpoint latency comes from spring's {@code http.server.requests} and per
+ * redis command latency from lettuce's {@code lettuce.command.*} meters; these cover what those can't see.
+ */
+@Component
+public class UrlMetrics {
+    private final MeterRegistry registry;
+    private final Timer createTimer;
+    private final Timer batchCreateTimer;
+    private final Timer resolveTimer;
+    private final Timer clicksFlushTimer;
+    private final Counter resolveFound;
+    private final Counter resolveNotFound;
+    private final Counter untrackedClicks;
+    private final Counter rateLimited;
+    private final Counter pinnedResolves;
+    private final Timer lookupBatchWait;
+    private final DistributionSummary lookupBatchSize;
+    private final Counter coalescedLookups;
+    private final DistributionSummary writeBehindCommitSize;
+    private final Counter writeBehindConflicts;
+    private final Counter staleResolves;
+    private final Counter breakerRejections;
+    private final Counter hedgedReads;
+    private final Counter changesRead;
+    private final Counter changesDropped;
+    private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+    public UrlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.createTimer = operationTimer("create");
+        this.batchCreateTimer = operationTimer("batch_create");
+        this.resolveTimer = operationTimer("resolve");
+        this.clicksFlushTimer = operationTimer("clicks_flush");
+        this.resolveFound = resolveCounter("found");
+        this.resolveNotFound = resolveCounter("not_found");
+        this.untrackedClicks = Counter.builder("url.shortener.clicks.untracked")
+                .description("Clicks only counted towards the total because too many short urls were tracked")
+                .register(registry);
+        this.rateLimited = Counter.builder("url.shortener.rate.limited")
+                .description("Short url creations rejected because the client was over its rate limit")
+                .register(registry);
+        this.pinnedResolves = Counter.builder("url.shortener.resolves.pinned")
+                .description("Resolves answered from the short urls pinned as hot, without the near cache or storage")
+                .register(registry);
+        this.lookupBatchWait = Timer.builder("url.shortener.lookup.batch.wait")
+                .description("Time a resolve waited for its lookup batch to be sent to the storage")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.lookupBatchSize = DistributionSummary.builder("url.shortener.lookup.batch.size")
+                .description("Short urls per lookup batch sent to the storage")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.coalescedLookups = Counter.builder("url.shortener.lookups.coalesced")
+                .description("Lookups that waited for the same short url's in-flight lookup instead of making their own")
+                .register(registry);
+        this.writeBehindCommitSize = DistributionSummary.builder("url.shortener.write.behind.commit.size")
+                .description("Creates made durable by one sync of the write-ahead log")
+                .register(registry);
+        this.writeBehindConflicts = Counter.builder("url.shortener.write.behind.conflicts")
+                .description("Acknowledged creates whose short url turned out to be taken when they were written to the storage")
+                .register(registry);
+        this.staleResolves = Counter.builder("url.shortener.resolves.stale")
+                .description("Resolves answered from the stale copy because the storage was over budget, failing or shut off")
+                .register(registry);
+        this.breakerRejections = Counter.builder("url.shortener.breaker.rejected")
+                .description("Storage lookups not made because the circuit breaker was open")
+                .register(registry);
+        this.hedgedReads = Counter.builder("url.shortener.reads.hedged")
+                .description("Storage lookups also sent to a replica because the primary was slower than usual")
+                .register(registry);
+        this.changesRead = Counter.builder("url.shortener.changes.read")
+                .description("Create events read from the change stream and handed to the listeners")
+                .register(registry);
+        this.changesDropped = Counter.builder("url.shortener.changes.dropped")
+                .description("Create events acknowledged without the listeners taking them, after they kept failing")
+                .register(registry);
+    }
+
+    public Timer createTimer() {
+        return createTimer;
+    }
+
+    public Timer batchCreateTimer() {
+        return batchCreateTimer;
+    }
+
+    public Timer resolveTimer() {
+        return resolveTimer;
+    }
+
+    public Timer clicksFlushTimer() {
+        return clicksFlushTimer;
+    }
+
+    public void resolved(boolean found) {
+        (found ? resolveFound : resolveNotFound).increment();
+    }
+
+    public void resolved(long found, long notFound) {
+        resolveFound.increment(found);
+        resolveNotFound.increment(notFound);
+    }
+
+    public void untrackedClick() {
+        untrackedClicks.increment();
+    }
+
+    public void rateLimited() {
+        rateLimited.increment();
+    }
+
+    public void pinnedResolve() {
+        pinnedResolves.increment();
+    }
+
+    public Timer lookupBatchWait() {
+        return lookupBatchWait;
+    }
+
+    public DistributionSummary lookupBatchSize() {
+        return lookupBatchSize;
+    }
+
+    public void coalescedLookup() {
+        coalescedLookups.increment();
+    }
+
+    public DistributionSummary writeBehindCommitSize() {
+        return writeBehindCommitSize;
+    }
+
+    public void writeBehindConflict() {
+        writeBehindConflicts.increment();
+    }
+
+    public void staleResolve() {
+        staleResolves.increment();
+    }
+
+    public void breakerRejection() {
+        breakerRejections.increment();
+    }
+
+    public void hedgedRead() {
+        hedgedReads.increment();
+    }
+
+    public void changesRead(int count) {
+        changesRead.increment(count);
+    }
+
+    public void changesDropped(int count) {
+        changesDropped.increment(count);
+    }
+
+    /**
+     * Publishes the number of acknowledged creates not written to the storage yet.
+     */
+    public void writeBehindPending(Map<String, String> pending) {
+        Gauge.builder("url.shortener.write.behind.pending", pending, Map::size)
+                .description("Acknowledged creates waiting to be written to the storage")
+                .register(registry);
+    }
+
+    /**
+     * Counts an exception that was turned into an error response, tagged by its type. The counter is looked
+     * up once per type, not on every error.
+     */
+    public void error(Throwable ex) {
+        errors.computeIfAbsent(ex.getClass(), type -> Counter.builder("url.shortener.errors")
+                        .description("Exceptions mapped to error responses")
+                        .tag("exception", type.getSimpleName())
+                        .register(registry))
+                .increment();
+    }
+
+    private Timer operationTimer(String operation) {
+        return Timer.builder("url.shortener.operations")
+                .description("Latency of the url service operations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter resolveCounter(String result) {
+        return Counter.builder("url.shortener.resolves")
+                .description("Resolved short urls by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,127 @@
+package com.rostami.urlshortener.service;
+
+import com.rostami.urlshortener.config.ShortCodeProperties;
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.dto.out.UrlClicksResult;
+import com.rostami.urlshortener.dto.out.UrlCreateResult;
+import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.exception.NullUrlException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
+import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.analytics.ClickAnalytics;
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import com.rostami.urlshortener.service.code.ShortCodeGenerator;
+import com.rostami.urlshortener.service.dedup.UrlDeduplicator;
+import com.rostami.urlshortener.service.hotkey.HotKeyTracker;
+import com.rostami.urlshortener.service.resilience.ResolveGuard;
+import com.rostami.urlshortener.service.storage.CoalescingUrlLookup;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.EXPIRES_AT_IN_PAST_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.SHORT_URL_CONFLICT_MESSAGE;
+
+/**
+ * Non-blocking counterpart of {@link UrlService}, used when the application runs on WebFlux.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveUrlService {
+    private final UrlRepository urlRepository;
+    private final UrlNearCache nearCache;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortCodeProperties shortCodeProperties;
+    private final UrlDeduplicator deduplicator;
+    private final UrlMetrics metrics;
+    private final ClickAnalytics clickAnalytics;
+    private final UrlExpiryProperties expiryProperties;
+    private final HotKeyTracker hotKeyTracker;
+    private final CoalescingUrlLookup urlLookup;
+    private final ResolveGuard resolveGuard;
+
+    public Mono<UrlCreateResult<String>> generateShortUrl(String originalUrl) {
+        return generateShortUrl(originalUrl, null);
+    }
+
+    /**
+     * Same expiry rules as {@link UrlService#generateShortUrl(String, Instant)}.
+     */
+    public Mono<UrlCreateResult<String>> generateShortUrl(String originalUrl, Instant expiresAt) {
+        if (expiresAt != null && !expiresAt.isAfter(Instant.now()))
+            return Mono.error(new IllegalArgumentException(EXPIRES_AT_IN_PAST_MESSAGE));
+        Mono<String> existing = expiresAt == null ? deduplicator.findExistingReactive(originalUrl) : Mono.empty();
+        return existing
+                .switchIfEmpty(Mono.defer(() -> claimShortUrl(originalUrl, expiresAt, 0)
+                        .flatMap(shortedUrl -> (expiresAt == null ? deduplicator.rememberReactive(originalUrl, shortedUrl) : Mono.<Void>empty())
+                                .then(nearCache.invalidateEverywhereReactive(shortedUrl))
+                                .thenReturn(shortedUrl))))
+                .map(shortedUrl -> UrlCreateResult.<String>builder()
+                        .data(shortedUrl)
+                        .success(true)
+                        .build());
+    }
+
+    public Mono<UrlFindResult> loadOriginalUrl(String shortUrl) {
+        return resolveOriginalUrl(shortUrl)
+                .map(originalUrl -> UrlFindResult.builder()
+                        .originalUrl(originalUrl)
+                        .shortUrl(shortUrl)
+                        .build());
+    }
+
+    public Mono<String> resolveOriginalUrl(String shortUrl) {
+        if (shortUrl == null || shortUrl.isBlank()) return Mono.error(NullUrlException.INSTANCE);
+        hotKeyTracker.record(shortUrl);
+        String pinned = hotKeyTracker.pinned(shortUrl);
+        Mono<String> lookup = pinned != null
+                ? Mono.just(pinned)
+                : nearCache.getReactive(shortUrl, key -> resolveGuard.findReactive(key, urlLookup::findReactive));
+        return lookup
+                .doOnSuccess(storedUrl -> metrics.resolved(storedUrl != null
+                        && !StoredUrl.isExpired(storedUrl, System.currentTimeMillis())))
+                .switchIfEmpty(Mono.error(UrlNotFoundException.INSTANCE))
+                .flatMap(storedUrl -> {
+                    if (StoredUrl.isExpired(storedUrl, System.currentTimeMillis()))
+                        return Mono.error(UrlExpiredException.INSTANCE);
+                    clickAnalytics.record(shortUrl);
+                    return Mono.just(StoredUrl.originalUrl(storedUrl));
+                });
+    }
+
+    public Mono<UrlClicksResult> loadClicks(String shortUrl) {
+        if (shortUrl == null || shortUrl.isBlank()) return Mono.error(NullUrlException.INSTANCE);
+        return clickAnalytics.clicksReactive(shortUrl)
+                .map(clicks -> UrlClicksResult.builder()
+                        .shortUrl(shortUrl)
+                        .clicks(clicks)
+                        .build());
+    }
+
+    /**
+     * Same claiming rules as {@link UrlService}. Generators may block (counter and block ones call redis),
+     * so they run on the bounded elastic scheduler.
+     */
+    private Mono<String> claimShortUrl(String originalUrl, Instant expiresAt, int attempt) {
+        if (attempt >= shortCodeProperties.getMaxAttempts())
+            return Mono.error(() -> new ShortUrlConflictException(SHORT_URL_CONFLICT_MESSAGE));
+        String storedUrl = StoredUrl.encode(originalUrl, expiresAt);
+        Duration timeToLive = expiresAt == null ? null : StoredUrl.timeToLive(expiresAt, expiryProperties.getExpiredRetention());
+        return Mono.fromCallable(() -> shortCodeGenerator.generate(originalUrl, attempt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(shortedUrl -> urlRepository.claimReactive(shortedUrl, storedUrl, timeToLive)
+                        .flatMap(claimed -> claimed
+                                ? Mono.just(shortedUrl)
+                                : urlRepository.findReactive(shortedUrl)
+                                        .filter(storedUrl::equals)
+                                        .map(existing -> shortedUrl))
+                        .switchIfEmpty(Mono.defer(() -> claimShortUrl(originalUrl, expiresAt, attempt + 1))));
+    }
+}
@@ -0,0 +1,62 @@
+package com.rostami.urlshortener.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Format of the values stored under the short urls. Permanent urls are stored as they are; urls with an
+ * expiry are prefixed with their deadline, as {@code ~<epoch millis> <url>}. Urls never start with '~' nor
+ * contain spaces, so both forms can't be mistaken for each other and existing values stay readable.
+ */
+public final class StoredUrl {
+    private static final char EXPIRING_MARKER = '~';
+    private static final char SEPARATOR = ' ';
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private StoredUrl() {
+    }
+
+    public static String encode(String originalUrl, Instant expiresAt) {
+        if (expiresAt == null) return originalUrl;
+        return EXPIRING_MARKER + Long.toString(expiresAt.toEpochMilli()) + SEPARATOR + originalUrl;
+    }
+
+    /**
+     * @return the original url of a stored value, whether or not it has expired
+     */
+    public static String originalUrl(String storedUrl) {
+        if (storedUrl == null || !isExpiring(storedUrl)) return storedUrl;
+        return storedUrl.substring(storedUrl.indexOf(SEPARATOR) + 1);
+    }
+
+    /**
+     * @return the deadline of a stored value in epoch millis, or {@link #NEVER} for permanent ones
+     */
+    public static long expiresAtMillis(String storedUrl) {
+        if (storedUrl == null || !isExpiring(storedUrl)) return NEVER;
+        return Long.parseLong(storedUrl, 1, storedUrl.indexOf(SEPARATOR), 10);
+    }
+
+    /**
+     * Redis ttl of an expiring url: its deadline plus the retention during which it is reported as expired.
+     */
+    public static Duration timeToLive(Instant expiresAt, Duration expiredRetention) {
+        return Duration.between(Instant.now(), expiresAt).plus(expiredRetention);
+    }
+
+    public static boolean isExpired(String storedUrl, long nowMillis) {
+        return expiresAtMillis(storedUrl) <= nowMillis;
+    }
+
+    /**
+     * @return whether a value found in redis looks like one written by this service, rather than by
+     * anything else sharing the database
+     */
+    public static boolean isStoredUrl(String value) {
+        return value.startsWith("http") || expiresAtMillis(value) != NEVER;
+    }
+
+    private static boolean isExpiring(String storedUrl) {
+        return !storedUrl.isEmpty() && storedUrl.charAt(0) == EXPIRING_MARKER;
+    }
+}
@@ -1,43 +1,239 @@
 package com.rostami.urlshortener.service;
 
-import com.google.common.hash.Hashing;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Streams;
+import com.rostami.urlshortener.config.ShortCodeProperties;
+import com.rostami.urlshortener.config.UrlBatchProperties;
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.dto.out.UrlBatchFindResult;
+import com.rostami.urlshortener.dto.out.UrlClicksResult;
 import com.rostami.urlshortener.dto.out.UrlCreateResult;
 import com.rostami.urlshortener.dto.out.UrlFindResult;
 import com.rostami.urlshortener.exception.NullUrlException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
 import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.analytics.ClickAnalytics;
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import com.rostami.urlshortener.service.code.ShortCodeGenerator;
+import com.rostami.urlshortener.service.dedup.UrlDeduplicator;
+import com.rostami.urlshortener.service.hotkey.HotKeyTracker;
+import com.rostami.urlshortener.service.resilience.ResolveGuard;
+import com.rostami.urlshortener.service.storage.CoalescingUrlLookup;
+import com.rostami.urlshortener.service.storage.UrlRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static com.rostami.urlshortener.exception.message.ExceptionMessages.NULL_URL_MESSAGE;
-import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.BATCH_TOO_LARGE_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.EXPIRES_AT_IN_PAST_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.SHORT_URL_CONFLICT_MESSAGE;
 
 @Service
 @RequiredArgsConstructor
 public class UrlService {
-    private final StringRedisTemplate redisTemplate;
-    
+    private final UrlRepository urlRepository;
+    private final UrlNearCache nearCache;
+    private final UrlBatchProperties batchProperties;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortCodeProperties shortCodeProperties;
+    private final UrlDeduplicator deduplicator;
+    private final UrlMetrics metrics;
+    private final ClickAnalytics clickAnalytics;
+    private final UrlExpiryProperties expiryProperties;
+    private final HotKeyTracker hotKeyTracker;
+    private final CoalescingUrlLookup urlLookup;
+    private final ResolveGuard resolveGuard;
+
+    /**
+     * Returns the existing short url when the url was shortened before (see {@link UrlDeduplicator}),
+     * otherwise claims a new one.
+     */
     @Transactional
     public UrlCreateResult<String> generateShortUrl(String originalUrl){
-        String shortedUrl = Hashing.murmur3_32().hashString(originalUrl, StandardCharsets.UTF_8).toString();
-        redisTemplate.opsForValue().set(shortedUrl, originalUrl);
+        return generateShortUrl(originalUrl, null);
+    }
+
+    /**
+     * Creates a short url that stops resolving at the given deadline, or a permanent one when it is null.
+     * Expiring urls always get a short url of their own; they are neither deduplicated nor shared with
+     * permanent ones.
+     */
+    @Transactional
+    public UrlCreateResult<String> generateShortUrl(String originalUrl, Instant expiresAt){
+        if (expiresAt != null && !expiresAt.isAfter(Instant.now()))
+            throw new IllegalArgumentException(EXPIRES_AT_IN_PAST_MESSAGE);
+        return metrics.createTimer().record(() -> createShortUrl(originalUrl, expiresAt));
+    }
+
+    private UrlCreateResult<String> createShortUrl(String originalUrl, Instant expiresAt) {
+        String shortedUrl = expiresAt == null ? deduplicator.findExisting(originalUrl) : null;
+        if (shortedUrl == null) {
+            shortedUrl = claimShortUrl(originalUrl, expiresAt);
+            if (expiresAt == null) deduplicator.remember(originalUrl, shortedUrl);
+            nearCache.invalidateEverywhere(shortedUrl);
+        }
         return UrlCreateResult.<String>builder()
                 .data(shortedUrl)
                 .success(true)
                 .build();
     }
 
+    /**
+     * Creates short urls for all the given urls. Urls that were shortened before, or that appear more than
+     * once, are only written once; the rest are claimed in pipelines (see {@link #claimShortUrls(List)}).
+     * Results are returned in the order of the given urls.
+     */
+    @Transactional
+    public List<UrlCreateResult<String>> generateShortUrls(List<String> originalUrls){
+        if (originalUrls.size() > batchProperties.getMaxSize())
+            throw new IllegalArgumentException(String.format(BATCH_TOO_LARGE_MESSAGE, batchProperties.getMaxSize()));
+        return metrics.batchCreateTimer().record(() -> createShortUrls(originalUrls));
+    }
+
+    private List<UrlCreateResult<String>> createShortUrls(List<String> originalUrls) {
+        Map<String, String> shortUrlsByOriginalUrl = deduplicator.findExisting(originalUrls);
+        List<String> newUrls = new ArrayList<>(new LinkedHashSet<>(originalUrls));
+        newUrls.removeAll(shortUrlsByOriginalUrl.keySet());
+        List<String> claimedUrls = claimShortUrls(newUrls);
+        Map<String, String> created = new LinkedHashMap<>();
+        for (int i = 0; i < newUrls.size(); i++)
+            created.put(newUrls.get(i), claimedUrls.get(i));
+        deduplicator.rememberAll(created);
+        nearCache.invalidateEverywhere(created.values());
+        shortUrlsByOriginalUrl.putAll(created);
+        List<UrlCreateResult<String>> results = new ArrayList<>(originalUrls.size());
+        originalUrls.forEach(originalUrl -> results.add(UrlCreateResult.<String>builder()
+                .data(shortUrlsByOriginalUrl.get(originalUrl))
+                .success(true)
+                .build()));
+        return results;
+    }
+
     @Transactional(readOnly = true)
     public UrlFindResult loadOriginalUrl(String shortUrl){
-        if (shortUrl == null || shortUrl.isBlank()) throw new NullUrlException(NULL_URL_MESSAGE);
-        String originalUrl = redisTemplate.opsForValue().get(shortUrl);
-        if (originalUrl == null) throw new UrlNotFoundException(URL_NOT_FOUND_EXCEPTION_MESSAGE);
+        String originalUrl = resolveOriginalUrl(shortUrl);
         return UrlFindResult.builder()
                 .originalUrl(originalUrl)
                 .shortUrl(shortUrl)
                 .build();
     }
+
+    /**
+     * Resolves a short url without building any result object; used by the redirect route. Every
+     * successful resolve is counted as a click (see {@link ClickAnalytics}). Expired short urls are checked
+     * here, as redis only drops them once their retention is over.
+     */
+    @Transactional(readOnly = true)
+    public String resolveOriginalUrl(String shortUrl){
+        if (shortUrl == null || shortUrl.isBlank()) throw NullUrlException.INSTANCE;
+        String storedUrl = metrics.resolveTimer().record(() -> findStoredUrl(shortUrl));
+        boolean expired = storedUrl != null && StoredUrl.isExpired(storedUrl, System.currentTimeMillis());
+        metrics.resolved(storedUrl != null && !expired);
+        if (storedUrl == null) throw UrlNotFoundException.INSTANCE;
+        if (expired) throw UrlExpiredException.INSTANCE;
+        clickAnalytics.record(shortUrl);
+        return StoredUrl.originalUrl(storedUrl);
+    }
+
+    /**
+     * Hot short urls are answered from their pin (see {@link HotKeyTracker}), the rest through the near cache,
+     * whose misses share the lookups already in flight (see {@link CoalescingUrlLookup}) within the lookup
+     * budget (see {@link ResolveGuard}).
+     */
+    private String findStoredUrl(String shortUrl) {
+        hotKeyTracker.record(shortUrl);
+        String pinned = hotKeyTracker.pinned(shortUrl);
+        return pinned != null ? pinned : nearCache.get(shortUrl, key -> resolveGuard.find(key, urlLookup::find));
+    }
+
+    public UrlClicksResult loadClicks(String shortUrl){
+        if (shortUrl == null || shortUrl.isBlank()) throw NullUrlException.INSTANCE;
+        return UrlClicksResult.builder()
+                .shortUrl(shortUrl)
+                .clicks(clickAnalytics.clicks(shortUrl))
+                .build();
+    }
+
+    /**
+     * Resolves the given short urls lazily, one MGET per chunk, so callers can stream the results out as
+     * they are produced. Unknown and expired short urls are reported with {@code found = false} instead of
+     * failing.
+     */
+    @Transactional(readOnly = true)
+    public Stream<UrlBatchFindResult> loadOriginalUrls(Collection<String> shortUrls){
+        if (shortUrls.size() > batchProperties.getMaxSize())
+            throw new IllegalArgumentException(String.format(BATCH_TOO_LARGE_MESSAGE, batchProperties.getMaxSize()));
+        return Streams.stream(Iterables.partition(shortUrls, batchProperties.getReadChunkSize()))
+                .flatMap(this::loadChunk);
+    }
+
+    private Stream<UrlBatchFindResult> loadChunk(List<String> shortUrls) {
+        List<String> keys = shortUrls.stream()
+                .filter(shortUrl -> shortUrl != null && !shortUrl.isBlank())
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, String> found = keys.isEmpty() ? Collections.emptyMap() : nearCache.getAll(keys, urlRepository::findAll);
+        long now = System.currentTimeMillis();
+        long live = found.values().stream().filter(storedUrl -> !StoredUrl.isExpired(storedUrl, now)).count();
+        metrics.resolved(live, keys.size() - live);
+        return shortUrls.stream().map(shortUrl -> {
+            String storedUrl = shortUrl == null ? null : found.get(shortUrl);
+            boolean expired = storedUrl != null && StoredUrl.isExpired(storedUrl, now);
+            String originalUrl = expired ? null : StoredUrl.originalUrl(storedUrl);
+            return UrlBatchFindResult.builder()
+                    .shortUrl(shortUrl)
+                    .originalUrl(originalUrl)
+                    .found(originalUrl != null)
+                    .expired(expired)
+                    .build();
+        });
+    }
+
+    /**
+     * Claims the first-attempt codes of all the given urls in one round trip per chunk; only the urls whose
+     * code turned out to be taken fall back to {@link #claimShortUrl(String, Instant)}.
+     */
+    private List<String> claimShortUrls(List<String> originalUrls) {
+        List<String> shortedUrls = new ArrayList<>(shortCodeGenerator.generateAll(originalUrls));
+        for (int from = 0; from < originalUrls.size(); from += batchProperties.getWriteChunkSize()) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(from + batchProperties.getWriteChunkSize(), originalUrls.size());
+            List<Boolean> claimed = urlRepository.claimAll(shortedUrls.subList(chunkStart, chunkEnd),
+                    originalUrls.subList(chunkStart, chunkEnd));
+            for (int i = chunkStart; i < chunkEnd; i++)
+                if (!claimed.get(i - chunkStart))
+                    shortedUrls.set(i, claimShortUrl(originalUrls.get(i), null));
+        }
+        return shortedUrls;
+    }
+
+    /**
+     * Stores the url under the first free code the generator comes up with. A code that is already mapped
+     * to the very same url (and expiry) is reused instead of being treated as a conflict. Expiring urls are
+     * claimed with a time to live, so the storage drops them on its own once their retention is over.
+     */
+    private String claimShortUrl(String originalUrl, Instant expiresAt) {
+        String storedUrl = StoredUrl.encode(originalUrl, expiresAt);
+        Duration timeToLive = expiresAt == null ? null : StoredUrl.timeToLive(expiresAt, expiryProperties.getExpiredRetention());
+        for (int attempt = 0; attempt < shortCodeProperties.getMaxAttempts(); attempt++) {
+            String shortedUrl = shortCodeGenerator.generate(originalUrl, attempt);
+            if (urlRepository.claim(shortedUrl, storedUrl, timeToLive)) return shortedUrl;
+            if (storedUrl.equals(urlRepository.find(shortedUrl))) return shortedUrl;
+        }
+        throw new ShortUrlConflictException(SHORT_URL_CONFLICT_MESSAGE);
+    }
 }
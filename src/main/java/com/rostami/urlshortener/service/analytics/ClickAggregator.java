@@ -0,0 +1,98 @@
+package com.rostami.urlshortener.service.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free in-memory click counts, one {@link LongAdder} per short url.
+ * <p>
+ * Counts go to the current generation; {@link #drain()} swaps in a fresh one and waits for the resolves
+ * still writing to the old one before handing it out, so no click is lost without making resolves take a
+ * lock. A generation tracks at most {@code maxTrackedCodes} short urls; clicks on further short urls are only
+ * counted as untracked.
+ */
+class ClickAggregator {
+    private final int maxTrackedCodes;
+    private volatile Generation current = new Generation();
+
+    ClickAggregator(int maxTrackedCodes) {
+        this.maxTrackedCodes = maxTrackedCodes;
+    }
+
+    /**
+     * @return false when the short url could not be tracked and only counted towards the total
+     */
+    boolean record(String shortUrl) {
+        return add(shortUrl, 1);
+    }
+
+    boolean add(String shortUrl, long clicks) {
+        Generation generation = enter();
+        try {
+            LongAdder counter = generation.counts.get(shortUrl);
+            if (counter == null) {
+                if (generation.counts.size() >= maxTrackedCodes) {
+                    generation.untracked.add(clicks);
+                    return false;
+                }
+                counter = generation.counts.computeIfAbsent(shortUrl, key -> new LongAdder());
+            }
+            counter.add(clicks);
+            return true;
+        } finally {
+            generation.writers.decrement();
+        }
+    }
+
+    void addUntracked(long clicks) {
+        Generation generation = enter();
+        generation.untracked.add(clicks);
+        generation.writers.decrement();
+    }
+
+    /**
+     * Clicks counted in memory that are not flushed yet.
+     */
+    long pending(String shortUrl) {
+        LongAdder counter = current.counts.get(shortUrl);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    synchronized Generation drain() {
+        Generation drained = current;
+        current = new Generation();
+        while (drained.writers.sum() != 0) Thread.yield();
+        return drained;
+    }
+
+    /**
+     * Registers a writer on the current generation; re-reading {@code current} after registering guarantees
+     * that {@link #drain()} either sees the writer or that the writer moves on to the new generation.
+     */
+    private Generation enter() {
+        while (true) {
+            Generation generation = current;
+            generation.writers.increment();
+            if (generation == current) return generation;
+            generation.writers.decrement();
+        }
+    }
+
+    static final class Generation {
+        private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+        private final LongAdder untracked = new LongAdder();
+        private final LongAdder writers = new LongAdder();
+
+        Map<String, Long> counts() {
+            Map<String, Long> snapshot = new HashMap<>(counts.size());
+            counts.forEach((shortUrl, clicks) -> snapshot.put(shortUrl, clicks.sum()));
+            return snapshot;
+        }
+
+        long untracked() {
+            return untracked.sum();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.rostami.urlshortener.service.analytics;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlAnalyticsProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per short url click counts, kept off the resolve path.
+ * <p>
+ * Resolves only bump an in-memory counter (see {@link ClickAggregator}); a background thread flushes the
+ * aggregated counts every {@code flush-interval} with pipelined HINCRBY commands into one hash plus an
+ * INCRBY of the total. Counts that fail to flush are put back and retried on the next flush.
+ */
+@Slf4j
+@Component
+public class ClickAnalytics {
+    private final UrlAnalyticsProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final UrlMetrics metrics;
+    private final ClickAggregator aggregator;
+    private ScheduledExecutorService flusher;
+
+    public ClickAnalytics(UrlAnalyticsProperties properties,
+                          StringRedisTemplate redisTemplate,
+                          ReactiveStringRedisTemplate reactiveRedisTemplate,
+                          UrlMetrics metrics) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.metrics = metrics;
+        this.aggregator = new ClickAggregator(properties.getMaxTrackedCodes());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) return;
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("click-flusher-%d")
+                .setDaemon(true)
+                .build());
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        flush();
+    }
+
+    /**
+     * Counts a click on the given short url; never touches redis.
+     */
+    public void record(String shortUrl) {
+        if (!properties.isEnabled()) return;
+        if (!aggregator.record(shortUrl)) metrics.untrackedClick();
+    }
+
+    /**
+     * Flushed clicks of the given short url plus the ones of this node that are still waiting to be flushed.
+     */
+    public long clicks(String shortUrl) {
+        Object flushed = redisTemplate.opsForHash().get(properties.getClicksKey(), shortUrl);
+        return parse(flushed) + aggregator.pending(shortUrl);
+    }
+
+    /**
+     * Non-blocking variant of {@link #clicks(String)}.
+     */
+    public Mono<Long> clicksReactive(String shortUrl) {
+        return reactiveRedisTemplate.opsForHash().get(properties.getClicksKey(), shortUrl)
+                .map(ClickAnalytics::parse)
+                .defaultIfEmpty(0L)
+                .map(flushed -> flushed + aggregator.pending(shortUrl));
+    }
+
+    /**
+     * Writes the clicks counted since the previous flush to redis.
+     */
+    public void flush() {
+        try {
+            metrics.clicksFlushTimer().record(() -> flush(aggregator.drain()));
+        } catch (RuntimeException ex) {
+            log.warn("Could not flush click counts", ex);
+        }
+    }
+
+    /**
+     * Writes the per short url counts chunk by chunk, then the total. What failed to be written is put back:
+     * the chunks from the failed one on, and the total of everything else as untracked clicks, so a retry
+     * neither loses nor repeats the chunks that made it.
+     */
+    private void flush(ClickAggregator.Generation generation) {
+        Map<String, Long> counts = generation.counts();
+        long total = generation.untracked() + counts.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) return;
+        List<List<Map.Entry<String, Long>>> chunks = Lists.partition(new ArrayList<>(counts.entrySet()),
+                properties.getFlushChunkSize());
+        int flushed = 0;
+        try {
+            for (; flushed < chunks.size(); flushed++) {
+                List<Map.Entry<String, Long>> chunk = chunks.get(flushed);
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    var stringConnection = (StringRedisConnection) connection;
+                    chunk.forEach(entry -> stringConnection.hIncrBy(properties.getClicksKey(), entry.getKey(), entry.getValue()));
+                    return null;
+                });
+            }
+        } catch (RuntimeException ex) {
+            // HINCRBY isn't idempotent, so commands of the failed chunk that made it may be counted twice;
+            // losing clicks is worse
+            long putBack = 0;
+            for (List<Map.Entry<String, Long>> chunk : chunks.subList(flushed, chunks.size()))
+                for (Map.Entry<String, Long> entry : chunk) {
+                    aggregator.add(entry.getKey(), entry.getValue());
+                    putBack += entry.getValue();
+                }
+            aggregator.addUntracked(total - putBack);
+            throw ex;
+        }
+        try {
+            redisTemplate.opsForValue().increment(properties.getTotalClicksKey(), total);
+        } catch (RuntimeException ex) {
+            aggregator.addUntracked(total);
+            throw ex;
+        }
+    }
+
+    private static long parse(Object clicks) {
+        return clicks == null ? 0 : Long.parseLong(clicks.toString());
+    }
+}
@@ -0,0 +1,24 @@
+package com.rostami.urlshortener.service.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evicts the short urls carried by each invalidation message from the local near cache.
+ */
+@Component
+@RequiredArgsConstructor
+public class UrlCacheInvalidationListener implements MessageListener {
+    private final UrlNearCache nearCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String shortUrl : body.split(UrlNearCache.INVALIDATION_SEPARATOR))
+            nearCache.invalidate(shortUrl);
+    }
+}
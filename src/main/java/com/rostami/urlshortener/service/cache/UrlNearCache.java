@@ -0,0 +1,178 @@
+package com.rostami.urlshortener.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.rostami.urlshortener.config.UrlCacheProperties;
+import com.rostami.urlshortener.service.StoredUrl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process read-through cache in front of redis lookups.
+ * <p>
+ * Resolved urls and misses share one W-TinyLFU bounded cache; misses are kept as empty
+ * values with their own (shorter) ttl so unknown short urls don't hit redis on every request.
+ * Values are cached as stored in redis (see {@link StoredUrl}); an expiring url is never kept past its
+ * deadline, and once expired it is cached like a miss.
+ */
+@Component
+public class UrlNearCache {
+    public static final String INVALIDATION_SEPARATOR = "\n";
+    private static final int INVALIDATION_CHUNK_SIZE = 1_000;
+
+    private final UrlCacheProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final Cache<String, Optional<String>> cache;
+
+    public UrlNearCache(UrlCacheProperties properties,
+                        StringRedisTemplate redisTemplate,
+                        ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new HitMissExpiry(properties.getTtl().toNanos(), properties.getNegativeTtl().toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the stored url of the given short url, calling the loader only when it is not cached.
+     *
+     * @return the stored url, or null when the short url is (known to be) missing
+     */
+    public String get(String shortUrl, Function<String, String> loader) {
+        if (!properties.isEnabled()) return loader.apply(shortUrl);
+        return cache.get(shortUrl, key -> Optional.ofNullable(loader.apply(key))).orElse(null);
+    }
+
+    /**
+     * Bulk variant of {@link #get(String, Function)}. The loader receives the short urls that are not cached
+     * and returns their original urls in the same order, with nulls for the missing ones (MGET semantics).
+     *
+     * @return the stored urls of the found short urls; missing short urls are left out
+     */
+    public Map<String, String> getAll(List<String> shortUrls, Function<List<String>, List<String>> loader) {
+        Map<String, String> found = new HashMap<>();
+        if (!properties.isEnabled()) {
+            List<String> originalUrls = loader.apply(shortUrls);
+            for (int i = 0; i < shortUrls.size(); i++)
+                if (originalUrls.get(i) != null) found.put(shortUrls.get(i), originalUrls.get(i));
+            return found;
+        }
+        Map<String, Optional<String>> cached = cache.getAll(shortUrls, keys -> {
+            List<String> missing = Lists.newArrayList(keys);
+            List<String> originalUrls = loader.apply(missing);
+            Map<String, Optional<String>> loaded = new HashMap<>();
+            for (int i = 0; i < missing.size(); i++)
+                loaded.put(missing.get(i), Optional.ofNullable(originalUrls.get(i)));
+            return loaded;
+        });
+        cached.forEach((shortUrl, originalUrl) -> originalUrl.ifPresent(url -> found.put(shortUrl, url)));
+        return found;
+    }
+
+    /**
+     * Non-blocking variant of {@link #get(String, Function)}; completes empty when the short url is missing.
+     */
+    public Mono<String> getReactive(String shortUrl, Function<String, Mono<String>> loader) {
+        if (!properties.isEnabled()) return loader.apply(shortUrl);
+        Optional<String> cached = cache.getIfPresent(shortUrl);
+        if (cached != null) return Mono.justOrEmpty(cached);
+        return loader.apply(shortUrl)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .doOnNext(value -> cache.put(shortUrl, value))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public void invalidate(String shortUrl) {
+        cache.invalidate(shortUrl);
+    }
+
+    /**
+     * Evicts the short url locally and asks every other node to do the same.
+     */
+    public void invalidateEverywhere(String shortUrl) {
+        invalidate(shortUrl);
+        if (properties.isEnabled() && properties.isInvalidationEnabled())
+            redisTemplate.convertAndSend(properties.getInvalidationChannel(), shortUrl);
+    }
+
+    /**
+     * Batch variant of {@link #invalidateEverywhere(String)}, publishing the short urls as
+     * newline separated chunks instead of one message per url.
+     */
+    public void invalidateEverywhere(Collection<String> shortUrls) {
+        cache.invalidateAll(shortUrls);
+        if (!properties.isEnabled() || !properties.isInvalidationEnabled()) return;
+        for (List<String> chunk : Iterables.partition(shortUrls, INVALIDATION_CHUNK_SIZE))
+            redisTemplate.convertAndSend(properties.getInvalidationChannel(), String.join(INVALIDATION_SEPARATOR, chunk));
+    }
+
+    /**
+     * Non-blocking variant of {@link #invalidateEverywhere(String)}.
+     */
+    public Mono<Void> invalidateEverywhereReactive(String shortUrl) {
+        invalidate(shortUrl);
+        if (!properties.isEnabled() || !properties.isInvalidationEnabled()) return Mono.empty();
+        return reactiveRedisTemplate.convertAndSend(properties.getInvalidationChannel(), shortUrl).then();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Publishes the cache statistics (hits, misses, evictions, size) as {@code cache.*} meters.
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "urlNearCache");
+    }
+
+    private static final class HitMissExpiry implements Expiry<String, Optional<String>> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        private HitMissExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<String> value, long currentTime) {
+            if (value.isEmpty()) return negativeTtlNanos;
+            long remainingMillis = StoredUrl.expiresAtMillis(value.get()) - System.currentTimeMillis();
+            if (remainingMillis <= 0) return negativeTtlNanos;
+            return Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
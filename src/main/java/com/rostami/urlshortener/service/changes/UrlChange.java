@@ -0,0 +1,32 @@
+package com.rostami.urlshortener.service.changes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A short url creation as read from the change stream. The stored url is in the format of
+ * {@link com.rostami.urlshortener.service.StoredUrl}, so it carries the deadline of expiring urls.
+ */
+@Getter
+@AllArgsConstructor
+public class UrlChange {
+    /**
+     * Stream fields of a create event; kept to one letter, as every event repeats them.
+     */
+    public static final String SHORT_URL_FIELD = "s";
+    public static final String STORED_URL_FIELD = "u";
+
+    /**
+     * Stream id of the event, {@code <epoch millis>-<sequence>}; increases with every event.
+     */
+    private final String id;
+    private final String shortUrl;
+    private final String storedUrl;
+
+    /**
+     * @return when the short url was created, in epoch millis
+     */
+    public long createdAtMillis() {
+        return Long.parseLong(id, 0, id.indexOf('-'), 10);
+    }
+}
@@ -0,0 +1,19 @@
+package com.rostami.urlshortener.service.changes;
+
+import java.util.List;
+
+/**
+ * Builds something derived from the short urls, such as an index or a copy elsewhere, from the create
+ * events of the change stream (see {@link UrlChangeReader}). Beans implementing it are picked up by the
+ * reader.
+ * <p>
+ * Events are delivered at least once: a batch that fails, or that was read but not acknowledged before a
+ * restart, is delivered again, so handling an event twice must be harmless.
+ */
+public interface UrlChangeListener {
+
+    /**
+     * Takes a batch of create events, oldest first. Throwing has the whole batch delivered again.
+     */
+    void onCreated(List<UrlChange> changes);
+}
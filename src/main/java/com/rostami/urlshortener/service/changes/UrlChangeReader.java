@@ -0,0 +1,177 @@
+package com.rostami.urlshortener.service.changes;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlChangeProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the change stream as a member of the consumer {@code group} and hands the create events to the
+ * {@link UrlChangeListener}s, in batches of up to {@code read-batch-size}.
+ * <p>
+ * A batch is acknowledged once every listener took it, and the next one is only read after that, so slow
+ * listeners hold the reader back rather than have events pile up in memory. A batch the listeners fail to
+ * take is read again from the group's pending entries after {@code retry-backoff}, up to
+ * {@code max-attempts} times before it is acknowledged anyway and counted as dropped. On startup the entries
+ * this consumer read but never acknowledged, as before a crash, are delivered first.
+ */
+@Slf4j
+@Component
+public class UrlChangeReader {
+    private static final String PENDING = "0";
+
+    private final UrlChangeProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final UrlMetrics metrics;
+    private final List<UrlChangeListener> listeners;
+    private final Consumer consumer;
+    private volatile boolean running;
+    private ExecutorService reader;
+
+    public UrlChangeReader(UrlChangeProperties properties,
+                           StringRedisTemplate redisTemplate,
+                           UrlMetrics metrics,
+                           ObjectProvider<UrlChangeListener> listeners) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.listeners = listeners.orderedStream().collect(Collectors.toList());
+        String consumer = properties.getConsumer();
+        this.consumer = Consumer.from(properties.getGroup(),
+                consumer == null || consumer.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : consumer);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isReaderEnabled()) return;
+        if (listeners.isEmpty()) {
+            log.warn("url-shortener.changes.reader-enabled is set, but there are no change listeners to read for");
+            return;
+        }
+        createGroup();
+        running = true;
+        reader = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("change-reader-%d")
+                .setDaemon(true)
+                .build());
+        reader.execute(this::run);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (reader != null) {
+            reader.shutdown();
+            reader.awaitTermination(properties.getReadBlock().plus(properties.getRetryBackoff()).toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void run() {
+        String offset = PENDING;
+        int attempts = 0;
+        while (running) {
+            try {
+                List<StringRecord> records = read(offset);
+                if (records.isEmpty()) {
+                    // all pending entries are through, carry on with the new ones
+                    offset = ReadOffset.lastConsumed().getOffset();
+                    continue;
+                }
+                if (deliver(records, ++attempts)) {
+                    attempts = 0;
+                } else {
+                    offset = PENDING;
+                    LockSupport.parkNanos(properties.getRetryBackoff().toNanos());
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Could not read the change stream {}, retrying", properties.getStreamKey(), ex);
+                offset = PENDING;
+                LockSupport.parkNanos(properties.getRetryBackoff().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Reads the next batch: pending entries of this consumer for {@link #PENDING}, new ones otherwise.
+     */
+    List<StringRecord> read(String offset) {
+        StreamReadOptions options = StreamReadOptions.empty().count(properties.getReadBatchSize());
+        if (!PENDING.equals(offset)) options = options.block(properties.getReadBlock());
+        StreamReadOptions readOptions = options;
+        List<StringRecord> records = redisTemplate.execute((RedisCallback<List<StringRecord>>) connection ->
+                ((StringRedisConnection) connection).xReadGroupAsString(consumer, readOptions,
+                        StreamOffset.create(properties.getStreamKey(), ReadOffset.from(offset))));
+        return records != null ? records : List.of();
+    }
+
+    /**
+     * Hands the records to the listeners and acknowledges them, unless a listener failed and attempts are
+     * left.
+     *
+     * @return whether the records were acknowledged
+     */
+    boolean deliver(List<StringRecord> records, int attempt) {
+        List<UrlChange> changes = new ArrayList<>(records.size());
+        for (StringRecord record : records) {
+            Map<String, String> fields = record.getValue();
+            // pending entries trimmed from the stream meanwhile come back without their fields
+            if (fields == null || !fields.containsKey(UrlChange.SHORT_URL_FIELD)) continue;
+            changes.add(new UrlChange(record.getId().getValue(), fields.get(UrlChange.SHORT_URL_FIELD),
+                    fields.get(UrlChange.STORED_URL_FIELD)));
+        }
+        try {
+            if (!changes.isEmpty()) listeners.forEach(listener -> listener.onCreated(changes));
+            metrics.changesRead(changes.size());
+        } catch (RuntimeException ex) {
+            if (attempt < properties.getMaxAttempts()) {
+                log.warn("Change listeners failed on {} events (attempt {}), retrying", changes.size(), attempt, ex);
+                return false;
+            }
+            log.error("Change listeners failed on {} events {} times, dropping them", changes.size(), attempt, ex);
+            metrics.changesDropped(changes.size());
+        }
+        RecordId[] ids = records.stream().map(StringRecord::getId).toArray(RecordId[]::new);
+        redisTemplate.execute((RedisCallback<Long>) connection ->
+                ((StringRedisConnection) connection).xAck(properties.getStreamKey(), properties.getGroup(), ids));
+        return true;
+    }
+
+    /**
+     * Creates the group, and the stream with it, starting at the oldest event; a group that already exists
+     * is kept as it is.
+     */
+    private void createGroup() {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> ((StringRedisConnection) connection)
+                    .xGroupCreate(properties.getStreamKey(), ReadOffset.from(PENDING), properties.getGroup(), true));
+            log.info("Created consumer group {} on {}", properties.getGroup(), properties.getStreamKey());
+        } catch (RedisSystemException ex) {
+            if (ex.getMostSpecificCause().getMessage() == null
+                    || !ex.getMostSpecificCause().getMessage().startsWith("BUSYGROUP")) throw ex;
+        }
+    }
+}
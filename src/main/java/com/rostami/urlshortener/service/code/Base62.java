@@ -0,0 +1,45 @@
+package com.rostami.urlshortener.service.code;
+
+public final class Base62 {
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int BASE = ALPHABET.length;
+
+    /**
+     * Longest code whose value range still fits into a positive long.
+     */
+    public static final int MAX_LENGTH = 10;
+
+    private Base62() {
+    }
+
+    public static String encode(long value) {
+        return encode(value, 1);
+    }
+
+    /**
+     * Encodes a non-negative value, left padding the result with zeros up to {@code minLength}.
+     */
+    public static String encode(long value, int minLength) {
+        if (value < 0) throw new IllegalArgumentException("Value must not be negative: " + value);
+        char[] buffer = new char[Math.max(11, minLength)];
+        int position = buffer.length;
+        do {
+            buffer[--position] = ALPHABET[(int) (value % BASE)];
+            value /= BASE;
+        } while (value > 0);
+        while (buffer.length - position < minLength)
+            buffer[--position] = ALPHABET[0];
+        return new String(buffer, position, buffer.length - position);
+    }
+
+    /**
+     * Number of distinct codes of the given length.
+     */
+    public static long space(int length) {
+        if (length < 1 || length > MAX_LENGTH)
+            throw new IllegalArgumentException("Length must be between 1 and " + MAX_LENGTH + ": " + length);
+        long space = 1;
+        for (int i = 0; i < length; i++) space *= BASE;
+        return space;
+    }
+}
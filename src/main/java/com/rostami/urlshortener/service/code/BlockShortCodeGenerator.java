@@ -0,0 +1,32 @@
+package com.rostami.urlshortener.service.code;
+
+/**
+ * Like {@link CounterShortCodeGenerator}, but reserves a whole block of ids at once and hands them out
+ * locally, so only one in {@code blockSize} creates pays for a round trip to the shared sequence.
+ * Codes are unique across nodes but not ordered by creation time between them.
+ */
+public class BlockShortCodeGenerator implements ShortCodeGenerator {
+    private final SequenceAllocator sequence;
+    private final long blockSize;
+    private long next;
+    private long end;
+
+    public BlockShortCodeGenerator(SequenceAllocator sequence, long blockSize) {
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public String generate(String originalUrl, int attempt) {
+        return Base62.encode(nextId());
+    }
+
+    private synchronized long nextId() {
+        if (next == end) {
+            long last = sequence.allocate(blockSize);
+            next = last - blockSize + 1;
+            end = last + 1;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,30 @@
+package com.rostami.urlshortener.service.code;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base62 encoded value of a shared counter; one INCR per code, shortest possible codes.
+ */
+public class CounterShortCodeGenerator implements ShortCodeGenerator {
+    private final SequenceAllocator sequence;
+
+    public CounterShortCodeGenerator(SequenceAllocator sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String generate(String originalUrl, int attempt) {
+        return Base62.encode(sequence.allocate(1));
+    }
+
+    @Override
+    public List<String> generateAll(List<String> originalUrls) {
+        List<String> codes = new ArrayList<>(originalUrls.size());
+        if (originalUrls.isEmpty()) return codes;
+        long first = sequence.allocate(originalUrls.size()) - originalUrls.size() + 1;
+        for (int i = 0; i < originalUrls.size(); i++)
+            codes.add(Base62.encode(first + i));
+        return codes;
+    }
+}
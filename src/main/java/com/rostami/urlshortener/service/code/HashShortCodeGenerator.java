@@ -0,0 +1,25 @@
+package com.rostami.urlshortener.service.code;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed length base62 code derived from a murmur3 hash of the url, seeded with the attempt so a conflict
+ * leads to a completely different code. The same url always gets the same first-attempt code.
+ */
+public class HashShortCodeGenerator implements ShortCodeGenerator {
+    private final int length;
+    private final long space;
+
+    public HashShortCodeGenerator(int length) {
+        this.length = length;
+        this.space = Base62.space(length);
+    }
+
+    @Override
+    public String generate(String originalUrl, int attempt) {
+        long hash = Hashing.murmur3_128(attempt).hashString(originalUrl, StandardCharsets.UTF_8).asLong();
+        return Base62.encode(Long.remainderUnsigned(hash, space), length);
+    }
+}
@@ -0,0 +1,20 @@
+package com.rostami.urlshortener.service.code;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Objects;
+
+public class RedisSequenceAllocator implements SequenceAllocator {
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+
+    public RedisSequenceAllocator(StringRedisTemplate redisTemplate, String key) {
+        this.redisTemplate = redisTemplate;
+        this.key = key;
+    }
+
+    @Override
+    public long allocate(long count) {
+        return Objects.requireNonNull(redisTemplate.opsForValue().increment(key, count));
+    }
+}
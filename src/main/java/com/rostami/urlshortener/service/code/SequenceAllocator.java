@@ -0,0 +1,13 @@
+package com.rostami.urlshortener.service.code;
+
+/**
+ * Cluster wide, monotonically increasing id sequence.
+ */
+@FunctionalInterface
+public interface SequenceAllocator {
+
+    /**
+     * Reserves {@code count} consecutive ids and returns the last one (INCRBY semantics).
+     */
+    long allocate(long count);
+}
@@ -0,0 +1,28 @@
+package com.rostami.urlshortener.service.code;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Produces the short code a url is stored under.
+ * <p>
+ * Codes are always claimed with SETNX by the caller, so a generator may hand out a code that is already
+ * taken; the caller then asks again with a higher {@code attempt}.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * @param originalUrl the url to shorten
+     * @param attempt     0 for the first try, increased every time the previous code was taken by another url
+     */
+    String generate(String originalUrl, int attempt);
+
+    /**
+     * Generates the first-attempt codes of many urls at once, in the order of the given urls.
+     */
+    default List<String> generateAll(List<String> originalUrls) {
+        List<String> codes = new ArrayList<>(originalUrls.size());
+        originalUrls.forEach(originalUrl -> codes.add(generate(originalUrl, 0)));
+        return codes;
+    }
+}
@@ -0,0 +1,46 @@
+package com.rostami.urlshortener.service.dedup;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter of the urls recently created on this node, telling whether the reverse index is worth asking.
+ * <p>
+ * Two generations are kept; once the current one holds its expected number of urls it becomes the previous
+ * one and a fresh filter takes its place, so memory and false positive rate stay bounded.
+ */
+class RecentUrlFilter {
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private volatile BloomFilter<CharSequence> current;
+    private volatile BloomFilter<CharSequence> previous;
+
+    RecentUrlFilter(long expectedInsertions, double falsePositiveProbability) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.current = newFilter();
+        this.previous = newFilter();
+    }
+
+    boolean mightContain(String originalUrl) {
+        return current.mightContain(originalUrl) || previous.mightContain(originalUrl);
+    }
+
+    void put(String originalUrl) {
+        BloomFilter<CharSequence> filter = current;
+        filter.put(originalUrl);
+        if (filter.approximateElementCount() >= expectedInsertions) rotate(filter);
+    }
+
+    private synchronized void rotate(BloomFilter<CharSequence> full) {
+        if (current != full) return;
+        previous = full;
+        current = newFilter();
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, falsePositiveProbability);
+    }
+}
@@ -0,0 +1,107 @@
+package com.rostami.urlshortener.service.dedup;
+
+import com.google.common.hash.Hashing;
+import com.rostami.urlshortener.config.UrlDedupProperties;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reverse index from original url to short url, so repeated creates of the same url are answered
+ * without writing to redis.
+ * <p>
+ * The reverse index is only consulted for urls the {@link RecentUrlFilter} has seen, which keeps creates of
+ * new urls at their usual cost. A false positive only costs one extra GET; a url the filter has not seen
+ * (or that was shortened on another node) simply gets claimed as usual, so no mapping is ever lost.
+ */
+@Component
+public class UrlDeduplicator {
+    private final UrlDedupProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final RecentUrlFilter recentUrls;
+
+    public UrlDeduplicator(UrlDedupProperties properties,
+                           StringRedisTemplate redisTemplate,
+                           ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.recentUrls = new RecentUrlFilter(properties.getExpectedInsertions(), properties.getFalsePositiveProbability());
+    }
+
+    /**
+     * @return the short url the given url was already stored under, or null when it has to be created
+     */
+    public String findExisting(String originalUrl) {
+        if (!properties.isEnabled() || !recentUrls.mightContain(originalUrl)) return null;
+        return redisTemplate.opsForValue().get(reverseKey(originalUrl));
+    }
+
+    /**
+     * Batch variant of {@link #findExisting(String)} using one MGET for all the urls the filter has seen.
+     *
+     * @return short urls by original url, only for the urls that already exist
+     */
+    public Map<String, String> findExisting(List<String> originalUrls) {
+        Map<String, String> existing = new HashMap<>();
+        if (!properties.isEnabled()) return existing;
+        List<String> candidates = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (String originalUrl : originalUrls) {
+            if (!recentUrls.mightContain(originalUrl)) continue;
+            candidates.add(originalUrl);
+            keys.add(reverseKey(originalUrl));
+        }
+        if (keys.isEmpty()) return existing;
+        List<String> shortUrls = redisTemplate.opsForValue().multiGet(keys);
+        if (shortUrls == null) return existing;
+        for (int i = 0; i < candidates.size(); i++)
+            if (shortUrls.get(i) != null) existing.put(candidates.get(i), shortUrls.get(i));
+        return existing;
+    }
+
+    public Mono<String> findExistingReactive(String originalUrl) {
+        if (!properties.isEnabled() || !recentUrls.mightContain(originalUrl)) return Mono.empty();
+        return reactiveRedisTemplate.opsForValue().get(reverseKey(originalUrl));
+    }
+
+    public void remember(String originalUrl, String shortUrl) {
+        if (!properties.isEnabled()) return;
+        redisTemplate.opsForValue().set(reverseKey(originalUrl), shortUrl);
+        recentUrls.put(originalUrl);
+    }
+
+    /**
+     * Batch variant of {@link #remember(String, String)}, writing the reverse index entries in one pipeline.
+     */
+    public void rememberAll(Map<String, String> shortUrlsByOriginalUrl) {
+        if (!properties.isEnabled() || shortUrlsByOriginalUrl.isEmpty()) return;
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            var stringConnection = (StringRedisConnection) connection;
+            shortUrlsByOriginalUrl.forEach((originalUrl, shortUrl) -> stringConnection.set(reverseKey(originalUrl), shortUrl));
+            return null;
+        });
+        shortUrlsByOriginalUrl.keySet().forEach(recentUrls::put);
+    }
+
+    public Mono<Void> rememberReactive(String originalUrl, String shortUrl) {
+        if (!properties.isEnabled()) return Mono.empty();
+        return reactiveRedisTemplate.opsForValue().set(reverseKey(originalUrl), shortUrl)
+                .doOnSuccess(ignored -> recentUrls.put(originalUrl))
+                .then();
+    }
+
+    private String reverseKey(String originalUrl) {
+        return properties.getReverseKeyPrefix() + Hashing.murmur3_128().hashString(originalUrl, StandardCharsets.UTF_8);
+    }
+}
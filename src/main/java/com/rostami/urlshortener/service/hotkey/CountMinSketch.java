@@ -0,0 +1,63 @@
+package com.rostami.urlshortener.service.hotkey;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min sketch: {@code depth} rows of {@code width} counters, every key counted in one counter per row
+ * picked by a row specific hash. A key's estimate is its smallest counter, which is never below its true
+ * count and only above it by the keys sharing all of its counters. Increments are atomic, so any number of
+ * threads may count concurrently.
+ */
+final class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        int roundedWidth = Math.max(16, Integer.highestOneBit(width - 1) << 1);
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicIntegerArray(depth * roundedWidth);
+    }
+
+    /**
+     * @return the key's estimate including this increment
+     */
+    int increment(String key) {
+        long hash = hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        return estimate;
+    }
+
+    int estimate(String key) {
+        long hash = hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) estimate = Math.min(estimate, counters.get(index(hash, row)));
+        return estimate;
+    }
+
+    void clear() {
+        for (int i = 0; i < counters.length(); i++) counters.lazySet(i, 0);
+    }
+
+    /**
+     * Derives the row's counter from the two halves of one 64 bit hash (Kirsch-Mitzenmacher); every row has
+     * its own slice of the array.
+     */
+    private int index(long hash, int row) {
+        int combined = (int) hash + row * (int) (hash >>> 32);
+        return row * (mask + 1) + (combined & mask);
+    }
+
+    private static long hash(String key) {
+        long hash = key.hashCode() * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+}
@@ -0,0 +1,24 @@
+package com.rostami.urlshortener.service.hotkey;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Pins the short urls another node found hot, see {@link HotKeyTracker}.
+ */
+@Component
+@RequiredArgsConstructor
+public class HotKeyBroadcastListener implements MessageListener {
+    private final HotKeyTracker hotKeyTracker;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        hotKeyTracker.pinFromOtherNode(List.of(body.split("\n")));
+    }
+}
@@ -0,0 +1,228 @@
+package com.rostami.urlshortener.service.hotkey;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlHotKeyProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the short urls that are resolved the most and pins them in memory, so a viral link stops turning its
+ * redis key, and the shard or connection behind it, into a hotspot.
+ * <p>
+ * A sample of the resolves is counted in a {@link CountMinSketch}; short urls whose estimate reaches half the
+ * threshold within a detection interval become candidates. At the end of the interval a background thread
+ * keeps the {@code top-k} candidates, pins the ones at or above the threshold, publishes them to the other
+ * nodes and starts counting afresh. Pinned stored urls are read again every {@code refresh-interval} in one
+ * batch, off the request path, and unpinned once they haven't been hot anywhere for {@code pin-duration} or
+ * are gone from the storage. Mappings are never overwritten, so a pinned stored url can't go stale; expiry is
+ * still checked on every resolve.
+ */
+@Slf4j
+@Component
+public class HotKeyTracker {
+    private static final int REFRESH_CHUNK_SIZE = 1_000;
+
+    private final UrlHotKeyProperties properties;
+    private final UrlRepository urlRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final UrlMetrics metrics;
+    private final CountMinSketch[] sketches;
+    private final int candidateEstimate;
+    private final int maxCandidates;
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+    private final Map<String, Pin> pins = new ConcurrentHashMap<>();
+    private volatile CountMinSketch sketch;
+    private volatile List<HotKey> topKeys = List.of();
+    private ScheduledExecutorService detector;
+
+    public HotKeyTracker(UrlHotKeyProperties properties,
+                         UrlRepository urlRepository,
+                         StringRedisTemplate redisTemplate,
+                         UrlMetrics metrics) {
+        this.properties = properties;
+        this.urlRepository = urlRepository;
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.sketches = new CountMinSketch[]{
+                new CountMinSketch(properties.getSketchDepth(), properties.getSketchWidth()),
+                new CountMinSketch(properties.getSketchDepth(), properties.getSketchWidth())};
+        this.sketch = sketches[0];
+        double sampledPerInterval = (double) properties.getThreshold()
+                * properties.getDetectionInterval().toMillis() / 1000 / properties.getSampleRate();
+        this.candidateEstimate = (int) Math.max(1, sampledPerInterval / 2);
+        this.maxCandidates = properties.getTopK() * 16;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) return;
+        detector = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("hot-keys-%d")
+                .setDaemon(true)
+                .build());
+        long detectionMillis = properties.getDetectionInterval().toMillis();
+        long refreshMillis = properties.getRefreshInterval().toMillis();
+        detector.scheduleWithFixedDelay(() -> runSafely(this::detect), detectionMillis, detectionMillis, TimeUnit.MILLISECONDS);
+        detector.scheduleWithFixedDelay(() -> runSafely(this::refresh), refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (detector != null) detector.shutdownNow();
+    }
+
+    /**
+     * Counts a resolve of the short url, or rather one in {@code sample-rate} of them.
+     */
+    public void record(String shortUrl) {
+        if (!properties.isEnabled() || ThreadLocalRandom.current().nextInt(properties.getSampleRate()) != 0) return;
+        int estimate = sketch.increment(shortUrl);
+        if (estimate >= candidateEstimate && candidates.size() < maxCandidates && !candidates.contains(shortUrl))
+            candidates.add(shortUrl);
+    }
+
+    /**
+     * @return the stored url of the short url if it is pinned, null otherwise
+     */
+    public String pinned(String shortUrl) {
+        if (pins.isEmpty()) return null;
+        Pin pin = pins.get(shortUrl);
+        if (pin == null || pin.storedUrl == null) return null;
+        metrics.pinnedResolve();
+        return pin.storedUrl;
+    }
+
+    /**
+     * Pins short urls another node found hot; loading them happens on the background thread.
+     */
+    public void pinFromOtherNode(List<String> shortUrls) {
+        if (detector != null) detector.execute(() -> runSafely(() -> pin(shortUrls)));
+    }
+
+    /**
+     * @return the most resolved short urls of the last detection interval, the most resolved first
+     */
+    public List<HotKey> topKeys() {
+        return topKeys;
+    }
+
+    public Set<String> pinnedKeys() {
+        return Set.copyOf(pins.keySet());
+    }
+
+    /**
+     * Ends the current detection interval.
+     */
+    void detect() {
+        CountMinSketch counted = sketch;
+        sketch = counted == sketches[0] ? sketches[1] : sketches[0];
+        double scale = properties.getSampleRate() * 1000.0 / properties.getDetectionInterval().toMillis();
+        var top = new PriorityQueue<>(Comparator.comparingLong(HotKey::getResolvesPerSecond));
+        for (String candidate : candidates) {
+            top.add(new HotKey(candidate, Math.round(counted.estimate(candidate) * scale)));
+            if (top.size() > properties.getTopK()) top.poll();
+        }
+        candidates.clear();
+        counted.clear();
+        List<HotKey> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingLong(HotKey::getResolvesPerSecond).reversed());
+        topKeys = List.copyOf(ranked);
+        List<String> hot = ranked.stream()
+                .filter(hotKey -> hotKey.getResolvesPerSecond() >= properties.getThreshold())
+                .map(HotKey::getShortUrl)
+                .collect(Collectors.toList());
+        if (hot.isEmpty()) return;
+        pin(hot);
+        if (properties.isBroadcastEnabled())
+            redisTemplate.convertAndSend(properties.getBroadcastChannel(), String.join("\n", hot));
+    }
+
+    /**
+     * Drops the pins that cooled off and reads the remaining ones again.
+     */
+    void refresh() {
+        long now = System.currentTimeMillis();
+        pins.values().removeIf(pin -> pin.hotUntilMillis < now);
+        load(new ArrayList<>(pins.keySet()));
+    }
+
+    void pin(Collection<String> shortUrls) {
+        long hotUntilMillis = System.currentTimeMillis() + properties.getPinDuration().toMillis();
+        List<String> added = new ArrayList<>();
+        for (String shortUrl : shortUrls) {
+            Pin pin = pins.get(shortUrl);
+            if (pin != null) {
+                pin.hotUntilMillis = hotUntilMillis;
+            } else if (pins.size() < properties.getMaxPinned()) {
+                pins.put(shortUrl, new Pin(hotUntilMillis));
+                added.add(shortUrl);
+            }
+        }
+        if (!added.isEmpty()) {
+            log.info("Pinning hot short urls {}", added);
+            load(added);
+        }
+    }
+
+    private void load(List<String> shortUrls) {
+        for (List<String> chunk : Iterables.partition(shortUrls, REFRESH_CHUNK_SIZE)) {
+            List<String> storedUrls = urlRepository.findAll(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (storedUrls.get(i) == null) {
+                    pins.remove(chunk.get(i));
+                    continue;
+                }
+                Pin pin = pins.get(chunk.get(i));
+                if (pin != null) pin.storedUrl = storedUrls.get(i);
+            }
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.warn("Hot key tracking failed", ex);
+        }
+    }
+
+    private static final class Pin {
+        private volatile String storedUrl;
+        private volatile long hotUntilMillis;
+
+        private Pin(long hotUntilMillis) {
+            this.hotUntilMillis = hotUntilMillis;
+        }
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class HotKey {
+        private final String shortUrl;
+        private final long resolvesPerSecond;
+    }
+}
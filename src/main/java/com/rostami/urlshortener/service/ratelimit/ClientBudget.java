@@ -0,0 +1,77 @@
+package com.rostami.urlshortener.service.ratelimit;
+
+/**
+ * One client's token bucket on this node together with its view of the shared budget of the current window:
+ * what the other nodes and this one had used at the last sync, plus what this node used since.
+ * <p>
+ * A request is admitted when the bucket holds a token for every permit and the shared budget has room for
+ * all of them, so neither ever goes into debt; requests for more permits than fit at all are turned away by
+ * {@link CreateRateLimiter} beforehand.
+ */
+class ClientBudget {
+    private final long limit;
+    private final long burst;
+    private final long periodMillis;
+    private double tokens;
+    private long refilledAt;
+    private long window;
+    private long sharedUsed;
+    private long pending;
+
+    ClientBudget(long limit, long burst, long periodMillis, long now) {
+        this.limit = limit;
+        this.burst = burst;
+        this.periodMillis = periodMillis;
+        this.tokens = burst;
+        this.refilledAt = now;
+        this.window = now / periodMillis;
+    }
+
+    /**
+     * @return 0 when admitted, otherwise the millis after which the client may try again
+     */
+    synchronized long tryAcquire(int permits, long now) {
+        roll(now);
+        tokens = Math.min(burst, tokens + (double) (now - refilledAt) * limit / periodMillis);
+        refilledAt = now;
+        if (tokens < permits) return (long) Math.ceil((permits - tokens) * periodMillis / limit);
+        if (sharedUsed + pending + permits > limit) return (window + 1) * periodMillis - now;
+        tokens -= permits;
+        pending += permits;
+        return 0;
+    }
+
+    /**
+     * Hands the consumption since the last sync over to the sync.
+     *
+     * @return the window and the permits taken, as a pair
+     */
+    synchronized long[] takePending(long now) {
+        roll(now);
+        long taken = pending;
+        pending = 0;
+        return new long[]{window, taken};
+    }
+
+    /**
+     * Takes over the shared budget's usage, which includes the permits just synced.
+     */
+    synchronized void synced(long syncedWindow, long used) {
+        if (syncedWindow == window) sharedUsed = used;
+    }
+
+    /**
+     * Puts back the permits of a sync that failed.
+     */
+    synchronized void restore(long syncedWindow, long permits) {
+        if (syncedWindow == window) pending += permits;
+    }
+
+    private void roll(long now) {
+        long current = now / periodMillis;
+        if (current == window) return;
+        window = current;
+        sharedUsed = 0;
+        pending = 0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.rostami.urlshortener.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlRateLimitProperties;
+import com.rostami.urlshortener.exception.RateLimitExceededException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.BATCH_OVER_RATE_LIMIT_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.RATE_LIMIT_EXCEEDED_MESSAGE;
+
+/**
+ * Per client limit on short url creation that costs no redis round trip on the request path.
+ * <p>
+ * Every node keeps a token bucket per client (see {@link ClientBudget}) in a bounded Caffeine map. A
+ * background thread adds what each client used since the previous sync to a shared counter per client and
+ * window in redis, with pipelined INCRBY commands, and hands the totals back to the buckets. The limit is
+ * thereby enforced across nodes up to what the other nodes admit within one {@code sync-interval}. Clients
+ * that create nothing on a node aren't synced there, so their first requests on it only see the local bucket.
+ * Batch imports are limited the same way, with a bucket and shared counter of their own.
+ */
+@Slf4j
+@Component
+public class CreateRateLimiter {
+    private static final String BATCH_CLIENT_PREFIX = "batch:";
+
+    private final UrlRateLimitProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final UrlMetrics metrics;
+    private final Cache<String, ClientBudget> budgets;
+    private ScheduledExecutorService syncer;
+
+    public CreateRateLimiter(UrlRateLimitProperties properties, StringRedisTemplate redisTemplate, UrlMetrics metrics) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.budgets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedClients())
+                .expireAfterAccess(properties.getPeriod().multipliedBy(2))
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) return;
+        long intervalMillis = properties.getSyncInterval().toMillis();
+        syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("rate-limit-sync-%d")
+                .setDaemon(true)
+                .build());
+        syncer.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (syncer != null) syncer.shutdownNow();
+    }
+
+    /**
+     * Charges the client for the given number of short urls.
+     *
+     * @param forwardedFor the X-Forwarded-For header, if any
+     * @throws RateLimitExceededException when the client has to wait
+     * @throws IllegalArgumentException when more permits are asked for than the burst or limit allow at all
+     */
+    public void acquire(String remoteAddress, String forwardedFor, int permits) {
+        if (!properties.isEnabled()) return;
+        acquire(client(remoteAddress, forwardedFor), permits, properties.getLimit(), properties.getBurst());
+    }
+
+    /**
+     * Like {@link #acquire(String, String, int)}, for bulk imports: charged to a budget of the client's own,
+     * {@code batch-limit} per period with a {@code batch-burst}, so an import is neither held to the rate of
+     * single creates nor uses it up.
+     */
+    public void acquireBatch(String remoteAddress, String forwardedFor, int permits) {
+        if (!properties.isEnabled()) return;
+        acquire(BATCH_CLIENT_PREFIX + client(remoteAddress, forwardedFor), permits,
+                properties.getBatchLimit(), properties.getBatchBurst());
+    }
+
+    private void acquire(String client, int permits, long limit, long burst) {
+        long maxPermits = Math.min(burst, limit);
+        if (permits > maxPermits)
+            throw new IllegalArgumentException(String.format(BATCH_OVER_RATE_LIMIT_MESSAGE, maxPermits));
+        long now = System.currentTimeMillis();
+        ClientBudget budget = budgets.get(client, key ->
+                new ClientBudget(limit, burst, properties.getPeriod().toMillis(), now));
+        long retryAfterMillis = budget.tryAcquire(permits, now);
+        if (retryAfterMillis == 0) return;
+        metrics.rateLimited();
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        throw new RateLimitExceededException(RATE_LIMIT_EXCEEDED_MESSAGE, retryAfterSeconds);
+    }
+
+    /**
+     * Adds the local consumption to the shared budgets and takes over their totals.
+     */
+    public void sync() {
+        long now = System.currentTimeMillis();
+        List<Pending> pending = new ArrayList<>();
+        budgets.asMap().forEach((client, budget) -> {
+            long[] taken = budget.takePending(now);
+            if (taken[1] > 0) pending.add(new Pending(client, budget, taken[0], taken[1]));
+        });
+        for (List<Pending> chunk : Iterables.partition(pending, properties.getSyncChunkSize())) {
+            try {
+                sync(chunk);
+            } catch (RuntimeException ex) {
+                chunk.forEach(entry -> entry.budget.restore(entry.window, entry.permits));
+                log.warn("Could not sync rate limits of {} clients", chunk.size(), ex);
+            }
+        }
+    }
+
+    private void sync(List<Pending> chunk) {
+        long expireMillis = properties.getPeriod().toMillis() * 2;
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            var stringConnection = (StringRedisConnection) connection;
+            for (Pending entry : chunk) {
+                String key = properties.getKeyPrefix() + entry.window + ":" + entry.client;
+                stringConnection.incrBy(key, entry.permits);
+                stringConnection.pExpire(key, expireMillis);
+            }
+            return null;
+        });
+        for (int i = 0; i < chunk.size(); i++)
+            chunk.get(i).budget.synced(chunk.get(i).window, ((Number) results.get(2 * i)).longValue());
+    }
+
+    private String client(String remoteAddress, String forwardedFor) {
+        if (properties.isTrustForwardedFor() && forwardedFor != null && !forwardedFor.isBlank()) {
+            int comma = forwardedFor.indexOf(',');
+            return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+        }
+        return remoteAddress;
+    }
+
+    private static class Pending {
+        private final String client;
+        private final ClientBudget budget;
+        private final long window;
+        private final long permits;
+
+        private Pending(String client, ClientBudget budget, long window, long permits) {
+            this.client = client;
+            this.budget = budget;
+            this.window = window;
+            this.permits = permits;
+        }
+    }
+}
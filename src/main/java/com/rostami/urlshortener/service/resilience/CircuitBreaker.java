@@ -0,0 +1,124 @@
+package com.rostami.urlshortener.service.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Count based circuit breaker. The outcomes of the last {@code window} calls are kept in a ring; once at
+ * least {@code minimumCalls} were seen and the failed share reaches {@code failureRatio}, the breaker opens
+ * and turns calls away for {@code openNanos}. After that one trial call is let through (half open): its
+ * success closes the breaker with a clean window, its failure opens it again.
+ * <p>
+ * Recording is lock free; concurrent calls may see the failure count a few outcomes off, which only moves
+ * the moment the breaker opens by as much.
+ */
+@Slf4j
+final class CircuitBreaker {
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    enum Permit {DENIED, CALL, TRIAL}
+
+    private final int window;
+    private final int minimumCalls;
+    private final double failureRatio;
+    private final long openNanos;
+    private final AtomicIntegerArray outcomes;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile long openUntilNanos;
+
+    CircuitBreaker(int window, int minimumCalls, double failureRatio, long openNanos) {
+        this.window = window;
+        this.minimumCalls = minimumCalls;
+        this.failureRatio = failureRatio;
+        this.openNanos = openNanos;
+        this.outcomes = new AtomicIntegerArray(window);
+    }
+
+    /**
+     * @return whether the call may go ahead; when it does, its outcome must be reported
+     */
+    boolean allow() {
+        return acquire() != Permit.DENIED;
+    }
+
+    /**
+     * Like {@link #allow()}, but tells the trial call of a half open breaker apart, for callers that may
+     * give a call up before it has an outcome (see {@link #onCancel(Permit)}).
+     */
+    Permit acquire() {
+        State current = state.get();
+        if (current == State.CLOSED) return Permit.CALL;
+        if (current == State.OPEN) {
+            if (System.nanoTime() < openUntilNanos) return Permit.DENIED;
+            state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return trialInFlight.compareAndSet(false, true) ? Permit.TRIAL : Permit.DENIED;
+    }
+
+    void onSuccess() {
+        if (state.get() == State.HALF_OPEN) {
+            reset();
+            state.set(State.CLOSED);
+            trialInFlight.set(false);
+            log.info("Storage lookups recovered, circuit breaker closed");
+            return;
+        }
+        record(0);
+    }
+
+    void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            open();
+            trialInFlight.set(false);
+            return;
+        }
+        int seen = record(1);
+        if (seen >= minimumCalls && failures.get() >= failureRatio * seen
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openUntilNanos = System.nanoTime() + openNanos;
+            log.warn("Storage lookups failing, circuit breaker open for {} ms", openNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Reports a call given up before it had an outcome, such as one whose caller went away. Only a trial
+     * call counts, as a failure, so the half open breaker isn't left waiting for it; other calls aren't
+     * recorded at all.
+     */
+    void onCancel(Permit permit) {
+        if (permit == Permit.TRIAL) onFailure();
+    }
+
+    State state() {
+        return state.get();
+    }
+
+    /**
+     * @return the number of outcomes in the window, which stops growing once it is full
+     */
+    private int record(int outcome) {
+        long call = calls.getAndIncrement();
+        int previous = outcomes.getAndSet((int) (call % window), outcome);
+        if (outcome != previous) failures.addAndGet(outcome - previous);
+        return (int) Math.min(call + 1, window);
+    }
+
+    private void open() {
+        openUntilNanos = System.nanoTime() + openNanos;
+        state.set(State.OPEN);
+    }
+
+    private void reset() {
+        for (int i = 0; i < window; i++) outcomes.set(i, 0);
+        failures.set(0);
+        calls.set(0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.rostami.urlshortener.service.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.exception.StorageUnavailableException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Keeps resolves going while the storage is slow or failing, as during a fork for an RDB snapshot or a
+ * failover.
+ * <p>
+ * Every storage lookup gets the {@code budget}; one that takes longer, fails, or can't get one of the
+ * {@code lookup-threads}, is answered from a bounded stale copy of the recently resolved mappings, or fails
+ * with {@link StorageUnavailableException} when the short url isn't in it. Mappings are never overwritten,
+ * so a stale copy is only stale in that its short url may have been removed since; expiry is still checked
+ * by the services. A lookup that is over budget keeps running and still refreshes the stale copy.
+ * <p>
+ * Over budget and failed lookups trip a {@link CircuitBreaker}; while it is open, lookups are answered
+ * without going to the storage at all, so a sick storage isn't buried under blocked threads.
+ */
+@Component
+public class ResolveGuard {
+    private final UrlResilienceProperties properties;
+    private final UrlMetrics metrics;
+    private final long budgetNanos;
+    private final CircuitBreaker breaker;
+    private final Cache<String, String> stale;
+    private ThreadPoolExecutor lookups;
+
+    public ResolveGuard(UrlResilienceProperties properties, UrlMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.budgetNanos = properties.getBudget().toNanos();
+        this.breaker = new CircuitBreaker(properties.getBreakerWindow(), properties.getBreakerMinimumCalls(),
+                properties.getBreakerFailureRatio(), properties.getBreakerOpenDuration().toNanos());
+        this.stale = Caffeine.newBuilder()
+                .maximumSize(properties.getStaleMaximumSize())
+                .expireAfterWrite(properties.getStaleTtl())
+                .build();
+        if (properties.isEnabled())
+            this.lookups = new ThreadPoolExecutor(properties.getLookupThreads(), properties.getLookupThreads(),
+                    0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), new ThreadFactoryBuilder()
+                    .setNameFormat("resolve-lookup-%d")
+                    .setDaemon(true)
+                    .build());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (lookups != null) lookups.shutdownNow();
+    }
+
+    /**
+     * Looks the short url up with the loader within the budget.
+     *
+     * @return the stored url, or null when the short url is not mapped
+     */
+    public String find(String shortUrl, Function<String, String> loader) {
+        if (!properties.isEnabled()) return loader.apply(shortUrl);
+        if (!breaker.allow()) {
+            metrics.breakerRejection();
+            return fallback(shortUrl, StorageUnavailableException.INSTANCE);
+        }
+        Future<String> lookup;
+        try {
+            lookup = lookups.submit(() -> remember(shortUrl, loader.apply(shortUrl)));
+        } catch (RejectedExecutionException ex) {
+            breaker.onFailure();
+            return fallback(shortUrl, StorageUnavailableException.INSTANCE);
+        }
+        try {
+            String storedUrl = lookup.get(budgetNanos, TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            return storedUrl;
+        } catch (TimeoutException ex) {
+            breaker.onFailure();
+            return fallback(shortUrl, StorageUnavailableException.INSTANCE);
+        } catch (ExecutionException ex) {
+            breaker.onFailure();
+            return fallback(shortUrl, ex.getCause() instanceof RuntimeException
+                    ? (RuntimeException) ex.getCause()
+                    : new IllegalStateException("Could not look up " + shortUrl, ex.getCause()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            breaker.onFailure();
+            lookup.cancel(true);
+            throw new IllegalStateException("Interrupted while looking up " + shortUrl, ex);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #find(String, Function)}; completes empty when the short url is not
+     * mapped. An over budget lookup is cancelled instead.
+     */
+    public Mono<String> findReactive(String shortUrl, Function<String, Mono<String>> loader) {
+        if (!properties.isEnabled()) return loader.apply(shortUrl);
+        return Mono.defer(() -> {
+            CircuitBreaker.Permit permit = breaker.acquire();
+            if (permit == CircuitBreaker.Permit.DENIED) {
+                metrics.breakerRejection();
+                return Mono.fromCallable(() -> fallback(shortUrl, StorageUnavailableException.INSTANCE));
+            }
+            return loader.apply(shortUrl)
+                    .doOnNext(storedUrl -> remember(shortUrl, storedUrl))
+                    .timeout(properties.getBudget(), Mono.error(StorageUnavailableException.INSTANCE))
+                    .doOnSuccess(storedUrl -> breaker.onSuccess())
+                    // cancels mostly come from clients going away, they say nothing about the storage
+                    .doOnCancel(() -> breaker.onCancel(permit))
+                    .onErrorResume(ex -> {
+                        breaker.onFailure();
+                        return Mono.fromCallable(() -> fallback(shortUrl, ex instanceof RuntimeException
+                                ? (RuntimeException) ex
+                                : new IllegalStateException("Could not look up " + shortUrl, ex)));
+                    });
+        });
+    }
+
+    private String remember(String shortUrl, String storedUrl) {
+        if (storedUrl != null) stale.put(shortUrl, storedUrl);
+        return storedUrl;
+    }
+
+    private String fallback(String shortUrl, RuntimeException failure) {
+        String storedUrl = stale.getIfPresent(shortUrl);
+        if (storedUrl == null) throw failure;
+        metrics.staleResolve();
+        return storedUrl;
+    }
+}
@@ -0,0 +1,78 @@
+package com.rostami.urlshortener.service.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the snapshots of {@link SnapshotWriter} block by block, checking every block's checksum and the
+ * trailer's total.
+ */
+class SnapshotReader implements Closeable {
+    private final DataInputStream in;
+    private long mappings;
+    private long blocks;
+
+    SnapshotReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new GZIPInputStream(in, 1 << 16));
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) throw new IOException("Not a short url snapshot");
+    }
+
+    /**
+     * @return the next block, or null after the last one
+     */
+    Block next() throws IOException {
+        try {
+            int count = in.readInt();
+            if (count == 0) {
+                long total = in.readLong();
+                if (total != mappings)
+                    throw new IOException("Snapshot holds " + mappings + " mappings but its trailer says " + total);
+                return null;
+            }
+            byte[] block = new byte[in.readInt()];
+            in.readFully(block);
+            var crc = new CRC32C();
+            crc.update(block);
+            if (in.readInt() != (int) crc.getValue())
+                throw new IOException("Block " + blocks + " of the snapshot is corrupt");
+            var blockIn = new DataInputStream(new ByteArrayInputStream(block));
+            List<String> shortUrls = new ArrayList<>(count);
+            List<String> storedUrls = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shortUrls.add(blockIn.readUTF());
+                storedUrls.add(blockIn.readUTF());
+            }
+            blocks++;
+            mappings += count;
+            return new Block(shortUrls, storedUrls);
+        } catch (EOFException ex) {
+            throw new IOException("Snapshot is truncated after " + mappings + " mappings", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Block {
+        private final List<String> shortUrls;
+        private final List<String> storedUrls;
+    }
+}
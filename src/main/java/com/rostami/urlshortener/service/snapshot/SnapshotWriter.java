@@ -0,0 +1,64 @@
+package com.rostami.urlshortener.service.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a snapshot of short url mappings: gzip around a magic header, blocks of mappings and a trailer.
+ * <p>
+ * A block is its mapping count (int), its length in bytes (int), that many bytes of short url and stored url
+ * pairs as modified UTF-8, and the crc32c of those bytes (int). The trailer is a zero count followed by the
+ * total number of mappings (long), so a truncated snapshot is told apart from a complete one. Stored urls are
+ * written as the storage holds them, deadlines of expiring ones included.
+ */
+class SnapshotWriter implements Closeable {
+    static final byte[] MAGIC = {'U', 'R', 'L', 'S', 'N', 'A', 'P', 1};
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private long mappings;
+
+    SnapshotWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new GZIPOutputStream(out, 1 << 16));
+        this.out.write(MAGIC);
+    }
+
+    void write(List<String> shortUrls, List<String> storedUrls) throws IOException {
+        block.reset();
+        for (int i = 0; i < shortUrls.size(); i++) {
+            blockOut.writeUTF(shortUrls.get(i));
+            blockOut.writeUTF(storedUrls.get(i));
+        }
+        var crc = new CRC32C();
+        crc.update(block.toByteArray());
+        out.writeInt(shortUrls.size());
+        out.writeInt(block.size());
+        block.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        mappings += shortUrls.size();
+    }
+
+    long mappings() {
+        return mappings;
+    }
+
+    /**
+     * Writes the trailer; a snapshot closed without it reads as truncated.
+     */
+    void finish() throws IOException {
+        out.writeInt(0);
+        out.writeLong(mappings);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
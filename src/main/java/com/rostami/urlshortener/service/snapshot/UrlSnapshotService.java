@@ -0,0 +1,160 @@
+package com.rostami.urlshortener.service.snapshot;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlSnapshotProperties;
+import com.rostami.urlshortener.service.StoredUrl;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports the mappings of the configured storage layout to a snapshot (see {@link SnapshotWriter}) and imports
+ * snapshots back, whatever layout either side uses. Both hold only a few batches in memory at a time.
+ * <p>
+ * Imports claim the mappings, so they never overwrite a short url that is already mapped and can be run
+ * again after an interruption. Expiring mappings get the remaining time to live of their deadline; ones
+ * past their retention are skipped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UrlSnapshotService {
+    private final UrlRepository urlRepository;
+    private final UrlSnapshotProperties properties;
+    private final UrlExpiryProperties expiryProperties;
+
+    /**
+     * @return the number of mappings written
+     */
+    public long exportTo(OutputStream out) throws IOException {
+        try (var writer = new SnapshotWriter(out)) {
+            urlRepository.scan(properties.getBatchSize(), (shortUrls, storedUrls) -> {
+                try {
+                    writer.write(shortUrls, storedUrls);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            writer.finish();
+            return writer.mappings();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public ImportResult importFrom(InputStream in) throws IOException, InterruptedException {
+        var result = new Counters();
+        int parallelism = properties.getImportParallelism();
+        RateLimiter rateLimiter = properties.getImportRate() > 0 ? RateLimiter.create(properties.getImportRate()) : null;
+        // bounds the blocks read ahead of the writers
+        var inFlight = new Semaphore(parallelism * 2);
+        var failure = new AtomicReference<RuntimeException>();
+        ExecutorService writers = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("snapshot-import-%d")
+                .setDaemon(true)
+                .build());
+        try (var reader = new SnapshotReader(in)) {
+            SnapshotReader.Block block;
+            while (failure.get() == null && (block = reader.next()) != null) {
+                if (rateLimiter != null) rateLimiter.acquire(block.getShortUrls().size());
+                inFlight.acquire();
+                SnapshotReader.Block claimed = block;
+                writers.execute(() -> {
+                    try {
+                        claim(claimed, result);
+                    } catch (RuntimeException ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            writers.shutdown();
+            writers.awaitTermination(1, TimeUnit.HOURS);
+        }
+        if (failure.get() != null) throw failure.get();
+        return result.toResult();
+    }
+
+    private void claim(SnapshotReader.Block block, Counters result) {
+        long now = System.currentTimeMillis();
+        List<String> permanentShortUrls = new ArrayList<>();
+        List<String> permanentStoredUrls = new ArrayList<>();
+        for (int i = 0; i < block.getShortUrls().size(); i++) {
+            String shortUrl = block.getShortUrls().get(i);
+            String storedUrl = block.getStoredUrls().get(i);
+            result.read.increment();
+            long expiresAt = StoredUrl.expiresAtMillis(storedUrl);
+            if (expiresAt == StoredUrl.NEVER) {
+                permanentShortUrls.add(shortUrl);
+                permanentStoredUrls.add(storedUrl);
+                continue;
+            }
+            if (expiresAt + expiryProperties.getExpiredRetention().toMillis() <= now) {
+                result.skipped.increment();
+                continue;
+            }
+            Duration timeToLive = StoredUrl.timeToLive(Instant.ofEpochMilli(expiresAt), expiryProperties.getExpiredRetention());
+            count(urlRepository.claim(shortUrl, storedUrl, timeToLive), shortUrl, storedUrl, result);
+        }
+        if (permanentShortUrls.isEmpty()) return;
+        List<Boolean> claimed = urlRepository.claimAll(permanentShortUrls, permanentStoredUrls);
+        for (int i = 0; i < permanentShortUrls.size(); i++)
+            count(claimed.get(i), permanentShortUrls.get(i), permanentStoredUrls.get(i), result);
+    }
+
+    private void count(boolean claimed, String shortUrl, String storedUrl, Counters result) {
+        if (claimed || storedUrl.equals(urlRepository.find(shortUrl))) {
+            result.imported.increment();
+        } else {
+            result.conflicts.increment();
+        }
+    }
+
+    private static class Counters {
+        private final LongAdder read = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+
+        private ImportResult toResult() {
+            return new ImportResult(read.sum(), imported.sum(), conflicts.sum(), skipped.sum());
+        }
+    }
+
+    /**
+     * Mappings read from the snapshot, now in the storage (claimed or already there), mapped to another url
+     * in the storage, and left out as past their retention.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class ImportResult {
+        private long read;
+        private long imported;
+        private long conflicts;
+        private long skipped;
+    }
+}
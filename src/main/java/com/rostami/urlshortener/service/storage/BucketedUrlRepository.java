@@ -0,0 +1,261 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.code.Base62;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Short urls spread over {@code buckets} small hashes instead of one top level key each, so redis keeps
+ * them listpack encoded and saves its per key overhead. The bucket is picked from the hash of the whole
+ * short url rather than a prefix of it, which spreads sequential and random codes alike.
+ * <p>
+ * Hash fields can't expire, so expiring short urls are also recorded in a sorted set scored by the time
+ * they are due, and a background sweep removes them from their buckets. Until then resolves tell them apart
+ * by their deadline, as with the flat layout. A claim whose short url can't be added to the sorted set is
+ * taken back. A sweep that dies between taking short urls off the sorted set and removing them leaves them
+ * in their buckets, where resolves still tell them apart as expired.
+ */
+@Slf4j
+public class BucketedUrlRepository implements UrlRepository {
+    /**
+     * KEYS: expiry index. ARGV: now in epoch millis, max short urls. Takes the due short urls off the index
+     * and returns them. Only touches the index, so it runs on a cluster as well.
+     */
+    static final String TAKE_DUE_SCRIPT = ""
+            + "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])\n"
+            + "for _, shortUrl in ipairs(due) do redis.call('ZREM', KEYS[1], shortUrl) end\n"
+            + "return due\n";
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final RedisScript<List<String>> TAKE_DUE = (RedisScript) RedisScript.of(TAKE_DUE_SCRIPT, List.class);
+
+    private final UrlStorageProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final UrlValueCodec codec;
+    private final byte[] expiryIndexKey;
+    private ScheduledExecutorService sweeper;
+
+    public BucketedUrlRepository(UrlStorageProperties properties,
+                                 StringRedisTemplate redisTemplate,
+                                 ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.codec = new UrlValueCodec(properties.isCompressionEnabled() ? properties.getCompressionThreshold() : 0);
+        this.expiryIndexKey = bytes(properties.getExpiryIndexKey());
+    }
+
+    @PostConstruct
+    void start() {
+        long intervalMillis = properties.getSweepInterval().toMillis();
+        sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("bucket-sweeper-%d")
+                .setDaemon(true)
+                .build());
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweepExpired();
+            } catch (RuntimeException ex) {
+                log.warn("Could not remove expired short urls", ex);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hGet(bucketKey(shortUrl), bytes(shortUrl)));
+        return codec.decode(value);
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String shortUrl : shortUrls) connection.hGet(bucketKey(shortUrl), bytes(shortUrl));
+            return null;
+        }, RedisSerializer.byteArray());
+        return values.stream().map(value -> codec.decode((byte[]) value)).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        byte[] field = bytes(shortUrl);
+        Boolean claimed = redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.hSetNX(bucketKey(shortUrl), field, codec.encode(storedUrl)));
+        if (!Boolean.TRUE.equals(claimed)) return false;
+        if (timeToLive != null) {
+            try {
+                redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                        connection.zAdd(expiryIndexKey, dueAt(timeToLive), field));
+            } catch (RuntimeException ex) {
+                unclaim(shortUrl, field, ex);
+                throw ex;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        List<Object> claimed = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < shortUrls.size(); i++)
+                connection.hSetNX(bucketKey(shortUrls.get(i)), bytes(shortUrls.get(i)), codec.encode(storedUrls.get(i)));
+            return null;
+        });
+        return claimed.stream().map(Boolean.TRUE::equals).collect(Collectors.toList());
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return reactiveRedisTemplate.execute(connection -> connection.hashCommands()
+                        .hGet(ByteBuffer.wrap(bucketKey(shortUrl)), ByteBuffer.wrap(bytes(shortUrl))))
+                .next()
+                .map(value -> codec.decode(bytes(value)));
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        ByteBuffer field = ByteBuffer.wrap(bytes(shortUrl));
+        return reactiveRedisTemplate.execute(connection -> connection.hashCommands()
+                        .hSetNX(ByteBuffer.wrap(bucketKey(shortUrl)), field.duplicate(), ByteBuffer.wrap(codec.encode(storedUrl))))
+                .next()
+                .flatMap(claimed -> !claimed || timeToLive == null
+                        ? Mono.just(claimed)
+                        : reactiveRedisTemplate.execute(connection -> connection.zSetCommands()
+                                        .zAdd(ByteBuffer.wrap(expiryIndexKey), dueAt(timeToLive), field.duplicate()))
+                                .then(Mono.just(true))
+                                .onErrorResume(ex -> reactiveRedisTemplate.execute(connection -> connection.hashCommands()
+                                                .hDel(ByteBuffer.wrap(bucketKey(shortUrl)), field.duplicate()))
+                                        .onErrorResume(undo -> {
+                                            ex.addSuppressed(undo);
+                                            return Mono.empty();
+                                        })
+                                        .then(Mono.error(ex))));
+    }
+
+    /**
+     * Takes back a claim whose short url couldn't be added to the expiry index, where the sweep would never
+     * find it. The bucket and the index may live on different cluster nodes, so the two can't be written
+     * atomically.
+     */
+    private void unclaim(String shortUrl, byte[] field, RuntimeException failure) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.hDel(bucketKey(shortUrl), field));
+        } catch (RuntimeException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    /**
+     * Walks the buckets with SCAN and reads about a bucket per hundred short urls of the batch at once.
+     */
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(properties.getBucketKeyPrefix() + "*")
+                .count(batchSize)
+                .build();
+        int bucketsPerRead = Math.max(1, batchSize / 100);
+        List<byte[]> bucketKeys = new ArrayList<>(bucketsPerRead);
+        KeyScanner.scan(redisTemplate, options, bucketKey -> {
+            bucketKeys.add(bucketKey);
+            if (bucketKeys.size() == bucketsPerRead) {
+                scanned(bucketKeys, batchSize, consumer);
+                bucketKeys.clear();
+            }
+        });
+        if (!bucketKeys.isEmpty()) scanned(bucketKeys, batchSize, consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scanned(List<byte[]> bucketKeys, int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        List<Object> buckets = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] bucketKey : bucketKeys) connection.hGetAll(bucketKey);
+            return null;
+        }, RedisSerializer.byteArray());
+        List<String> shortUrls = new ArrayList<>(batchSize);
+        List<String> storedUrls = new ArrayList<>(batchSize);
+        for (Object bucket : buckets) {
+            for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) bucket).entrySet()) {
+                shortUrls.add(new String(entry.getKey(), StandardCharsets.UTF_8));
+                storedUrls.add(codec.decode(entry.getValue()));
+                if (shortUrls.size() == batchSize) {
+                    consumer.accept(shortUrls, storedUrls);
+                    shortUrls = new ArrayList<>(batchSize);
+                    storedUrls = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!shortUrls.isEmpty()) consumer.accept(shortUrls, storedUrls);
+    }
+
+    /**
+     * Removes the expiring short urls that are due from their buckets. Each batch is taken off the sorted set
+     * by one script first, so a short url swept by another node meanwhile, and perhaps claimed again since,
+     * is left alone.
+     *
+     * @return the number of short urls removed
+     */
+    public long sweepExpired() {
+        long removed = 0;
+        while (true) {
+            String now = Long.toString(System.currentTimeMillis());
+            List<String> due = redisTemplate.execute(TAKE_DUE, List.of(properties.getExpiryIndexKey()),
+                    now, Integer.toString(properties.getSweepBatchSize()));
+            if (due == null || due.isEmpty()) return removed;
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String shortUrl : due) connection.hDel(bucketKey(shortUrl), bytes(shortUrl));
+                return null;
+            });
+            removed += due.size();
+            if (due.size() < properties.getSweepBatchSize()) return removed;
+        }
+    }
+
+    byte[] bucketKey(String shortUrl) {
+        int bucket = Math.floorMod(shortUrl.hashCode(), properties.getBuckets());
+        return bytes(properties.getBucketKeyPrefix() + Base62.encode(bucket));
+    }
+
+    private static double dueAt(Duration timeToLive) {
+        return System.currentTimeMillis() + timeToLive.toMillis();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
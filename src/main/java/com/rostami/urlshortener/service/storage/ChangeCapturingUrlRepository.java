@@ -0,0 +1,136 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlChangeProperties;
+import com.rostami.urlshortener.service.changes.UrlChange;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Flat layout that also appends a create event to the change stream for every short url it claims. Claim
+ * and event are written by one script, so an event is never lost nor emitted for a claim that didn't
+ * happen; the stream is trimmed to about {@code max-length} events by the same XADD. The script is sent
+ * by its SHA1 digest, and only in full when redis doesn't have it cached.
+ * <p>
+ * Scripts touch the short url and the stream together, so this needs both on one node: a standalone redis,
+ * not a cluster.
+ */
+public class ChangeCapturingUrlRepository extends FlatUrlRepository {
+    /**
+     * KEYS: short url, stream. ARGV: stored url, time to live in millis (0 to keep it forever), max length.
+     */
+    static final String CLAIM_SCRIPT = ""
+            + "local claimed\n"
+            + "if ARGV[2] == '0' then\n"
+            + "  claimed = redis.call('SET', KEYS[1], ARGV[1], 'NX')\n"
+            + "else\n"
+            + "  claimed = redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2])\n"
+            + "end\n"
+            + "if not claimed then return 0 end\n"
+            + "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*',\n"
+            + "  '" + UrlChange.SHORT_URL_FIELD + "', KEYS[1], '" + UrlChange.STORED_URL_FIELD + "', ARGV[1])\n"
+            + "return 1\n";
+
+    private static final RedisScript<Boolean> CLAIM = RedisScript.of(CLAIM_SCRIPT, Boolean.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final String streamKey;
+    private final String maxLength;
+
+    public ChangeCapturingUrlRepository(StringRedisTemplate redisTemplate,
+                                        ReactiveStringRedisTemplate reactiveRedisTemplate,
+                                        UrlChangeProperties properties) {
+        super(redisTemplate, reactiveRedisTemplate);
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.streamKey = properties.getStreamKey();
+        this.maxLength = Long.toString(properties.getMaxLength());
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        String[] keysAndArgs = keysAndArgs(shortUrl, storedUrl, timeToLive);
+        Boolean claimed = redisTemplate.execute((RedisCallback<Boolean>) connection -> {
+            var stringConnection = (StringRedisConnection) connection;
+            try {
+                return stringConnection.evalSha(CLAIM.getSha1(), ReturnType.BOOLEAN, 2, keysAndArgs);
+            } catch (RuntimeException ex) {
+                if (!noScript(ex)) throw ex;
+                return stringConnection.eval(CLAIM_SCRIPT, ReturnType.BOOLEAN, 2, keysAndArgs);
+            }
+        });
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    /**
+     * Runs one script per short url, all in one pipeline.
+     */
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        List<String[]> keysAndArgs = new ArrayList<>(shortUrls.size());
+        for (int i = 0; i < shortUrls.size(); i++) keysAndArgs.add(keysAndArgs(shortUrls.get(i), storedUrls.get(i), null));
+        List<Object> claimed;
+        try {
+            claimed = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                var stringConnection = (StringRedisConnection) connection;
+                for (String[] claim : keysAndArgs) stringConnection.evalSha(CLAIM.getSha1(), ReturnType.BOOLEAN, 2, claim);
+                return null;
+            });
+        } catch (RedisPipelineException ex) {
+            // only the claims that missed the script cache are sent again, the others went through
+            claimed = new ArrayList<>(ex.getPipelineResult());
+            if (claimed.size() != keysAndArgs.size()) throw ex;
+            List<Integer> missed = new ArrayList<>();
+            for (int i = 0; i < claimed.size(); i++) {
+                if (!(claimed.get(i) instanceof Throwable)) continue;
+                if (!noScript((Throwable) claimed.get(i))) throw ex;
+                missed.add(i);
+            }
+            if (missed.isEmpty()) throw ex;
+            List<Object> retried = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                var stringConnection = (StringRedisConnection) connection;
+                for (int i : missed) stringConnection.eval(CLAIM_SCRIPT, ReturnType.BOOLEAN, 2, keysAndArgs.get(i));
+                return null;
+            });
+            for (int i = 0; i < missed.size(); i++) claimed.set(missed.get(i), retried.get(i));
+        }
+        return claimed.stream().map(Boolean.TRUE::equals).collect(Collectors.toList());
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return reactiveRedisTemplate.execute(CLAIM, List.of(shortUrl, streamKey),
+                        List.of(storedUrl, timeToLiveMillis(timeToLive), maxLength))
+                .next()
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false);
+    }
+
+    private String[] keysAndArgs(String shortUrl, String storedUrl, Duration timeToLive) {
+        return new String[]{shortUrl, streamKey, storedUrl, timeToLiveMillis(timeToLive), maxLength};
+    }
+
+    /**
+     * Whether the script wasn't in the script cache, as after a restart or a failover; EVAL loads it again.
+     */
+    private static boolean noScript(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause())
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) return true;
+        return false;
+    }
+
+    private static String timeToLiveMillis(Duration timeToLive) {
+        return timeToLive == null ? "0" : Long.toString(Math.max(1, timeToLive.toMillis()));
+    }
+}
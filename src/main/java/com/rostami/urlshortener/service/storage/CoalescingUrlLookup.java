@@ -0,0 +1,100 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlLookupCoalescingProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lets concurrent lookups of the same short url share one storage lookup (single flight). The first lookup of
+ * a short url registers an in-flight future with {@code putIfAbsent} and makes the actual lookup, through the
+ * {@link UrlLookupBatcher}; lookups arriving meanwhile wait for that future instead of making their own. The
+ * first lookup unregisters its future with {@code remove(key, future)} before completing it, so the map only
+ * ever holds lookups in flight and is maintained without locks.
+ * <p>
+ * The near cache already loads a key once at a time; this covers the resolves it lets through, when it is
+ * disabled, and the reactive path, which has no loading lock of its own. A failed lookup fails everyone who
+ * waited for it; the next lookup starts afresh.
+ */
+@Component
+public class CoalescingUrlLookup {
+    private final UrlLookupCoalescingProperties properties;
+    private final UrlLookupBatcher lookupBatcher;
+    private final UrlMetrics metrics;
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public CoalescingUrlLookup(UrlLookupCoalescingProperties properties, UrlLookupBatcher lookupBatcher, UrlMetrics metrics) {
+        this.properties = properties;
+        this.lookupBatcher = lookupBatcher;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the stored url, or null when the short url is not mapped
+     */
+    public String find(String shortUrl) {
+        if (!properties.isEnabled()) return lookupBatcher.find(shortUrl);
+        var flight = new CompletableFuture<String>();
+        CompletableFuture<String> leader = inFlight.putIfAbsent(shortUrl, flight);
+        if (leader != null) {
+            metrics.coalescedLookup();
+            return await(shortUrl, leader);
+        }
+        try {
+            String storedUrl = lookupBatcher.find(shortUrl);
+            land(shortUrl, flight, storedUrl);
+            return storedUrl;
+        } catch (RuntimeException ex) {
+            fail(shortUrl, flight, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #find(String)}; completes empty when the short url is not mapped. The
+     * shared lookup runs to completion even if the subscriber that started it cancels.
+     */
+    public Mono<String> findReactive(String shortUrl) {
+        if (!properties.isEnabled()) return lookupBatcher.findReactive(shortUrl);
+        return Mono.defer(() -> {
+            var flight = new CompletableFuture<String>();
+            CompletableFuture<String> leader = inFlight.putIfAbsent(shortUrl, flight);
+            if (leader != null) {
+                metrics.coalescedLookup();
+                return Mono.fromFuture(leader.copy());
+            }
+            lookupBatcher.findReactive(shortUrl).subscribe(
+                    storedUrl -> land(shortUrl, flight, storedUrl),
+                    ex -> fail(shortUrl, flight, ex),
+                    () -> land(shortUrl, flight, null));
+            return Mono.fromFuture(flight.copy());
+        });
+    }
+
+    private void land(String shortUrl, CompletableFuture<String> flight, String storedUrl) {
+        inFlight.remove(shortUrl, flight);
+        flight.complete(storedUrl);
+    }
+
+    private void fail(String shortUrl, CompletableFuture<String> flight, Throwable ex) {
+        inFlight.remove(shortUrl, flight);
+        flight.completeExceptionally(ex);
+    }
+
+    private static String await(String shortUrl, CompletableFuture<String> flight) {
+        try {
+            return flight.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Could not look up " + shortUrl, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while looking up " + shortUrl, ex);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Consistent hash ring routing short urls to named shards. Every shard is placed on the ring at
+ * {@code virtualNodes} points derived from its name, and a short url belongs to the shard of the first
+ * point at or after its own hash. Adding a shard only moves the short urls that now fall just before one of
+ * its points, about 1/N of them, and all of those come from the shard that owned the next point:
+ * {@link #successor(String)}. Points only depend on the names, so the order shards are listed in doesn't
+ * matter.
+ */
+final class ConsistentHashRing<T> {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final long[] points;
+    private final Object[] owners;
+
+    ConsistentHashRing(Map<String, T> shards, int virtualNodes) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("A hash ring needs at least one shard");
+        List<Map.Entry<Long, T>> placed = shards.entrySet().stream()
+                .flatMap(shard -> IntStream.range(0, virtualNodes)
+                        .mapToObj(i -> Map.entry(hash(shard.getKey() + "#" + i), shard.getValue())))
+                .sorted(Comparator.comparing(Map.Entry::getKey))
+                .collect(Collectors.toList());
+        this.points = new long[placed.size()];
+        this.owners = new Object[placed.size()];
+        for (int i = 0; i < placed.size(); i++) {
+            points[i] = placed.get(i).getKey();
+            owners[i] = placed.get(i).getValue();
+        }
+    }
+
+    /**
+     * @return the shard the short url belongs to
+     */
+    @SuppressWarnings("unchecked")
+    T route(String shortUrl) {
+        return (T) owners[point(shortUrl)];
+    }
+
+    /**
+     * @return the shard that owned the short url before the shard it belongs to was added, which is the next
+     * distinct shard along the ring; the shard itself when there is only one
+     */
+    @SuppressWarnings("unchecked")
+    T successor(String shortUrl) {
+        int point = point(shortUrl);
+        for (int i = 1; i < points.length; i++) {
+            Object owner = owners[(point + i) % points.length];
+            if (owner != owners[point]) return (T) owner;
+        }
+        return (T) owners[point];
+    }
+
+    private int point(String shortUrl) {
+        int index = Arrays.binarySearch(points, hash(shortUrl));
+        if (index < 0) index = -index - 1;
+        return index == points.length ? 0 : index;
+    }
+
+    private static long hash(String value) {
+        return HASH.hashUnencodedChars(value).asLong();
+    }
+}
@@ -0,0 +1,25 @@
+package com.rostami.urlshortener.service.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Syncing a file makes its content durable, not its name: a file created or renamed just before a machine
+ * crash may be gone, or back under its old name, after it. Syncing the directory makes the entry durable.
+ */
+final class Directories {
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    private Directories() {
+    }
+
+    static void sync(Path directory) throws IOException {
+        // directories can't be opened on windows, where the entries are made durable with the file
+        if (WINDOWS) return;
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.StoredUrl;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the mappings of the flat layout into the buckets of a {@link BucketedUrlRepository}.
+ * <p>
+ * Keys are walked with SCAN, so redis keeps serving meanwhile; the application's own keys
+ * ({@code url-shortener:*}) and values that aren't stored urls are skipped. Buckets are written with HSETNX,
+ * which makes the migration safe to run again to pick up the short urls created while it ran. Switch the
+ * layout once a run has nothing left to copy.
+ */
+public class FlatLayoutMigrator {
+    private final UrlStorageProperties properties;
+    private final UrlExpiryProperties expiryProperties;
+    private final StringRedisTemplate redisTemplate;
+    private final BucketedUrlRepository bucketedRepository;
+
+    public FlatLayoutMigrator(UrlStorageProperties properties,
+                              UrlExpiryProperties expiryProperties,
+                              StringRedisTemplate redisTemplate,
+                              BucketedUrlRepository bucketedRepository) {
+        this.properties = properties;
+        this.expiryProperties = expiryProperties;
+        this.redisTemplate = redisTemplate;
+        this.bucketedRepository = bucketedRepository;
+    }
+
+    public Result migrate() {
+        var result = new Result(0, 0, 0);
+        ScanOptions options = ScanOptions.scanOptions().count(properties.getMigrationScanCount()).build();
+        List<String> keys = new ArrayList<>(properties.getMigrationScanCount());
+        KeyScanner.scan(redisTemplate, options, rawKey -> {
+            String key = new String(rawKey, StandardCharsets.UTF_8);
+            if (!key.startsWith(FlatUrlRepository.APPLICATION_KEY_PREFIX)) keys.add(key);
+            if (keys.size() == properties.getMigrationScanCount()) {
+                migrate(keys, result);
+                keys.clear();
+            }
+        });
+        if (!keys.isEmpty()) migrate(keys, result);
+        return result;
+    }
+
+    private void migrate(List<String> keys, Result result) {
+        List<String> storedUrls = redisTemplate.opsForValue().multiGet(keys);
+        if (storedUrls == null) return;
+        List<String> permanentKeys = new ArrayList<>();
+        List<String> permanentUrls = new ArrayList<>();
+        List<String> migrated = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.size(); i++) {
+            String storedUrl = storedUrls.get(i);
+            result.scanned++;
+            // MGET answers nil for keys that aren't strings
+            if (storedUrl == null || !StoredUrl.isStoredUrl(storedUrl)) continue;
+            long expiresAt = StoredUrl.expiresAtMillis(storedUrl);
+            if (expiresAt == StoredUrl.NEVER) {
+                permanentKeys.add(keys.get(i));
+                permanentUrls.add(storedUrl);
+                continue;
+            }
+            Duration timeToLive = Duration.ofMillis(expiresAt - now).plus(expiryProperties.getExpiredRetention());
+            if (timeToLive.isNegative()) continue;
+            if (claim(keys.get(i), storedUrl, timeToLive, result)) migrated.add(keys.get(i));
+        }
+        if (!permanentKeys.isEmpty()) {
+            List<Boolean> claimed = bucketedRepository.claimAll(permanentKeys, permanentUrls);
+            for (int i = 0; i < permanentKeys.size(); i++)
+                if (claimed.get(i) || permanentUrls.get(i).equals(bucketedRepository.find(permanentKeys.get(i)))) {
+                    result.migrated++;
+                    migrated.add(permanentKeys.get(i));
+                } else {
+                    result.conflicts++;
+                }
+        }
+        if (properties.isMigrationDeleteFlat() && !migrated.isEmpty()) redisTemplate.delete(migrated);
+    }
+
+    private boolean claim(String shortUrl, String storedUrl, Duration timeToLive, Result result) {
+        if (bucketedRepository.claim(shortUrl, storedUrl, timeToLive) || storedUrl.equals(bucketedRepository.find(shortUrl))) {
+            result.migrated++;
+            return true;
+        }
+        result.conflicts++;
+        return false;
+    }
+
+    /**
+     * Keys looked at, mappings now in the buckets (copied or already there) and short urls that are mapped
+     * to another url in the buckets.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Result {
+        private long scanned;
+        private long migrated;
+        private long conflicts;
+    }
+}
@@ -0,0 +1,106 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.service.StoredUrl;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * One top level string key per short url, expiring mappings written with SET NX PX. Scans walk the keys
+ * with SCAN and skip the application's own ({@code url-shortener:*}) and values that aren't stored urls.
+ */
+public class FlatUrlRepository implements UrlRepository {
+    /**
+     * Prefix of the application's own keys, which share the database with the short urls.
+     */
+    static final String APPLICATION_KEY_PREFIX = "url-shortener:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    public FlatUrlRepository(StringRedisTemplate redisTemplate, ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        return redisTemplate.opsForValue().get(shortUrl);
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<String> storedUrls = redisTemplate.opsForValue().multiGet(shortUrls);
+        return storedUrls != null ? storedUrls : Collections.nCopies(shortUrls.size(), null);
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        Boolean claimed = timeToLive == null
+                ? redisTemplate.opsForValue().setIfAbsent(shortUrl, storedUrl)
+                : redisTemplate.opsForValue().setIfAbsent(shortUrl, storedUrl, timeToLive);
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        List<Object> claimed = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            var stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < shortUrls.size(); i++)
+                stringConnection.setNX(shortUrls.get(i), storedUrls.get(i));
+            return null;
+        });
+        return claimed.stream().map(Boolean.TRUE::equals).collect(Collectors.toList());
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return reactiveRedisTemplate.opsForValue().get(shortUrl);
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return timeToLive == null
+                ? reactiveRedisTemplate.opsForValue().setIfAbsent(shortUrl, storedUrl)
+                : reactiveRedisTemplate.opsForValue().setIfAbsent(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        List<String> keys = new ArrayList<>(batchSize);
+        KeyScanner.scan(redisTemplate, options, rawKey -> {
+            String key = new String(rawKey, StandardCharsets.UTF_8);
+            if (!key.startsWith(APPLICATION_KEY_PREFIX)) keys.add(key);
+            if (keys.size() == batchSize) {
+                scanned(keys, consumer);
+                keys.clear();
+            }
+        });
+        if (!keys.isEmpty()) scanned(keys, consumer);
+    }
+
+    private void scanned(List<String> keys, BiConsumer<List<String>, List<String>> consumer) {
+        List<String> values = findAll(keys);
+        List<String> shortUrls = new ArrayList<>(keys.size());
+        List<String> storedUrls = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            // MGET answers nil for keys that aren't strings
+            if (values.get(i) == null || !StoredUrl.isStoredUrl(values.get(i))) continue;
+            shortUrls.add(keys.get(i));
+            storedUrls.add(values.get(i));
+        }
+        if (!shortUrls.isEmpty()) consumer.accept(shortUrls, storedUrls);
+    }
+}
@@ -0,0 +1,124 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads from the primary, and hedges a read that takes longer than the {@code hedge-percentile} of the
+ * recent primary latencies by sending it to a replica as well; whichever answers first wins. The primary's
+ * answer is authoritative, a miss included, while a replica only wins with a hit: a short url created a
+ * moment ago may not have reached it yet. Claims and scans go to the primary.
+ * <p>
+ * Single lookups are hedged; batches ({@link #findAll(List)}) go to the primary only. Both reads are
+ * issued without blocking, so a hedge costs a command on the replica but no thread.
+ */
+public class HedgedUrlRepository implements UrlRepository {
+    private static final int SAMPLES = 1_024;
+    private static final int RECOMPUTE_EVERY = 256;
+
+    private final UrlRepository primary;
+    private final UrlRepository replica;
+    private final UrlMetrics metrics;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicInteger recorded = new AtomicInteger();
+    private volatile long delayNanos;
+
+    public HedgedUrlRepository(UrlRepository primary, UrlRepository replica, UrlResilienceProperties properties, UrlMetrics metrics) {
+        this.primary = primary;
+        this.replica = replica;
+        this.metrics = metrics;
+        this.percentile = properties.getHedgePercentile();
+        this.minDelayNanos = properties.getHedgeMinDelay().toNanos();
+        this.maxDelayNanos = properties.getHedgeMaxDelay().toNanos();
+        this.delayNanos = maxDelayNanos;
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        return findReactive(shortUrl).block();
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        return primary.findAll(shortUrls);
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        return primary.claim(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        return primary.claimAll(shortUrls, storedUrls);
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            var primaryFailure = new AtomicReference<Throwable>();
+            Mono<Optional<String>> fromPrimary = primary.findReactive(shortUrl)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnNext(storedUrl -> record(System.nanoTime() - started))
+                    // beaten by the replica; the latency so far is a lower bound worth keeping
+                    .doOnCancel(() -> record(System.nanoTime() - started))
+                    .doOnError(primaryFailure::set);
+            Mono<Optional<String>> fromReplica = Mono.delay(Duration.ofNanos(delayNanos))
+                    .doOnNext(tick -> metrics.hedgedRead())
+                    .then(Mono.defer(() -> replica.findReactive(shortUrl)))
+                    .map(Optional::of)
+                    .onErrorResume(ex -> Mono.empty());
+            return Mono.firstWithValue(fromPrimary, fromReplica)
+                    .onErrorMap(ex -> primaryFailure.get() != null ? primaryFailure.get() : ex)
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return primary.claimReactive(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        primary.scan(batchSize, consumer);
+    }
+
+    /**
+     * @return how long a lookup currently waits for the primary before it is hedged
+     */
+    Duration hedgeDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    /**
+     * Keeps the last {@link #SAMPLES} primary latencies and recomputes the hedge delay from them every
+     * {@link #RECOMPUTE_EVERY} (both powers of two), on the thread that happens to record; a sort of a
+     * thousand longs is cheap spread over that many reads.
+     */
+    void record(long latencyNanos) {
+        int sample = recorded.getAndIncrement();
+        latencies.set(sample & (SAMPLES - 1), latencyNanos);
+        if ((sample & (RECOMPUTE_EVERY - 1)) != RECOMPUTE_EVERY - 1 || (sample >= 0 && sample < SAMPLES - 1)) return;
+        long[] sorted = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        long atPercentile = sorted[(int) Math.min(SAMPLES - 1, Math.ceil(percentile * SAMPLES) - 1)];
+        delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, atPercentile));
+    }
+}
@@ -0,0 +1,39 @@
+package com.rostami.urlshortener.service.storage;
+
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.function.Consumer;
+
+/**
+ * SCAN over every key of the database. A Redis Cluster connection only scans a single node, so in a
+ * cluster every primary is scanned in turn.
+ */
+final class KeyScanner {
+
+    private KeyScanner() {
+    }
+
+    static void scan(StringRedisTemplate redisTemplate, ScanOptions options, Consumer<byte[]> consumer) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                var clusterConnection = (RedisClusterConnection) connection;
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes())
+                    if (node.isMaster()) drain(clusterConnection.scan(node, options), consumer);
+            } else {
+                drain(connection.scan(options), consumer);
+            }
+            return null;
+        });
+    }
+
+    private static void drain(Cursor<byte[]> cursor, Consumer<byte[]> consumer) {
+        try (cursor) {
+            while (cursor.hasNext()) consumer.accept(cursor.next());
+        }
+    }
+}
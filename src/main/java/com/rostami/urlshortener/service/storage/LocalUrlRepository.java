@@ -0,0 +1,261 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Mappings kept on the local disk instead of redis, for single node deployments: an append-only
+ * {@link MappedUrlLog} holds the records and an {@link OffHeapUrlIndex} points every short url to its latest
+ * one, so a resolve is a hash probe and a read from mapped memory. The index is rebuilt from the log on
+ * startup, which also drops a record torn by a crash.
+ * <p>
+ * Records are never updated in place. An expiring short url is skipped by resolves once it is due, may then
+ * be claimed again by a new record, and is dropped along with the superseded records when a background
+ * compaction rewrites the log. Appends are synced to the disk every {@code local-sync-interval}; a process
+ * crash loses nothing, a machine crash at most the appends of the last interval.
+ */
+@Slf4j
+public class LocalUrlRepository implements UrlRepository {
+    private static final String LOG_FILE = "urls.log";
+    private static final String COMPACTING_FILE = "urls.log.compacting";
+
+    private final UrlStorageProperties properties;
+    private final Path logPath;
+    private final Path compactingPath;
+    private final Object writeLock = new Object();
+    private volatile State state;
+    private ScheduledExecutorService maintainer;
+
+    public LocalUrlRepository(UrlStorageProperties properties) {
+        this.properties = properties;
+        Path directory = Path.of(properties.getLocalDirectory());
+        this.logPath = directory.resolve(LOG_FILE);
+        this.compactingPath = directory.resolve(COMPACTING_FILE);
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(compactingPath);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not prepare " + directory, ex);
+        }
+        long started = System.nanoTime();
+        var recovered = new State(new MappedUrlLog(logPath), new OffHeapUrlIndex(properties.getLocalIndexCapacity()));
+        recovered.log.recover((offset, removeAtMillis) -> index(recovered, offset));
+        this.state = recovered;
+        log.info("Indexed {} short urls from {} in {} ms", recovered.index.size(), logPath,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @PostConstruct
+    void start() {
+        maintainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("local-storage-%d")
+                .setDaemon(true)
+                .build());
+        long syncMillis = properties.getLocalSyncInterval().toMillis();
+        maintainer.scheduleWithFixedDelay(() -> state.log.sync(), syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        long compactionMillis = properties.getLocalCompactionInterval().toMillis();
+        maintainer.scheduleWithFixedDelay(() -> {
+            try {
+                if (garbageRatio() >= properties.getLocalCompactionGarbageRatio()) compact();
+            } catch (RuntimeException ex) {
+                log.warn("Could not compact {}", logPath, ex);
+            }
+        }, compactionMillis, compactionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (maintainer != null) maintainer.shutdownNow();
+        synchronized (writeLock) {
+            state.log.close();
+        }
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        State current = state;
+        long offset = current.live(bytes(shortUrl), System.currentTimeMillis());
+        return offset < 0 ? null : current.log.value(offset);
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<String> storedUrls = new ArrayList<>(shortUrls.size());
+        for (String shortUrl : shortUrls) storedUrls.add(find(shortUrl));
+        return storedUrls;
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        synchronized (writeLock) {
+            return append(shortUrl, storedUrl, timeToLive);
+        }
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        List<Boolean> claimed = new ArrayList<>(shortUrls.size());
+        synchronized (writeLock) {
+            for (int i = 0; i < shortUrls.size(); i++) claimed.add(append(shortUrls.get(i), storedUrls.get(i), null));
+        }
+        return claimed;
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return Mono.fromCallable(() -> find(shortUrl));
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return Mono.fromCallable(() -> claim(shortUrl, storedUrl, timeToLive));
+    }
+
+    /**
+     * Walks the index of the current log; short urls that are past their removal time are left out.
+     */
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        State current = state;
+        long now = System.currentTimeMillis();
+        List<String> shortUrls = new ArrayList<>(batchSize);
+        List<String> storedUrls = new ArrayList<>(batchSize);
+        current.index.forEachOffset(offset -> {
+            if (current.log.removeAtMillis(offset) <= now) return;
+            shortUrls.add(new String(current.log.code(offset), StandardCharsets.UTF_8));
+            storedUrls.add(current.log.value(offset));
+            if (shortUrls.size() == batchSize) {
+                consumer.accept(List.copyOf(shortUrls), List.copyOf(storedUrls));
+                shortUrls.clear();
+                storedUrls.clear();
+            }
+        });
+        if (!shortUrls.isEmpty()) consumer.accept(shortUrls, storedUrls);
+    }
+
+    /**
+     * @return the share of the log taken by expired and superseded records
+     */
+    public double garbageRatio() {
+        State current = state;
+        long end = current.log.end();
+        if (end == 0) return 0;
+        long now = System.currentTimeMillis();
+        long[] live = new long[1];
+        current.index.forEachOffset(offset -> {
+            if (offset < end && current.log.removeAtMillis(offset) > now) live[0] += current.log.recordLength(offset);
+        });
+        return 1 - (double) live[0] / end;
+    }
+
+    /**
+     * Rewrites the log with the records that are still live and swaps it in. The bulk is copied without
+     * holding up claims; only the records appended meanwhile are copied under the write lock.
+     */
+    public void compact() {
+        long started = System.nanoTime();
+        State current = state;
+        long copiedUntil;
+        synchronized (writeLock) {
+            copiedUntil = current.log.end();
+        }
+        var compacted = new State(new MappedUrlLog(compactingPath),
+                new OffHeapUrlIndex(Math.max(properties.getLocalIndexCapacity(), current.index.size() * 2)));
+        long now = System.currentTimeMillis();
+        current.index.forEachOffset(offset -> {
+            if (offset < copiedUntil) copy(current, offset, compacted, now);
+        });
+        synchronized (writeLock) {
+            current.index.forEachOffset(offset -> {
+                if (offset >= copiedUntil) copy(current, offset, compacted, now);
+            });
+            compacted.log.sync();
+            try {
+                Files.move(compactingPath, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                compacted.log.close();
+                throw new UncheckedIOException("Could not replace " + logPath, ex);
+            }
+            state = compacted;
+            // resolves still reading the old log keep its mapping, which outlives the channel
+            current.log.close();
+            // until the rename is durable a machine crash brings the old log back, without the appends made
+            // since; claims wait for it under the write lock
+            try {
+                Directories.sync(logPath.getParent());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Could not sync the rename of " + logPath, ex);
+            }
+        }
+        log.info("Compacted {} from {} to {} bytes in {} ms", logPath, current.log.end(), compacted.log.end(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private boolean append(String shortUrl, String storedUrl, Duration timeToLive) {
+        State current = state;
+        byte[] code = bytes(shortUrl);
+        long now = System.currentTimeMillis();
+        if (current.live(code, now) >= 0) return false;
+        long removeAtMillis = timeToLive == null ? Long.MAX_VALUE : now + timeToLive.toMillis();
+        index(current, current.log.append(code, bytes(storedUrl), removeAtMillis));
+        return true;
+    }
+
+    private static void copy(State from, long offset, State to, long now) {
+        long removeAtMillis = from.log.removeAtMillis(offset);
+        if (removeAtMillis <= now) return;
+        long copied = to.log.append(from.log.code(offset), bytes(from.log.value(offset)), removeAtMillis);
+        index(to, copied);
+    }
+
+    private static void index(State state, long offset) {
+        byte[] code = state.log.code(offset);
+        if (state.index.isFull()) {
+            OffHeapUrlIndex larger = new OffHeapUrlIndex(state.index.capacity() * 2);
+            state.index.forEachOffset(existing ->
+                    larger.put(OffHeapUrlIndex.hash(state.log.code(existing)), existing, candidate -> false));
+            state.index = larger;
+        }
+        state.index.put(OffHeapUrlIndex.hash(code), offset, candidate -> state.log.codeEquals(candidate, code));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class State {
+        private final MappedUrlLog log;
+        private volatile OffHeapUrlIndex index;
+
+        private State(MappedUrlLog log, OffHeapUrlIndex index) {
+            this.log = log;
+            this.index = index;
+        }
+
+        /**
+         * @return the offset of the code's record unless it is missing or due, -1 otherwise
+         */
+        private long live(byte[] code, long now) {
+            long offset = index.find(OffHeapUrlIndex.hash(code), candidate -> log.codeEquals(candidate, code));
+            return offset >= 0 && log.removeAtMillis(offset) > now ? offset : -1;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.rostami.urlshortener.service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file of short url records, read and written through memory mapped regions of
+ * {@link #REGION_SIZE} bytes. A record never straddles two regions, so it can be read from a single buffer;
+ * one that doesn't fit the rest of a region starts the next one.
+ * <p>
+ * Record layout: crc32c of the rest of the record (int), removal time in epoch millis (long), code length
+ * (short), value length (int), code, value. A zero code length marks the end of the log and
+ * {@link #REGION_END} the end of the used part of a region. The file grows region by region and unwritten
+ * bytes read as zero, so a log cut short by a crash ends at its first record with a bad checksum.
+ * <p>
+ * Appends are serialized by the caller; reads are lock free and may run concurrently with them, as may a sync.
+ */
+final class MappedUrlLog implements Closeable {
+    static final int REGION_SIZE = 1 << 26;
+    static final int HEADER_SIZE = 18;
+    private static final short REGION_END = -1;
+    private static final int REMOVE_AT = 4;
+    private static final int CODE_LENGTH = 12;
+    private static final int VALUE_LENGTH = 14;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new CopyOnWriteArrayList<>();
+    private volatile long end;
+    private int syncedRegion;
+
+    MappedUrlLog(Path path) {
+        this.path = path;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long regionCount = (channel.size() + REGION_SIZE - 1) / REGION_SIZE;
+            for (int i = 0; i < Math.max(1, regionCount); i++) mapRegion();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open " + path, ex);
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(long offset, long removeAtMillis);
+    }
+
+    /**
+     * Reads the log from the start, handing every intact record to the visitor, and continues appending
+     * after the last of them. Anything past it, such as a record torn by a crash, is wiped.
+     */
+    void recover(RecordVisitor visitor) {
+        long offset = 0;
+        while (true) {
+            int region = region(offset);
+            if (region >= regions.size()) break;
+            MappedByteBuffer buffer = regions.get(region);
+            int position = position(offset);
+            if (REGION_SIZE - position < HEADER_SIZE || buffer.getShort(position + CODE_LENGTH) == REGION_END) {
+                offset = (long) (region + 1) * REGION_SIZE;
+                continue;
+            }
+            int codeLength = buffer.getShort(position + CODE_LENGTH);
+            int valueLength = buffer.getInt(position + VALUE_LENGTH);
+            long recordLength = (long) HEADER_SIZE + codeLength + valueLength;
+            if (codeLength <= 0 || valueLength < 0 || recordLength > REGION_SIZE - position
+                    || buffer.getInt(position) != checksum(buffer, position, (int) recordLength)) break;
+            visitor.visit(offset, buffer.getLong(position + REMOVE_AT));
+            offset += recordLength;
+        }
+        end = Math.min(offset, (long) regions.size() * REGION_SIZE);
+        wipeFrom(end);
+    }
+
+    /**
+     * @return the offset of the appended record
+     */
+    long append(byte[] code, byte[] value, long removeAtMillis) {
+        int recordLength = HEADER_SIZE + code.length + value.length;
+        if (code.length > Short.MAX_VALUE || recordLength > REGION_SIZE)
+            throw new IllegalArgumentException("Record of " + recordLength + " bytes is too large");
+        if (REGION_SIZE - position(end) < recordLength) {
+            if (REGION_SIZE - position(end) >= HEADER_SIZE)
+                regions.get(region(end)).putShort(position(end) + CODE_LENGTH, REGION_END);
+            end = (long) (region(end) + 1) * REGION_SIZE;
+        }
+        if (region(end) == regions.size()) mapRegion();
+        MappedByteBuffer buffer = regions.get(region(end));
+        int position = position(end);
+        buffer.putLong(position + REMOVE_AT, removeAtMillis);
+        buffer.putShort(position + CODE_LENGTH, (short) code.length);
+        buffer.putInt(position + VALUE_LENGTH, value.length);
+        buffer.put(position + HEADER_SIZE, code);
+        buffer.put(position + HEADER_SIZE + code.length, value);
+        buffer.putInt(position, checksum(buffer, position, recordLength));
+        long offset = end;
+        end += recordLength;
+        return offset;
+    }
+
+    boolean codeEquals(long offset, byte[] code) {
+        MappedByteBuffer buffer = regions.get(region(offset));
+        int position = position(offset);
+        if (buffer.getShort(position + CODE_LENGTH) != code.length) return false;
+        for (int i = 0; i < code.length; i++)
+            if (buffer.get(position + HEADER_SIZE + i) != code[i]) return false;
+        return true;
+    }
+
+    byte[] code(long offset) {
+        MappedByteBuffer buffer = regions.get(region(offset));
+        int position = position(offset);
+        byte[] code = new byte[buffer.getShort(position + CODE_LENGTH)];
+        buffer.get(position + HEADER_SIZE, code);
+        return code;
+    }
+
+    String value(long offset) {
+        MappedByteBuffer buffer = regions.get(region(offset));
+        int position = position(offset);
+        byte[] value = new byte[buffer.getInt(position + VALUE_LENGTH)];
+        buffer.get(position + HEADER_SIZE + buffer.getShort(position + CODE_LENGTH), value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    long removeAtMillis(long offset) {
+        return regions.get(region(offset)).getLong(position(offset) + REMOVE_AT);
+    }
+
+    int recordLength(long offset) {
+        MappedByteBuffer buffer = regions.get(region(offset));
+        int position = position(offset);
+        return HEADER_SIZE + buffer.getShort(position + CODE_LENGTH) + buffer.getInt(position + VALUE_LENGTH);
+    }
+
+    long end() {
+        return end;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Writes the regions appended to since the last sync through to the disk.
+     */
+    void sync() {
+        int last = region(end);
+        for (int region = syncedRegion; region <= last && region < regions.size(); region++)
+            regions.get(region).force();
+        syncedRegion = last;
+    }
+
+    @Override
+    public void close() {
+        try {
+            sync();
+            channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not close " + path, ex);
+        }
+    }
+
+    private void mapRegion() {
+        try {
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) regions.size() * REGION_SIZE, REGION_SIZE));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not grow " + path, ex);
+        }
+    }
+
+    private void wipeFrom(long offset) {
+        if (region(offset) >= regions.size()) return;
+        MappedByteBuffer buffer = regions.get(region(offset));
+        int position = position(offset);
+        for (; position < REGION_SIZE && position % Long.BYTES != 0; position++) buffer.put(position, (byte) 0);
+        for (; position < REGION_SIZE; position += Long.BYTES)
+            if (buffer.getLong(position) != 0) buffer.putLong(position, 0);
+        try {
+            while (regions.size() > region(offset) + 1) regions.remove(regions.size() - 1);
+            channel.truncate((long) regions.size() * REGION_SIZE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not truncate " + path, ex);
+        }
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int position, int recordLength) {
+        var crc = new CRC32C();
+        crc.update(buffer.slice(position + Integer.BYTES, recordLength - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static int region(long offset) {
+        return (int) (offset / REGION_SIZE);
+    }
+
+    private static int position(long offset) {
+        return (int) (offset % REGION_SIZE);
+    }
+}
@@ -0,0 +1,105 @@
+package com.rostami.urlshortener.service.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open addressing hash table from short url to log offset, kept in a direct buffer so millions of entries
+ * cost the garbage collector nothing. Every slot is one long: the top 24 bits of the code's hash, to skip
+ * most mismatches without touching the log, and the offset plus one in the lower 40 bits, zero being a free
+ * slot. Collisions probe linearly; entries are only added or repointed, never removed, which the log's
+ * compaction takes care of by building a fresh index.
+ * <p>
+ * Writes are serialized by the caller. Slots are published with release semantics, so a lock free reader
+ * that finds a slot also sees the record it points to.
+ */
+final class OffHeapUrlIndex {
+    static final int MAX_CAPACITY = 1 << 27;
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final ByteBuffer slots;
+    private final int mask;
+    private int size;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    OffHeapUrlIndex(int capacity) {
+        int slotCount = Math.max(16, Integer.highestOneBit(capacity - 1) << 1);
+        if (slotCount > MAX_CAPACITY || slotCount <= 0)
+            throw new IllegalStateException("Index of " + capacity + " slots is larger than " + MAX_CAPACITY);
+        this.slots = ByteBuffer.allocateDirect(slotCount * Long.BYTES).order(ByteOrder.nativeOrder());
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * @param matches tells whether the record at an offset belongs to the looked up code
+     * @return the offset of the code's record, or -1 when it is not indexed
+     */
+    long find(long hash, LongPredicate matches) {
+        long fingerprint = hash >>> OFFSET_BITS;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long entry = (long) SLOTS.getAcquire(slots, slot * Long.BYTES);
+            if (entry == 0) return -1;
+            if (entry >>> OFFSET_BITS == fingerprint && matches.test((entry & OFFSET_MASK) - 1))
+                return (entry & OFFSET_MASK) - 1;
+        }
+    }
+
+    /**
+     * Points the code to the record at the offset, replacing the entry of an earlier record of the same code.
+     */
+    void put(long hash, long offset, LongPredicate matches) {
+        if (offset + 1 > OFFSET_MASK)
+            throw new IllegalStateException("Log offset " + offset + " is out of the index' range");
+        long fingerprint = hash >>> OFFSET_BITS;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long entry = (long) SLOTS.getAcquire(slots, slot * Long.BYTES);
+            if (entry == 0 || entry >>> OFFSET_BITS == fingerprint && matches.test((entry & OFFSET_MASK) - 1)) {
+                if (entry == 0) size++;
+                SLOTS.setRelease(slots, slot * Long.BYTES, fingerprint << OFFSET_BITS | offset + 1);
+                return;
+            }
+        }
+    }
+
+    void forEachOffset(LongConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long entry = (long) SLOTS.getAcquire(slots, slot * Long.BYTES);
+            if (entry != 0) consumer.accept((entry & OFFSET_MASK) - 1);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return whether the next entry would fill the table beyond its load factor of 0.7
+     */
+    boolean isFull() {
+        return (size + 1) * 10L > capacity() * 7L;
+    }
+
+    /**
+     * 64 bit FNV-1a followed by a murmur3 finalizer, so both the slot taken from the low bits and the
+     * fingerprint taken from the high ones are well mixed.
+     */
+    static long hash(byte[] code) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : code) hash = (hash ^ b) * 0x100000001b3L;
+        hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+}
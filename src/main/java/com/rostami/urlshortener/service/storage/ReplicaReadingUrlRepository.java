@@ -0,0 +1,67 @@
+package com.rostami.urlshortener.service.storage;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Resolves from replicas, claims on the primary. Replicas lag behind, and a short url created a moment ago
+ * may not have reached them yet, so a miss on the replica is looked up again on the primary rather than
+ * answered, and negatively cached, as not found. Scans also read from the replica.
+ */
+public class ReplicaReadingUrlRepository implements UrlRepository {
+    private final UrlRepository primary;
+    private final UrlRepository replica;
+
+    public ReplicaReadingUrlRepository(UrlRepository primary, UrlRepository replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        String storedUrl = replica.find(shortUrl);
+        return storedUrl != null ? storedUrl : primary.find(shortUrl);
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<String> storedUrls = new ArrayList<>(replica.findAll(shortUrls));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < storedUrls.size(); i++) if (storedUrls.get(i) == null) missing.add(i);
+        if (missing.isEmpty()) return storedUrls;
+        List<String> missingShortUrls = new ArrayList<>(missing.size());
+        for (int i : missing) missingShortUrls.add(shortUrls.get(i));
+        List<String> fromPrimary = primary.findAll(missingShortUrls);
+        for (int i = 0; i < missing.size(); i++) storedUrls.set(missing.get(i), fromPrimary.get(i));
+        return storedUrls;
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        return primary.claim(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        return primary.claimAll(shortUrls, storedUrls);
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return replica.findReactive(shortUrl).switchIfEmpty(Mono.defer(() -> primary.findReactive(shortUrl)));
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return primary.claimReactive(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        replica.scan(batchSize, consumer);
+    }
+}
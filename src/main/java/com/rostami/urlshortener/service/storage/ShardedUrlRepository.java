@@ -0,0 +1,207 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.service.StoredUrl;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Mappings spread over independent shards, usually separate redis instances, by a {@link ConsistentHashRing}
+ * over the short urls. Batches are split by shard, one round trip per shard involved.
+ * <p>
+ * Adding a shard moves about 1/N of the short urls to it, each of them from the shard that follows it on the
+ * ring. Until {@link #rebalance(int, Duration)} has copied them over, {@code successorReads} keeps them
+ * reachable: a short url missing on its shard is looked up on that successor as well, claims are refused
+ * when the successor has the short url, and scans include the successor's copies, so a short url may be seen
+ * twice. Mappings are never overwritten, so copies left behind on the successor are never wrong, only dead
+ * weight until they expire.
+ */
+public class ShardedUrlRepository implements UrlRepository {
+    private final Map<String, UrlRepository> shards;
+    private final ConsistentHashRing<UrlRepository> ring;
+    private final boolean successorReads;
+
+    /**
+     * @param shards         the shards by name, which places them on the ring
+     * @param virtualNodes   number of points per shard on the ring; more spread the short urls more evenly
+     * @param successorReads whether short urls are also looked up where they were before the last shard was added
+     */
+    public ShardedUrlRepository(Map<String, UrlRepository> shards, int virtualNodes, boolean successorReads) {
+        this.shards = Map.copyOf(shards);
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+        this.successorReads = successorReads;
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        String storedUrl = ring.route(shortUrl).find(shortUrl);
+        if (storedUrl != null || !successorReads) return storedUrl;
+        UrlRepository successor = ring.successor(shortUrl);
+        return successor != ring.route(shortUrl) ? successor.find(shortUrl) : null;
+    }
+
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<String> storedUrls = perShard(shortUrls, ring::route,
+                (shard, indexes) -> shard.findAll(select(shortUrls, indexes)));
+        if (!successorReads) return storedUrls;
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < storedUrls.size(); i++)
+            if (storedUrls.get(i) == null && ring.successor(shortUrls.get(i)) != ring.route(shortUrls.get(i)))
+                missing.add(i);
+        if (missing.isEmpty()) return storedUrls;
+        List<String> missingShortUrls = select(shortUrls, missing);
+        List<String> fromSuccessors = perShard(missingShortUrls, ring::successor,
+                (shard, indexes) -> shard.findAll(select(missingShortUrls, indexes)));
+        for (int i = 0; i < missing.size(); i++) storedUrls.set(missing.get(i), fromSuccessors.get(i));
+        return storedUrls;
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        if (heldBySuccessor(shortUrl)) return false;
+        return ring.route(shortUrl).claim(shortUrl, storedUrl, timeToLive);
+    }
+
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        List<String> onSuccessors = successorReads
+                ? perShard(shortUrls, ring::successor, (shard, indexes) -> shard.findAll(select(shortUrls, indexes)))
+                : null;
+        List<Integer> free = new ArrayList<>(shortUrls.size());
+        for (int i = 0; i < shortUrls.size(); i++) if (onSuccessors == null || onSuccessors.get(i) == null) free.add(i);
+        List<String> freeShortUrls = select(shortUrls, free);
+        List<String> freeStoredUrls = select(storedUrls, free);
+        List<Boolean> freeClaimed = perShard(freeShortUrls, ring::route,
+                (shard, indexes) -> shard.claimAll(select(freeShortUrls, indexes), select(freeStoredUrls, indexes)));
+        List<Boolean> claimed = new ArrayList<>(Collections.nCopies(shortUrls.size(), false));
+        for (int i = 0; i < free.size(); i++) claimed.set(free.get(i), freeClaimed.get(i));
+        return claimed;
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        UrlRepository owner = ring.route(shortUrl);
+        UrlRepository successor = ring.successor(shortUrl);
+        if (!successorReads || successor == owner) return owner.findReactive(shortUrl);
+        return owner.findReactive(shortUrl).switchIfEmpty(Mono.defer(() -> successor.findReactive(shortUrl)));
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        UrlRepository owner = ring.route(shortUrl);
+        UrlRepository successor = ring.successor(shortUrl);
+        if (!successorReads || successor == owner) return owner.claimReactive(shortUrl, storedUrl, timeToLive);
+        return successor.findReactive(shortUrl)
+                .map(held -> false)
+                .switchIfEmpty(Mono.defer(() -> owner.claimReactive(shortUrl, storedUrl, timeToLive)));
+    }
+
+    /**
+     * Walks the shards one after the other, leaving out the copies a shard still has of short urls that moved
+     * elsewhere, unless successor reads are on.
+     */
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        for (UrlRepository shard : shards.values()) {
+            shard.scan(batchSize, (shortUrls, storedUrls) -> {
+                List<String> ownShortUrls = new ArrayList<>(shortUrls.size());
+                List<String> ownStoredUrls = new ArrayList<>(shortUrls.size());
+                for (int i = 0; i < shortUrls.size(); i++) {
+                    String shortUrl = shortUrls.get(i);
+                    if (ring.route(shortUrl) != shard && !(successorReads && ring.successor(shortUrl) == shard))
+                        continue;
+                    ownShortUrls.add(shortUrl);
+                    ownStoredUrls.add(storedUrls.get(i));
+                }
+                if (!ownShortUrls.isEmpty()) consumer.accept(ownShortUrls, ownStoredUrls);
+            });
+        }
+    }
+
+    /**
+     * Copies the short urls that are kept on a shard they no longer belong to onto their shard, as after
+     * adding one. Short urls past their retention are left where they are. Safe to run again, and to run
+     * while serving with successor reads on.
+     *
+     * @param expiredRetention how long expired short urls are kept, see
+     *                         {@link com.rostami.urlshortener.config.UrlExpiryProperties}
+     */
+    public Result rebalance(int batchSize, Duration expiredRetention) {
+        var result = new Result(0, 0, 0);
+        for (UrlRepository shard : shards.values()) {
+            shard.scan(batchSize, (shortUrls, storedUrls) -> {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < shortUrls.size(); i++) {
+                    String shortUrl = shortUrls.get(i);
+                    String storedUrl = storedUrls.get(i);
+                    result.scanned++;
+                    UrlRepository owner = ring.route(shortUrl);
+                    if (owner == shard) continue;
+                    long expiresAt = StoredUrl.expiresAtMillis(storedUrl);
+                    if (expiresAt != StoredUrl.NEVER && expiresAt + expiredRetention.toMillis() <= now) continue;
+                    Duration timeToLive = expiresAt == StoredUrl.NEVER ? null
+                            : StoredUrl.timeToLive(Instant.ofEpochMilli(expiresAt), expiredRetention);
+                    if (owner.claim(shortUrl, storedUrl, timeToLive) || storedUrl.equals(owner.find(shortUrl))) {
+                        result.moved++;
+                    } else {
+                        result.conflicts++;
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private boolean heldBySuccessor(String shortUrl) {
+        if (!successorReads) return false;
+        UrlRepository successor = ring.successor(shortUrl);
+        return successor != ring.route(shortUrl) && successor.find(shortUrl) != null;
+    }
+
+    /**
+     * Runs the operation once per shard with the indexes of that shard's short urls and puts the results back
+     * in the order of the given short urls.
+     */
+    private static <R> List<R> perShard(List<String> shortUrls,
+                                        Function<String, UrlRepository> router,
+                                        BiFunction<UrlRepository, List<Integer>, List<R>> operation) {
+        Map<UrlRepository, List<Integer>> indexesByShard = new IdentityHashMap<>();
+        for (int i = 0; i < shortUrls.size(); i++)
+            indexesByShard.computeIfAbsent(router.apply(shortUrls.get(i)), shard -> new ArrayList<>()).add(i);
+        List<R> results = new ArrayList<>(shortUrls.size());
+        for (int i = 0; i < shortUrls.size(); i++) results.add(null);
+        indexesByShard.forEach((shard, indexes) -> {
+            List<R> shardResults = operation.apply(shard, indexes);
+            for (int i = 0; i < indexes.size(); i++) results.set(indexes.get(i), shardResults.get(i));
+        });
+        return results;
+    }
+
+    private static <T> List<T> select(List<T> values, List<Integer> indexes) {
+        List<T> selected = new ArrayList<>(indexes.size());
+        for (int i : indexes) selected.add(values.get(i));
+        return selected;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Result {
+        private long scanned;
+        private long moved;
+        private long conflicts;
+    }
+}
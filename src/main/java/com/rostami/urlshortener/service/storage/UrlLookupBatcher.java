@@ -0,0 +1,155 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlLookupBatchingProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the short urls of concurrent resolves together. Every lookup is queued; a dispatcher thread takes
+ * the oldest one, waits at most {@code max-wait} after it was queued for others to join, up to
+ * {@code max-batch-size}, and hands the batch to one of {@code concurrency} threads that resolve it with a
+ * single {@link UrlRepository#findAll(List)}, an MGET in the redis layouts. A short url asked for more than once
+ * in a batch is looked up once. Each caller then gets its own stored url, or null, or the batch's failure.
+ * <p>
+ * Under load this trades up to {@code max-wait} of latency for one command and one round trip per batch
+ * instead of per resolve; when disabled, lookups go straight to the repository.
+ */
+@Slf4j
+@Component
+public class UrlLookupBatcher {
+    private final UrlLookupBatchingProperties properties;
+    private final UrlRepository urlRepository;
+    private final UrlMetrics metrics;
+    private final BlockingQueue<Lookup> queue = new LinkedBlockingQueue<>();
+    private Thread dispatcher;
+    private ExecutorService executor;
+
+    public UrlLookupBatcher(UrlLookupBatchingProperties properties, UrlRepository urlRepository, UrlMetrics metrics) {
+        this.properties = properties;
+        this.urlRepository = urlRepository;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) return;
+        executor = Executors.newFixedThreadPool(properties.getConcurrency(), new ThreadFactoryBuilder()
+                .setNameFormat("lookup-batch-%d")
+                .setDaemon(true)
+                .build());
+        dispatcher = new ThreadFactoryBuilder()
+                .setNameFormat("lookup-batcher-%d")
+                .setDaemon(true)
+                .build()
+                .newThread(this::dispatch);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (dispatcher == null) return;
+        dispatcher.interrupt();
+        executor.shutdownNow();
+        List<Lookup> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(lookup -> lookup.completeExceptionally(new IllegalStateException("Lookups are shut down")));
+    }
+
+    /**
+     * @return the stored url, or null when the short url is not mapped
+     */
+    public String find(String shortUrl) {
+        if (dispatcher == null) return urlRepository.find(shortUrl);
+        try {
+            return enqueue(shortUrl).get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Could not look up " + shortUrl, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while looking up " + shortUrl, ex);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #find(String)}; completes empty when the short url is not mapped. Batches
+     * are resolved on the batcher's own threads, never on the caller's.
+     */
+    public Mono<String> findReactive(String shortUrl) {
+        if (dispatcher == null) return urlRepository.findReactive(shortUrl);
+        return Mono.fromFuture(() -> enqueue(shortUrl));
+    }
+
+    private Lookup enqueue(String shortUrl) {
+        var lookup = new Lookup(shortUrl, System.nanoTime());
+        queue.add(lookup);
+        return lookup;
+    }
+
+    private void dispatch() {
+        int maxBatchSize = properties.getMaxBatchSize();
+        long maxWaitNanos = properties.getMaxWait().toNanos();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Lookup> batch = new ArrayList<>(maxBatchSize);
+                Lookup first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                long deadline = first.queuedNanos + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    Lookup next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                executor.execute(() -> lookUp(batch));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void lookUp(List<Lookup> batch) {
+        long sentNanos = System.nanoTime();
+        for (Lookup lookup : batch) metrics.lookupBatchWait().record(sentNanos - lookup.queuedNanos, TimeUnit.NANOSECONDS);
+        Map<String, List<Lookup>> lookupsByShortUrl = new HashMap<>();
+        for (Lookup lookup : batch) lookupsByShortUrl.computeIfAbsent(lookup.shortUrl, shortUrl -> new ArrayList<>(1)).add(lookup);
+        List<String> shortUrls = new ArrayList<>(lookupsByShortUrl.keySet());
+        metrics.lookupBatchSize().record(shortUrls.size());
+        try {
+            List<String> storedUrls = urlRepository.findAll(shortUrls);
+            for (int i = 0; i < shortUrls.size(); i++)
+                for (Lookup lookup : lookupsByShortUrl.get(shortUrls.get(i))) lookup.complete(storedUrls.get(i));
+        } catch (RuntimeException ex) {
+            log.debug("Lookup batch of {} short urls failed", shortUrls.size(), ex);
+            batch.forEach(lookup -> lookup.completeExceptionally(ex));
+        }
+    }
+
+    private static final class Lookup extends CompletableFuture<String> {
+        private final String shortUrl;
+        private final long queuedNanos;
+
+        private Lookup(String shortUrl, long queuedNanos) {
+            this.shortUrl = shortUrl;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.rostami.urlshortener.service.storage;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of the short url to stored url mappings (see {@link com.rostami.urlshortener.service.StoredUrl}).
+ * Mappings are only ever claimed, never overwritten; expiring ones are removed by the storage itself once
+ * their time to live is over.
+ */
+public interface UrlRepository {
+
+    /**
+     * @return the stored url, or null when the short url is not mapped
+     */
+    String find(String shortUrl);
+
+    /**
+     * @return the stored urls in the order of the given short urls, with nulls for the unmapped ones
+     */
+    List<String> findAll(List<String> shortUrls);
+
+    /**
+     * Maps the short url to the stored url unless it is already mapped.
+     *
+     * @param timeToLive how long the mapping is kept, or null to keep it forever
+     * @return whether the short url was free and is now mapped
+     */
+    boolean claim(String shortUrl, String storedUrl, Duration timeToLive);
+
+    /**
+     * Claims permanent mappings for all the given short urls in one round trip.
+     *
+     * @return for every short url whether it was claimed
+     */
+    List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls);
+
+    /**
+     * Non-blocking variant of {@link #find(String)}; completes empty when the short url is not mapped.
+     */
+    Mono<String> findReactive(String shortUrl);
+
+    /**
+     * Non-blocking variant of {@link #claim(String, String, Duration)}.
+     */
+    Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive);
+
+    /**
+     * Walks all mappings, handing them to the consumer in batches of about the given size as short urls and
+     * their stored urls. Mappings are visited in no particular order, and ones claimed or removed meanwhile
+     * may or may not be seen.
+     */
+    void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer);
+}
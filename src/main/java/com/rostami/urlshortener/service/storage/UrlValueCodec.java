@@ -0,0 +1,70 @@
+package com.rostami.urlshortener.service.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Byte encoding of the stored urls of the bucketed layout. Urls of at least {@code threshold} bytes are
+ * deflated against a dictionary of common url fragments and marked with a leading zero byte, which never
+ * starts a plain stored url; everything else is stored as plain UTF-8.
+ */
+final class UrlValueCodec {
+    private static final byte COMPRESSED = 0;
+    private static final byte[] DICTIONARY = ("utm_source=utm_medium=utm_campaign=utm_content=utm_term="
+            + "?id=&page=&q=&ref=.html.php/index/search/product/watch?v=/questions/"
+            + ".org/.net/.io/.co/.com/https://www.http://www.https://").getBytes(StandardCharsets.UTF_8);
+
+    private final int threshold;
+
+    /**
+     * @param threshold length in bytes from which values are compressed, or zero to never compress
+     */
+    UrlValueCodec(int threshold) {
+        this.threshold = threshold;
+    }
+
+    byte[] encode(String storedUrl) {
+        byte[] plain = storedUrl.getBytes(StandardCharsets.UTF_8);
+        if (threshold <= 0 || plain.length < threshold) return plain;
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(plain);
+            deflater.finish();
+            byte[] compressed = new byte[plain.length];
+            compressed[0] = COMPRESSED;
+            int length = deflater.deflate(compressed, 1, compressed.length - 1);
+            // not worth it (or didn't fit): keep the plain value
+            if (!deflater.finished()) return plain;
+            return Arrays.copyOf(compressed, length + 1);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    String decode(byte[] value) {
+        if (value == null) return null;
+        if (value.length == 0 || value[0] != COMPRESSED) return new String(value, StandardCharsets.UTF_8);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, 1, value.length - 1);
+            ByteArrayOutputStream plain = new ByteArrayOutputStream(value.length * 3);
+            byte[] buffer = new byte[256];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsDictionary()) inflater.setDictionary(DICTIONARY);
+                else if (length == 0 && inflater.needsInput()) throw new IllegalStateException("Truncated compressed url");
+                plain.write(buffer, 0, length);
+            }
+            return plain.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt compressed url", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
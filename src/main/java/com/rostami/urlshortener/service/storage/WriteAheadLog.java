@@ -0,0 +1,312 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead log of claims, kept as a sequence of segment files. Appends are made durable with group
+ * commit: a writer thread takes every append queued while the previous sync ran, up to
+ * {@code maxCommitSize} records, writes them to the current segment and syncs it once for all of them, and
+ * only then completes their futures. A new segment's directory entry is synced before anything is committed
+ * to it.
+ * <p>
+ * {@link #roll()} seals the current segment and starts a new one, so the sealed segment's records can be
+ * written to the storage and the segment deleted while appends go on. Segments found on startup are
+ * {@link #recovered()} up to their first torn record.
+ * <p>
+ * Record layout as in {@link MappedUrlLog}: crc32c of the rest of the record (int), removal time in epoch
+ * millis (long), code length (short), value length (int), code, value.
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 18;
+
+    private final Path directory;
+    private final int maxCommitSize;
+    private final DistributionSummary commitSizes;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final List<Segment> recovered = new ArrayList<>();
+    private final Object segmentLock = new Object();
+    private final Thread writer;
+    private long nextSequence;
+    private Segment current;
+    private volatile boolean closed;
+
+    WriteAheadLog(Path directory, int maxCommitSize, DistributionSummary commitSizes) {
+        this.directory = directory;
+        this.maxCommitSize = maxCommitSize;
+        this.commitSizes = commitSizes;
+        try {
+            Files.createDirectories(directory);
+            for (Path path : segmentPaths()) {
+                recovered.add(new Segment(path, null, read(path)));
+                nextSequence = Math.max(nextSequence, sequence(path) + 1);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read the write-ahead log in " + directory, ex);
+        }
+        this.current = open();
+        this.writer = new ThreadFactoryBuilder()
+                .setNameFormat("write-ahead-log-%d")
+                .setDaemon(true)
+                .build()
+                .newThread(this::write);
+    }
+
+    static final class Record {
+        final String shortUrl;
+        final String storedUrl;
+        final long removeAtMillis;
+
+        Record(String shortUrl, String storedUrl, long removeAtMillis) {
+            this.shortUrl = shortUrl;
+            this.storedUrl = storedUrl;
+            this.removeAtMillis = removeAtMillis;
+        }
+    }
+
+    static final class Segment {
+        final Path path;
+        final List<Record> records;
+        private final FileChannel channel;
+
+        private Segment(Path path, FileChannel channel, List<Record> records) {
+            this.path = path;
+            this.channel = channel;
+            this.records = records;
+        }
+    }
+
+    /**
+     * @return the segments left by the previous run, oldest first
+     */
+    List<Segment> recovered() {
+        return recovered;
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Queues the records as one unit; the future completes once they are all synced to the disk.
+     */
+    CompletableFuture<Void> append(List<Record> records) {
+        var append = new Append(records);
+        queue.add(append);
+        // close() may have failed the queued appends before this one got in
+        if (closed && queue.remove(append))
+            append.completeExceptionally(new IllegalStateException("The write-ahead log is closed"));
+        return append;
+    }
+
+    /**
+     * Seals the current segment and continues in a new one.
+     *
+     * @return the sealed segment, or null when nothing was appended to it
+     */
+    Segment roll() {
+        synchronized (segmentLock) {
+            if (current == null || current.records.isEmpty()) return null;
+            Segment sealed = current;
+            close(sealed.channel);
+            current = closed ? null : open();
+            return sealed;
+        }
+    }
+
+    void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not delete " + segment.path, ex);
+        }
+    }
+
+    /**
+     * Stops taking appends, syncs the ones already queued and closes the current segment; it can still be
+     * sealed with {@link #roll()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<Append> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        unwritten.forEach(append -> append.completeExceptionally(new IllegalStateException("The write-ahead log is closed")));
+        synchronized (segmentLock) {
+            if (current != null) close(current.channel);
+        }
+    }
+
+    private void write() {
+        List<Append> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Append first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                int records = first.records.size();
+                while (records < maxCommitSize && queue.peek() != null) {
+                    Append next = queue.poll();
+                    batch.add(next);
+                    records += next.records.size();
+                }
+                commit(batch, records);
+                batch.forEach(append -> append.complete(null));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException ex) {
+                log.error("Could not write {} appends to the write-ahead log", batch.size(), ex);
+                batch.forEach(append -> append.completeExceptionally(ex));
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Append> batch, int records) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(records);
+        int length = 0;
+        for (Append append : batch) {
+            for (Record record : append.records) {
+                byte[] bytes = encode(record);
+                encoded.add(bytes);
+                length += bytes.length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        encoded.forEach(buffer::put);
+        buffer.flip();
+        synchronized (segmentLock) {
+            long committed = current.channel.position();
+            try {
+                while (buffer.hasRemaining()) current.channel.write(buffer);
+                current.channel.force(false);
+            } catch (IOException ex) {
+                // a torn batch would hide the batches committed after it from recovery
+                current.channel.truncate(committed);
+                current.channel.position(committed);
+                throw ex;
+            }
+            for (Append append : batch) current.records.addAll(append.records);
+        }
+        commitSizes.record(records);
+    }
+
+    private Segment open() {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // commits only sync the segment's content; without its directory entry they could be lost all the same
+            Directories.sync(directory);
+            return new Segment(path, channel, new ArrayList<>());
+        } catch (IOException ex) {
+            close(channel);
+            throw new UncheckedIOException("Could not create " + path, ex);
+        }
+    }
+
+    private List<Path> segmentPaths() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Reads the segment's records up to the first one that is torn or corrupt.
+     */
+    private static List<Record> read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Record> records = new ArrayList<>();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int position = buffer.position();
+            int checksum = buffer.getInt();
+            long removeAtMillis = buffer.getLong();
+            int codeLength = buffer.getShort();
+            int valueLength = buffer.getInt();
+            if (codeLength <= 0 || valueLength < 0 || buffer.remaining() < codeLength + valueLength) break;
+            if (checksum != checksum(buffer.array(), position, HEADER_SIZE + codeLength + valueLength)) break;
+            String shortUrl = new String(buffer.array(), buffer.position(), codeLength, StandardCharsets.UTF_8);
+            String storedUrl = new String(buffer.array(), buffer.position() + codeLength, valueLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + codeLength + valueLength);
+            records.add(new Record(shortUrl, storedUrl, removeAtMillis));
+        }
+        if (buffer.hasRemaining()) log.warn("Ignoring a torn record at {} of {}", buffer.position(), path);
+        return records;
+    }
+
+    private static byte[] encode(Record record) {
+        byte[] code = record.shortUrl.getBytes(StandardCharsets.UTF_8);
+        byte[] value = record.storedUrl.getBytes(StandardCharsets.UTF_8);
+        if (code.length > Short.MAX_VALUE) throw new IllegalArgumentException("Short url of " + code.length + " bytes is too long");
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + code.length + value.length);
+        buffer.putInt(0)
+                .putLong(record.removeAtMillis)
+                .putShort((short) code.length)
+                .putInt(value.length)
+                .put(code)
+                .put(value);
+        buffer.putInt(0, checksum(buffer.array(), 0, buffer.capacity()));
+        return buffer.array();
+    }
+
+    private static int checksum(byte[] record, int offset, int length) {
+        var crc = new CRC32C();
+        crc.update(record, offset + Integer.BYTES, length - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null || !channel.isOpen()) return;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not close a write-ahead log segment", ex);
+        }
+    }
+
+    private static final class Append extends CompletableFuture<Void> {
+        private final List<Record> records;
+
+        private Append(List<Record> records) {
+            this.records = records;
+        }
+    }
+}
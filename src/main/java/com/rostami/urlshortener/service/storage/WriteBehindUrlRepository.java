@@ -0,0 +1,270 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rostami.urlshortener.config.UrlWriteBehindProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Acknowledges claims once they are in the local {@link WriteAheadLog}, and writes them to the storage
+ * behind the callers' backs: every {@code drain-interval} the log is rolled and the sealed segment's claims
+ * are written in pipelines of {@code drain-batch-size}, after which the segment is deleted. Segments left by
+ * a previous run are replayed the same way on startup.
+ * <p>
+ * Until a claim has reached the storage, resolves on this node are answered from memory; other nodes only
+ * see it afterwards, which is when the flush listener is told about it, to drop their cached misses. The
+ * storage is not asked whether a short url is free before acknowledging, so this needs a generator that
+ * never hands out a taken code; a claim that still finds its short url taken when it is written is logged
+ * and counted as a conflict. Once {@code max-pending} claims are waiting, new ones are written to the
+ * storage directly.
+ */
+@Slf4j
+public class WriteBehindUrlRepository implements UrlRepository {
+    private final UrlWriteBehindProperties properties;
+    private final UrlRepository storage;
+    private final UrlMetrics metrics;
+    private final Consumer<List<String>> flushListener;
+    private final WriteAheadLog writeAheadLog;
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+    private final Deque<WriteAheadLog.Segment> sealed = new ArrayDeque<>();
+    private ScheduledExecutorService drainer;
+
+    public WriteBehindUrlRepository(UrlWriteBehindProperties properties,
+                                    UrlRepository storage,
+                                    UrlMetrics metrics,
+                                    Consumer<List<String>> flushListener) {
+        this.properties = properties;
+        this.storage = storage;
+        this.metrics = metrics;
+        this.flushListener = flushListener;
+        this.writeAheadLog = new WriteAheadLog(Path.of(properties.getDirectory()), properties.getMaxCommitSize(),
+                metrics.writeBehindCommitSize());
+        for (WriteAheadLog.Segment segment : writeAheadLog.recovered()) {
+            segment.records.forEach(record -> pending.putIfAbsent(record.shortUrl, record.storedUrl));
+            sealed.add(segment);
+        }
+        if (!pending.isEmpty()) log.info("Replaying {} logged creates from {}", pending.size(), properties.getDirectory());
+        metrics.writeBehindPending(pending);
+    }
+
+    @PostConstruct
+    void start() {
+        writeAheadLog.start();
+        drainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("write-behind-%d")
+                .setDaemon(true)
+                .build());
+        long drainMillis = properties.getDrainInterval().toMillis();
+        drainer.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (RuntimeException ex) {
+                log.warn("Could not write the logged creates to the storage, retrying", ex);
+            }
+        }, drainMillis, drainMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops taking claims and makes a last attempt to write the logged ones; whatever is left is replayed on
+     * the next start.
+     */
+    @PreDestroy
+    void stop() {
+        writeAheadLog.close();
+        if (drainer != null) {
+            drainer.shutdown();
+            try {
+                if (!drainer.awaitTermination(10, TimeUnit.SECONDS)) return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        try {
+            drain();
+        } catch (RuntimeException ex) {
+            log.warn("{} logged creates are left for the next start", pending.size(), ex);
+        }
+    }
+
+    @Override
+    public String find(String shortUrl) {
+        String storedUrl = pending.get(shortUrl);
+        return storedUrl != null ? storedUrl : storage.find(shortUrl);
+    }
+
+    /**
+     * Pending claims are read before the storage: they only leave {@code pending} once they are in it.
+     */
+    @Override
+    public List<String> findAll(List<String> shortUrls) {
+        List<String> storedUrls = new ArrayList<>(shortUrls.size());
+        List<Integer> missing = new ArrayList<>();
+        for (String shortUrl : shortUrls) {
+            String storedUrl = pending.get(shortUrl);
+            if (storedUrl == null) missing.add(storedUrls.size());
+            storedUrls.add(storedUrl);
+        }
+        if (missing.isEmpty()) return storedUrls;
+        if (missing.size() == shortUrls.size()) return storage.findAll(shortUrls);
+        List<String> missingShortUrls = new ArrayList<>(missing.size());
+        for (int i : missing) missingShortUrls.add(shortUrls.get(i));
+        List<String> fromStorage = storage.findAll(missingShortUrls);
+        for (int i = 0; i < missing.size(); i++) storedUrls.set(missing.get(i), fromStorage.get(i));
+        return storedUrls;
+    }
+
+    @Override
+    public boolean claim(String shortUrl, String storedUrl, Duration timeToLive) {
+        if (pending.size() >= properties.getMaxPending())
+            return !pending.containsKey(shortUrl) && storage.claim(shortUrl, storedUrl, timeToLive);
+        if (pending.putIfAbsent(shortUrl, storedUrl) != null) return false;
+        try {
+            writeAheadLog.append(List.of(record(shortUrl, storedUrl, timeToLive))).join();
+            return true;
+        } catch (CompletionException ex) {
+            pending.remove(shortUrl, storedUrl);
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Logs all the claimed short urls with one append, which a single sync makes durable.
+     */
+    @Override
+    public List<Boolean> claimAll(List<String> shortUrls, List<String> storedUrls) {
+        if (pending.size() >= properties.getMaxPending()) return storage.claimAll(shortUrls, storedUrls);
+        List<Boolean> claimed = new ArrayList<>(shortUrls.size());
+        List<WriteAheadLog.Record> records = new ArrayList<>(shortUrls.size());
+        for (int i = 0; i < shortUrls.size(); i++) {
+            boolean free = pending.putIfAbsent(shortUrls.get(i), storedUrls.get(i)) == null;
+            claimed.add(free);
+            if (free) records.add(record(shortUrls.get(i), storedUrls.get(i), null));
+        }
+        try {
+            if (!records.isEmpty()) writeAheadLog.append(records).join();
+            return claimed;
+        } catch (CompletionException ex) {
+            records.forEach(record -> pending.remove(record.shortUrl, record.storedUrl));
+            throw unwrap(ex);
+        }
+    }
+
+    @Override
+    public Mono<String> findReactive(String shortUrl) {
+        return Mono.defer(() -> {
+            String storedUrl = pending.get(shortUrl);
+            return storedUrl != null ? Mono.just(storedUrl) : storage.findReactive(shortUrl);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> claimReactive(String shortUrl, String storedUrl, Duration timeToLive) {
+        return Mono.defer(() -> {
+            if (pending.size() >= properties.getMaxPending())
+                return pending.containsKey(shortUrl) ? Mono.just(false) : storage.claimReactive(shortUrl, storedUrl, timeToLive);
+            if (pending.putIfAbsent(shortUrl, storedUrl) != null) return Mono.just(false);
+            return Mono.fromFuture(writeAheadLog.append(List.of(record(shortUrl, storedUrl, timeToLive))))
+                    .thenReturn(true)
+                    .doOnError(ex -> pending.remove(shortUrl, storedUrl));
+        });
+    }
+
+    /**
+     * Walks the storage only; claims that haven't reached it yet are not seen.
+     */
+    @Override
+    public void scan(int batchSize, BiConsumer<List<String>, List<String>> consumer) {
+        storage.scan(batchSize, consumer);
+    }
+
+    /**
+     * Writes the claims logged so far to the storage, oldest segment first. A segment is only deleted once
+     * all its claims are written, so a failure leaves it to be written again; claims are idempotent.
+     */
+    void drain() {
+        WriteAheadLog.Segment rolled = writeAheadLog.roll();
+        if (rolled != null) sealed.add(rolled);
+        while (!sealed.isEmpty()) {
+            WriteAheadLog.Segment segment = sealed.peek();
+            for (List<WriteAheadLog.Record> chunk : Iterables.partition(segment.records, properties.getDrainBatchSize()))
+                flush(chunk);
+            writeAheadLog.delete(segment);
+            sealed.poll();
+        }
+    }
+
+    private void flush(List<WriteAheadLog.Record> records) {
+        long now = System.currentTimeMillis();
+        List<String> shortUrls = new ArrayList<>(records.size());
+        List<String> storedUrls = new ArrayList<>(records.size());
+        List<String> taken = new ArrayList<>();
+        for (WriteAheadLog.Record record : records) {
+            if (record.removeAtMillis == Long.MAX_VALUE) {
+                shortUrls.add(record.shortUrl);
+                storedUrls.add(record.storedUrl);
+            } else if (record.removeAtMillis > now
+                    && !storage.claim(record.shortUrl, record.storedUrl, Duration.ofMillis(record.removeAtMillis - now))) {
+                taken.add(record.shortUrl);
+            }
+        }
+        if (!shortUrls.isEmpty()) {
+            List<Boolean> claimed = storage.claimAll(shortUrls, storedUrls);
+            for (int i = 0; i < shortUrls.size(); i++) if (!claimed.get(i)) taken.add(shortUrls.get(i));
+        }
+        if (!taken.isEmpty()) checkConflicts(records, taken);
+        List<String> flushed = new ArrayList<>(records.size());
+        for (WriteAheadLog.Record record : records) {
+            pending.remove(record.shortUrl, record.storedUrl);
+            flushed.add(record.shortUrl);
+        }
+        flushListener.accept(flushed);
+    }
+
+    /**
+     * A short url found taken is fine when it holds the very same stored url, as after replaying a segment
+     * that was partly written before a restart.
+     */
+    private void checkConflicts(List<WriteAheadLog.Record> records, List<String> taken) {
+        Map<String, String> logged = new HashMap<>();
+        records.forEach(record -> logged.put(record.shortUrl, record.storedUrl));
+        List<String> stored = storage.findAll(taken);
+        for (int i = 0; i < taken.size(); i++) {
+            String storedUrl = logged.get(taken.get(i));
+            if (stored.get(i) == null || stored.get(i).equals(storedUrl)) continue;
+            metrics.writeBehindConflict();
+            log.error("Lost the create of {} -> {}: the short url is taken by {}", taken.get(i), storedUrl, stored.get(i));
+        }
+    }
+
+    private static WriteAheadLog.Record record(String shortUrl, String storedUrl, Duration timeToLive) {
+        long removeAtMillis = timeToLive == null ? Long.MAX_VALUE : System.currentTimeMillis() + timeToLive.toMillis();
+        return new WriteAheadLog.Record(shortUrl, storedUrl, removeAtMillis);
+    }
+
+    private static RuntimeException unwrap(CompletionException ex) {
+        return ex.getCause() instanceof RuntimeException
+                ? (RuntimeException) ex.getCause()
+                : new IllegalStateException("Could not log the create", ex.getCause());
+    }
+}
@@ -0,0 +1,108 @@
+package com.rostami.urlshortener.validation;
+
+/**
+ * Hand written, single pass equivalent of the url regex previously used on
+ * {@link com.rostami.urlshortener.dto.in.UrlCreateParam}:
+ * <pre>
+ * ((http|https)://)(www.)?[a-zA-Z0-9@:%._+~#?&amp;/=]{2,256}\.[a-z]{2,6}\b([-a-zA-Z0-9@:%._+~#?&amp;/=]*)
+ * </pre>
+ * It accepts exactly the inputs the regex (with {@code matches()}) accepts, but runs in linear time and
+ * allocates nothing, where the regex backtracks over every '.' of the host part.
+ */
+public final class UrlScanner {
+    private static final int MIN_HOST_LENGTH = 2;
+    private static final int MAX_HOST_LENGTH = 256;
+    private static final int MIN_TLD_LENGTH = 2;
+    private static final int MAX_TLD_LENGTH = 6;
+
+    private static final boolean[] HOST = new boolean[128];
+    private static final boolean[] TAIL = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) HOST[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) HOST[c] = true;
+        for (char c = '0'; c <= '9'; c++) HOST[c] = true;
+        for (char c : "@:%._+~#?&/=".toCharArray()) HOST[c] = true;
+        System.arraycopy(HOST, 0, TAIL, 0, HOST.length);
+        TAIL['-'] = true;
+    }
+
+    private UrlScanner() {
+    }
+
+    public static boolean matches(CharSequence input) {
+        int start;
+        if (startsWith(input, 0, "https://")) start = 8;
+        else if (startsWith(input, 0, "http://")) start = 7;
+        else return false;
+
+        int tailStart = tailStart(input);
+        if (startsWith(input, start, "www") && start + 3 < input.length()) {
+            // "(www.)?" - the dot is the regex wildcard, so any single code point but a line terminator
+            int codePoint = Character.codePointAt(input, start + 3);
+            if (!isLineTerminator(codePoint)
+                    && matchesHost(input, start + 3 + Character.charCount(codePoint), tailStart)) return true;
+        }
+        return matchesHost(input, start, tailStart);
+    }
+
+    /**
+     * Tries every '.' that can end the 2 to 256 host characters as the start of the top level domain.
+     */
+    private static boolean matchesHost(CharSequence input, int from, int tailStart) {
+        int end = Math.min(input.length(), from + MAX_HOST_LENGTH + 1);
+        for (int i = from; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == '.' && i - from >= MIN_HOST_LENGTH && matchesTld(input, i + 1, tailStart)) return true;
+            if (!is(HOST, c)) return false;
+        }
+        return false;
+    }
+
+    /**
+     * "[a-z]{2,6}\b" followed by nothing but tail characters. As the tld letters are word characters, the
+     * boundary only holds when the run of lowercase letters ends right there and isn't followed by another
+     * word character.
+     */
+    private static boolean matchesTld(CharSequence input, int from, int tailStart) {
+        int length = input.length();
+        int end = from;
+        while (end < length && end - from <= MAX_TLD_LENGTH && isLowercase(input.charAt(end))) end++;
+        int tldLength = end - from;
+        if (tldLength < MIN_TLD_LENGTH || tldLength > MAX_TLD_LENGTH) return false;
+        if (end < length && isWordCharacter(input.charAt(end))) return false;
+        return end >= tailStart;
+    }
+
+    /**
+     * Smallest index from which every remaining character is a tail character.
+     */
+    private static int tailStart(CharSequence input) {
+        int i = input.length();
+        while (i > 0 && is(TAIL, input.charAt(i - 1))) i--;
+        return i;
+    }
+
+    private static boolean startsWith(CharSequence input, int offset, String prefix) {
+        if (input.length() - offset < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (input.charAt(offset + i) != prefix.charAt(i)) return false;
+        return true;
+    }
+
+    private static boolean is(boolean[] table, char c) {
+        return c < table.length && table[c];
+    }
+
+    private static boolean isLowercase(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isLineTerminator(int codePoint) {
+        return codePoint == '\n' || codePoint == '\r' || codePoint == '\u0085' || codePoint == '\u2028' || codePoint == '\u2029';
+    }
+}
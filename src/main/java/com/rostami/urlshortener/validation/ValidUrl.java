@@ -0,0 +1,28 @@
+package com.rostami.urlshortener.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The annotated string must be an http(s) url accepted by {@link UrlScanner} and no longer than
+ * {@link #maxLength()}. Null is considered valid.
+ */
+@Documented
+@Constraint(validatedBy = ValidUrlValidator.class)
+@Target({FIELD, METHOD, PARAMETER, ANNOTATION_TYPE, TYPE_USE})
+@Retention(RUNTIME)
+public @interface ValidUrl {
+    String message() default "must be a valid http or https url";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    int maxLength() default 2048;
+}
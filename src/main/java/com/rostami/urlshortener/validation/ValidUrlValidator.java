@@ -0,0 +1,19 @@
+package com.rostami.urlshortener.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class ValidUrlValidator implements ConstraintValidator<ValidUrl, CharSequence> {
+    private int maxLength;
+
+    @Override
+    public void initialize(ValidUrl constraintAnnotation) {
+        maxLength = constraintAnnotation.maxLength();
+    }
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        if (value == null) return true;
+        return value.length() <= maxLength && UrlScanner.matches(value);
+    }
+}
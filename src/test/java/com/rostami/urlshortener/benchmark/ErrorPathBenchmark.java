@@ -0,0 +1,96 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rostami.urlshortener.controller.api.core.ServiceResult;
+import com.rostami.urlshortener.controller.api.errors.PrecomputedErrorBodies;
+import com.rostami.urlshortener.controller.api.errors.api.ApiError;
+import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Cost of answering an unknown short url once the lookup missed: throwing from {@code depth} frames down,
+ * counting the error and producing the response body. {@code previous} is the way it was done before, with
+ * a new exception filling in its stack trace, a counter lookup through the builder and the body serialized
+ * per response; {@code current} throws the shared stackless exception and reuses the precomputed body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+    @Param({"20", "100"})
+    private int depth;
+
+    private ObjectMapper objectMapper;
+    private MeterRegistry registry;
+    private UrlMetrics metrics;
+    private PrecomputedErrorBodies errorBodies;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        registry = new SimpleMeterRegistry();
+        metrics = new UrlMetrics(registry);
+        errorBodies = new PrecomputedErrorBodies(objectMapper);
+    }
+
+    @Benchmark
+    public byte[] previous() throws JsonProcessingException {
+        try {
+            throwFrom(depth, true);
+            throw new AssertionError();
+        } catch (StackTracedUrlNotFoundException ex) {
+            Counter.builder("url.shortener.errors")
+                    .description("Exceptions mapped to error responses")
+                    .tag("exception", ex.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+            var apiError = new ApiError(NOT_FOUND);
+            apiError.setMessage(ex.getMessage());
+            return objectMapper.writeValueAsBytes(ServiceResult.fail(apiError));
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> current() {
+        try {
+            throwFrom(depth, false);
+            throw new AssertionError();
+        } catch (UrlNotFoundException ex) {
+            metrics.error(ex);
+            return errorBodies.response(NOT_FOUND, ex.getMessage());
+        }
+    }
+
+    private static void throwFrom(int depth, boolean withStackTrace) {
+        if (depth > 0) {
+            throwFrom(depth - 1, withStackTrace);
+            return;
+        }
+        if (withStackTrace) throw new StackTracedUrlNotFoundException();
+        throw UrlNotFoundException.INSTANCE;
+    }
+
+    /**
+     * Stands in for {@link UrlNotFoundException} as it was before it went stackless.
+     */
+    private static final class StackTracedUrlNotFoundException extends RuntimeException {
+        private StackTracedUrlNotFoundException() {
+            super(URL_NOT_FOUND_EXCEPTION_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.storage.LocalUrlRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolve latency of the local layout with a million short urls, which is a hash probe in the off-heap index
+ * and a read from the mapped log, with no network hop to compare against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalUrlRepositoryBenchmark {
+    private static final int LINKS = 1_000_000;
+
+    private Path directory;
+    private LocalUrlRepository repository;
+    private String[] shortUrls;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("local-url-repository");
+        var properties = new UrlStorageProperties();
+        properties.setLocalDirectory(directory.toString());
+        repository = new LocalUrlRepository(properties);
+        shortUrls = new String[LINKS];
+        List<String> codes = new ArrayList<>(1_000);
+        List<String> urls = new ArrayList<>(1_000);
+        for (int i = 0; i < LINKS; i++) {
+            shortUrls[i] = Integer.toString(i, 36);
+            codes.add(shortUrls[i]);
+            urls.add("https://stackoverflow.com/questions/" + (11227809 + i) + "/why-is-processing-a-sorted-array-faster");
+            if (codes.size() == 1_000) {
+                repository.claimAll(codes, urls);
+                codes.clear();
+                urls.clear();
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String find() {
+        return repository.find(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,119 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop redirect load against a running instance: every connection sends its next resolve as soon as
+ * the previous one answers. Not a JMH benchmark, as it measures the server rather than this JVM. To compare
+ * the thread modes, start the app once per mode and run the same load against each:
+ * <pre>
+ * java -jar target/urlShortener-0.0.1-SNAPSHOT.jar --url-shortener.server.threads=platform
+ * java -jar target/urlShortener-0.0.1-SNAPSHOT.jar --url-shortener.server.threads=virtual
+ *
+ * ulimit -n 65536
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.rostami.urlshortener.benchmark.RedirectLoadTest \
+ *     -Dexec.args="http://localhost:8080 10000 60 1000"
+ * </pre>
+ * Arguments are base url, concurrent connections, seconds to run and number of short urls to spread the load over.
+ * The first tenth of the run is warmup and not recorded.
+ */
+public class RedirectLoadTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int CREATE_BATCH_SIZE = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int links = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        List<URI> redirects = createShortUrls(client, baseUrl, links);
+
+        Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(seconds) / 10;
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        var done = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            resolve(client, redirects, latencies, errors, recordFrom, end, done);
+        }
+        done.await();
+
+        double recordedSeconds = (end - recordFrom) / 1e9;
+        System.out.printf("connections=%d throughput=%.0f req/s errors=%d%n",
+                connections, latencies.getTotalCount() / recordedSeconds, errors.get());
+        System.out.printf("latency ms p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getValueAtPercentile(99.9) / 1e6, latencies.getMaxValue() / 1e6);
+    }
+
+    private static void resolve(HttpClient client, List<URI> redirects, Histogram latencies, AtomicLong errors,
+                                long recordFrom, long end, CountDownLatch done) {
+        long sent = System.nanoTime();
+        if (sent >= end) {
+            done.countDown();
+            return;
+        }
+        var request = HttpRequest.newBuilder(redirects.get(ThreadLocalRandom.current().nextInt(redirects.size())))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long received = System.nanoTime();
+            if (failure != null || response.statusCode() >= 400) {
+                errors.incrementAndGet();
+            } else if (sent >= recordFrom) {
+                latencies.recordValue(received - sent);
+            }
+            resolve(client, redirects, latencies, errors, recordFrom, end, done);
+        });
+    }
+
+    /**
+     * Creates the short urls through the batch endpoint, a thousand per request, and stops at the first one
+     * that couldn't be created rather than measure the redirects of missing short urls.
+     */
+    private static List<URI> createShortUrls(HttpClient client, String baseUrl, int links) throws Exception {
+        List<URI> redirects = new ArrayList<>(links);
+        for (int from = 0; from < links; from += CREATE_BATCH_SIZE) {
+            var body = OBJECT_MAPPER.createArrayNode();
+            for (int i = from; i < Math.min(links, from + CREATE_BATCH_SIZE); i++)
+                body.addObject().put("originalUrl", "https://stackoverflow.com/questions/" + (11227809 + i) + "/load-test");
+            var request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/urlShortenerService/generateShortUrls"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body)))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201)
+                throw new IllegalStateException("Could not create the short urls, got " + response.statusCode()
+                        + ": " + response.body());
+            for (JsonNode result : OBJECT_MAPPER.readTree(response.body()).path("data")) {
+                if (!result.path("success").asBoolean())
+                    throw new IllegalStateException("Could not create a short url: " + result);
+                redirects.add(URI.create(baseUrl + "/" + result.path("data").asText()));
+            }
+        }
+        return redirects;
+    }
+}
@@ -0,0 +1,52 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rostami.urlshortener.controller.api.core.ServiceResult;
+import com.rostami.urlshortener.controller.api.errors.api.ApiError;
+import com.rostami.urlshortener.dto.api.ResponseResult;
+import com.rostami.urlshortener.dto.out.UrlFindResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Jackson serialization of the response bodies, including building them, using an object mapper
+ * configured the way spring boot configures its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseResultSerializationBenchmark {
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public byte[] loadOriginalUrlResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ResponseResult.<UrlFindResult>builder()
+                .data(UrlFindResult.builder()
+                        .originalUrl("https://stackoverflow.com/questions/11227809")
+                        .shortUrl("3kTMd9a")
+                        .build())
+                .message("Successfully Load Original Url Of Short URL")
+                .build());
+    }
+
+    @Benchmark
+    public byte[] notFoundResponse() throws JsonProcessingException {
+        var apiError = new ApiError(NOT_FOUND);
+        apiError.setMessage(URL_NOT_FOUND_EXCEPTION_MESSAGE);
+        return objectMapper.writeValueAsBytes(ServiceResult.fail(apiError));
+    }
+}
@@ -0,0 +1,56 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.rostami.urlshortener.service.code.BlockShortCodeGenerator;
+import com.rostami.urlshortener.service.code.CounterShortCodeGenerator;
+import com.rostami.urlshortener.service.code.HashShortCodeGenerator;
+import com.rostami.urlshortener.service.code.SequenceAllocator;
+import com.rostami.urlshortener.service.code.ShortCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and code length of the short code generators. The shared sequence is an in-memory counter,
+ * so the numbers show the cost of the generators themselves; in production every counter code (and every
+ * block refill) adds one redis round trip on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortCodeGeneratorBenchmark {
+
+    @Param({"hash", "counter", "block"})
+    private String generator;
+
+    private ShortCodeGenerator shortCodeGenerator;
+    private AtomicLong sequence;
+
+    @Setup
+    public void setup() {
+        // roughly a billion links already created
+        sequence = new AtomicLong(1_000_000_000L);
+        SequenceAllocator allocator = sequence::addAndGet;
+        shortCodeGenerator = switch (generator) {
+            case "hash" -> new HashShortCodeGenerator(7);
+            case "counter" -> new CounterShortCodeGenerator(allocator);
+            case "block" -> new BlockShortCodeGenerator(allocator, 1_000);
+            default -> throw new IllegalArgumentException(generator);
+        };
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generate() {
+        return shortCodeGenerator.generate("https://stackoverflow.com/questions/" + Thread.currentThread().getId(), 0);
+    }
+
+    @TearDown
+    public void reportCodeLength() {
+        String code = shortCodeGenerator.generate("https://stackoverflow.com", 0);
+        System.out.printf("%n%s generator: code length %d after %,d ids%n", generator, code.length(), sequence.get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.code.HashShortCodeGenerator;
+import com.rostami.urlshortener.service.code.ShortCodeGenerator;
+import com.rostami.urlshortener.service.storage.BucketedUrlRepository;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Redis memory per million short urls for each storage layout. Not a JMH benchmark, as it measures redis
+ * rather than this JVM; it needs a running redis and FLUSHES the database it is pointed at:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.rostami.urlshortener.benchmark.StorageLayoutFootprint \
+ *     -Dexec.args="localhost 6379 15 1000000"
+ * </pre>
+ * Arguments are host, port, database and number of short urls.
+ */
+public class StorageLayoutFootprint {
+    private static final int CHUNK_SIZE = 1_000;
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int database = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        int links = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+        var configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setDatabase(database);
+        var connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        try {
+            var redisTemplate = new StringRedisTemplate(connectionFactory);
+            System.out.println("hash-max-listpack settings: " + redisTemplate.execute((RedisCallback<Properties>)
+                    connection -> connection.getConfig("hash-max-*")));
+            measure("flat", new FlatUrlRepository(redisTemplate, null), redisTemplate, links);
+            measure("bucketed", new BucketedUrlRepository(storageProperties(links, false), redisTemplate, null), redisTemplate, links);
+            measure("bucketed+compression", new BucketedUrlRepository(storageProperties(links, true), redisTemplate, null), redisTemplate, links);
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static void measure(String layout, UrlRepository repository, StringRedisTemplate redisTemplate, int links) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+        long before = usedMemory(redisTemplate);
+        ShortCodeGenerator generator = new HashShortCodeGenerator(7);
+        for (int from = 0; from < links; from += CHUNK_SIZE) {
+            List<String> shortUrls = new ArrayList<>(CHUNK_SIZE);
+            List<String> originalUrls = new ArrayList<>(CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, links); i++) {
+                String originalUrl = "https://stackoverflow.com/questions/" + (11227809 + i) + "/why-is-processing-a-sorted-array-faster";
+                originalUrls.add(originalUrl);
+                shortUrls.add(generator.generate(originalUrl, 0));
+            }
+            repository.claimAll(shortUrls, originalUrls);
+        }
+        long used = usedMemory(redisTemplate) - before;
+        System.out.printf("%-22s %8.1f bytes/link %8.1f MB/million%n", layout, (double) used / links,
+                used * 1_000_000.0 / links / (1 << 20));
+    }
+
+    private static UrlStorageProperties storageProperties(int links, boolean compression) {
+        var properties = new UrlStorageProperties();
+        properties.setBuckets(Math.max(1, links / 100));
+        properties.setCompressionEnabled(compression);
+        return properties;
+    }
+
+    private static long usedMemory(StringRedisTemplate redisTemplate) {
+        Properties memory = redisTemplate.execute((RedisCallback<Properties>) connection -> connection.info("memory"));
+        return Long.parseLong(memory.getProperty("used_memory"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import com.rostami.urlshortener.validation.UrlScanner;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Bean validation of {@link UrlCreateParam}, as done for every create request, and the bare url check
+ * compared to the regex it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlCreateParamValidationBenchmark {
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "((http|https)://)(www.)?[a-zA-Z0-9@:%._+~#?&/=]{2,256}\\.[a-z]{2,6}\\b([-a-zA-Z0-9@:%._+~#?&/=]*)");
+
+    @Param({"valid", "invalid", "long", "dotted"})
+    private String input;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private UrlCreateParam param;
+
+    @Setup
+    public void setup() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        param = UrlCreateParam.builder().originalUrl(switch (input) {
+            case "valid" -> "https://stackoverflow.com/questions/11227809/why-is-processing-a-sorted-array-faster";
+            case "invalid" -> "stackoverflow dot com";
+            case "long" -> "https://" + "a".repeat(250) + ".com/" + "b".repeat(1_000);
+            case "dotted" -> "https://" + "a.".repeat(120) + "!";
+            default -> throw new IllegalArgumentException(input);
+        }).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UrlCreateParam>> validate() {
+        return validator.validate(param);
+    }
+
+    @Benchmark
+    public boolean regex() {
+        return URL_PATTERN.matcher(param.getOriginalUrl()).matches();
+    }
+
+    @Benchmark
+    public boolean scanner() {
+        return UrlScanner.matches(param.getOriginalUrl());
+    }
+}
@@ -0,0 +1,116 @@
+package com.rostami.urlshortener.benchmark;
+
+import com.rostami.urlshortener.config.ShortCodeProperties;
+import com.rostami.urlshortener.config.UrlAnalyticsProperties;
+import com.rostami.urlshortener.config.UrlBatchProperties;
+import com.rostami.urlshortener.config.UrlCacheProperties;
+import com.rostami.urlshortener.config.UrlDedupProperties;
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlHotKeyProperties;
+import com.rostami.urlshortener.config.UrlLookupBatchingProperties;
+import com.rostami.urlshortener.config.UrlLookupCoalescingProperties;
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.dto.out.UrlCreateResult;
+import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.UrlService;
+import com.rostami.urlshortener.service.analytics.ClickAnalytics;
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import com.rostami.urlshortener.service.code.HashShortCodeGenerator;
+import com.rostami.urlshortener.service.dedup.UrlDeduplicator;
+import com.rostami.urlshortener.service.hotkey.HotKeyTracker;
+import com.rostami.urlshortener.service.resilience.ResolveGuard;
+import com.rostami.urlshortener.service.storage.CoalescingUrlLookup;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.service.storage.UrlLookupBatcher;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Create and resolve paths of {@link UrlService} against an in-memory redis stand-in, so the numbers
+ * show the cost of our own code (hashing, claiming, caching, result building) without the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlServiceBenchmark {
+    private static final int RESOLVABLE_URLS = 1 << 14;
+
+    @State(Scope.Benchmark)
+    public static class CreateState {
+        UrlService urlService;
+        long sequence;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            urlService = newUrlService(new InMemoryStringRedisTemplate(), true);
+            sequence = 0;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ResolveState {
+        @Param({"true", "false"})
+        boolean nearCache;
+
+        UrlService urlService;
+        String[] shortUrls = new String[RESOLVABLE_URLS];
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            urlService = newUrlService(new InMemoryStringRedisTemplate(), nearCache);
+            for (int i = 0; i < RESOLVABLE_URLS; i++)
+                shortUrls[i] = urlService.generateShortUrl("https://stackoverflow.com/questions/" + i).getData();
+        }
+
+        String next() {
+            return shortUrls[cursor++ & (RESOLVABLE_URLS - 1)];
+        }
+    }
+
+    @Benchmark
+    public UrlCreateResult<String> generateShortUrl(CreateState state) {
+        return state.urlService.generateShortUrl("https://stackoverflow.com/questions/" + state.sequence++);
+    }
+
+    @Benchmark
+    public UrlCreateResult<String> generateShortUrlRepeated(CreateState state) {
+        return state.urlService.generateShortUrl("https://stackoverflow.com/questions/repeated");
+    }
+
+    @Benchmark
+    public UrlFindResult loadOriginalUrl(ResolveState state) {
+        return state.urlService.loadOriginalUrl(state.next());
+    }
+
+    @Benchmark
+    public String resolveOriginalUrl(ResolveState state) {
+        return state.urlService.resolveOriginalUrl(state.next());
+    }
+
+    static UrlService newUrlService(InMemoryStringRedisTemplate redisTemplate, boolean nearCache) {
+        var cacheProperties = new UrlCacheProperties();
+        cacheProperties.setEnabled(nearCache);
+        var metrics = new UrlMetrics(new SimpleMeterRegistry());
+        var urlRepository = new FlatUrlRepository(redisTemplate, null);
+        return new UrlService(urlRepository,
+                new UrlNearCache(cacheProperties, redisTemplate, null),
+                new UrlBatchProperties(),
+                new HashShortCodeGenerator(7),
+                new ShortCodeProperties(),
+                new UrlDeduplicator(new UrlDedupProperties(), redisTemplate, null),
+                metrics,
+                new ClickAnalytics(new UrlAnalyticsProperties(), redisTemplate, null, metrics),
+                new UrlExpiryProperties(),
+                new HotKeyTracker(new UrlHotKeyProperties(), urlRepository, redisTemplate, metrics),
+                new CoalescingUrlLookup(new UrlLookupCoalescingProperties(),
+                        new UrlLookupBatcher(new UrlLookupBatchingProperties(), urlRepository, metrics), metrics),
+                new ResolveGuard(new UrlResilienceProperties(), metrics));
+    }
+}
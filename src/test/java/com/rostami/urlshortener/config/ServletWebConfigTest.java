@@ -0,0 +1,40 @@
+package com.rostami.urlshortener.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ServletWebConfigTest {
+
+    @Test
+    void test_virtual_thread_executor_fails_fast_before_java_21_isOk() {
+        // given ----------------------------------------------------------------------------------
+        assumeTrue(Runtime.version().feature() < 21, "virtual threads are available");
+
+        // when ----------------------------------------------------------------------------------
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(ServletWebConfig::newVirtualThreadPerTaskExecutor)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Java 21");
+    }
+
+    @Test
+    void test_virtual_thread_executor_runs_tasks_on_virtual_threads_isOk() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        ExecutorService executor = ServletWebConfig.newVirtualThreadPerTaskExecutor();
+
+        // when ----------------------------------------------------------------------------------
+        Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(virtual).isEqualTo(true);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,94 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import com.rostami.urlshortener.dto.out.UrlCreateResult;
+import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.ReactiveUrlService;
+import com.rostami.urlshortener.service.ratelimit.CreateRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@WebFluxTest(ReactiveUrlController.class)
+class ReactiveUrlControllerTest {
+
+    @MockBean
+    private ReactiveUrlService urlService;
+
+    @MockBean
+    private UrlMetrics metrics;
+
+    @MockBean
+    private CreateRateLimiter rateLimiter;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void test_generateShortUrl_isOk() {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortUrl = "as123d";
+        UrlCreateParam createParam = UrlCreateParam.builder().originalUrl(originalUrl).build();
+
+        UrlCreateResult<String> result = UrlCreateResult.<String>builder().success(true).data(shortUrl).build();
+        given(urlService.generateShortUrl(originalUrl, null)).willReturn(Mono.just(result));
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        webTestClient.post().uri("/api/urlShortenerService/generateShortUrl")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(createParam)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.data").isEqualTo(shortUrl);
+    }
+
+    @Test
+    void test_loadOriginalUrl_isOk() {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortUrl = "as123d";
+        UrlFindResult findResult = UrlFindResult.builder()
+                .originalUrl(originalUrl)
+                .shortUrl(shortUrl)
+                .build();
+        given(urlService.loadOriginalUrl(shortUrl)).willReturn(Mono.just(findResult));
+
+
+        // when -------------------------------------------------------------
+        // then -------------------------------------------------------------
+        webTestClient.get().uri("/api/urlShortenerService/loadOriginalUrl/{shortUrl}", shortUrl)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.originalUrl").isEqualTo(originalUrl)
+                .jsonPath("$.data.shortUrl").isEqualTo(shortUrl);
+    }
+
+    @Test
+    void test_loadOriginalUrl_notFound_isMapped() {
+        // given -------------------------------------------------------------
+        String shortUrl = "as123d";
+        given(urlService.loadOriginalUrl(shortUrl))
+                .willReturn(Mono.error(new UrlNotFoundException(URL_NOT_FOUND_EXCEPTION_MESSAGE)));
+
+
+        // when -------------------------------------------------------------
+        // then -------------------------------------------------------------
+        webTestClient.get().uri("/api/urlShortenerService/loadOriginalUrl/{shortUrl}", shortUrl)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.message").isEqualTo(URL_NOT_FOUND_EXCEPTION_MESSAGE);
+    }
+}
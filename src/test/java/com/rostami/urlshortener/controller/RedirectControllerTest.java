@@ -0,0 +1,62 @@
+package com.rostami.urlshortener.controller;
+
+import com.rostami.urlshortener.config.UrlRedirectProperties;
+import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.UrlService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(RedirectController.class)
+@EnableConfigurationProperties(UrlRedirectProperties.class)
+class RedirectControllerTest {
+
+    @MockBean
+    private UrlService urlService;
+
+    @MockBean
+    private UrlMetrics metrics;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void test_redirect_isFound() throws Exception {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortUrl = "as123d";
+        given(urlService.resolveOriginalUrl(shortUrl)).willReturn(originalUrl);
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(get("/{shortUrl}", shortUrl))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", originalUrl))
+                .andExpect(header().string("Cache-Control", "private, max-age=90"));
+    }
+
+    @Test
+    void test_redirect_unknown_shortUrl_isNotFound() throws Exception {
+        // given -------------------------------------------------------------
+        String shortUrl = "as123d";
+        given(urlService.resolveOriginalUrl(shortUrl)).willThrow(new UrlNotFoundException(URL_NOT_FOUND_EXCEPTION_MESSAGE));
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(get("/{shortUrl}", shortUrl))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("Location"));
+    }
+}
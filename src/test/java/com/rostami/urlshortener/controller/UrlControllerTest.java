@@ -2,22 +2,55 @@ package com.rostami.urlshortener.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rostami.urlshortener.config.UrlBatchProperties;
+import com.rostami.urlshortener.config.UrlRateLimitProperties;
 import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import com.rostami.urlshortener.dto.out.UrlBatchFindResult;
+import com.rostami.urlshortener.dto.out.UrlClicksResult;
 import com.rostami.urlshortener.dto.out.UrlCreateResult;
 import com.rostami.urlshortener.dto.out.UrlFindResult;
+import com.rostami.urlshortener.exception.RateLimitExceededException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
 import com.rostami.urlshortener.service.UrlService;
+import com.rostami.urlshortener.service.ratelimit.CreateRateLimiter;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.BATCH_TOO_LARGE_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.RATE_LIMIT_EXCEEDED_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.SHORT_URL_CONFLICT_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_EXPIRED_MESSAGE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(UrlController.class)
@@ -26,9 +59,23 @@ class UrlControllerTest {
     @MockBean
     private UrlService urlService;
 
+    @MockBean
+    private UrlMetrics metrics;
+
+    @MockBean
+    private CreateRateLimiter rateLimiter;
+
+    @MockBean
+    private UrlBatchProperties batchProperties;
+
     @Autowired
     private MockMvc mockMvc;
 
+    @BeforeEach
+    void setUp() {
+        given(batchProperties.getMaxSize()).willReturn(100);
+    }
+
     @Test
     void test_generateShortUrl_isOk() throws Exception {
         // given -------------------------------------------------------------
@@ -37,7 +84,7 @@ class UrlControllerTest {
         UrlCreateParam createParam = UrlCreateParam.builder().originalUrl(originalUrl).build();
 
         UrlCreateResult<String> result = UrlCreateResult.<String>builder().success(true).data(shortUrl).build();
-        given(urlService.generateShortUrl(originalUrl)).willReturn(result);
+        given(urlService.generateShortUrl(originalUrl, null)).willReturn(result);
 
 
         // when --------------------------------------------------------------
@@ -49,6 +96,29 @@ class UrlControllerTest {
                 .andExpect(jsonPath("$.data", Matchers.is(shortUrl)));
     }
 
+    @Test
+    void test_generateShortUrl_rateLimited_isTooManyRequests() throws Exception {
+        // given -------------------------------------------------------------
+        UrlCreateParam createParam = UrlCreateParam.builder().originalUrl("https://stackoverflow.com").build();
+        willThrow(new RateLimitExceededException(RATE_LIMIT_EXCEEDED_MESSAGE, 3))
+                .given(rateLimiter).acquire("10.0.0.1", "203.0.113.7", 1);
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrl")
+                .with(request -> {
+                    request.setRemoteAddr("10.0.0.1");
+                    return request;
+                })
+                .header("X-Forwarded-For", "203.0.113.7")
+                .contentType(APPLICATION_JSON)
+                .content(toJson(createParam)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.message", Matchers.is(RATE_LIMIT_EXCEEDED_MESSAGE)));
+        verifyNoInteractions(urlService);
+    }
+
     @Test
     void test_loadOriginalUrl_isOk() throws Exception {
         // given -------------------------------------------------------------
@@ -70,7 +140,195 @@ class UrlControllerTest {
 
     }
 
-    String toJson(UrlCreateParam param) throws JsonProcessingException {
+    @Test
+    void test_loadOriginalUrl_of_expired_shortUrl_isGone() throws Exception {
+        // given -------------------------------------------------------------
+        String shortUrl = "as123d";
+        given(urlService.loadOriginalUrl(shortUrl)).willThrow(new UrlExpiredException(URL_EXPIRED_MESSAGE));
+
+
+        // when -------------------------------------------------------------
+        // then -------------------------------------------------------------
+        mockMvc.perform(get("/api/urlShortenerService/loadOriginalUrl/{shortUrl}", shortUrl))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.error.message", Matchers.is(URL_EXPIRED_MESSAGE)));
+    }
+
+    @Test
+    void test_loadClicks_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        String shortUrl = "as123d";
+        UrlClicksResult clicksResult = UrlClicksResult.builder().shortUrl(shortUrl).clicks(42).build();
+        given(urlService.loadClicks(shortUrl)).willReturn(clicksResult);
+
+
+        // when -------------------------------------------------------------
+        // then -------------------------------------------------------------
+        mockMvc.perform(get("/api/urlShortenerService/loadClicks/{shortUrl}", shortUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.shortUrl", Matchers.is(shortUrl)))
+                .andExpect(jsonPath("$.data.clicks", Matchers.is(42)));
+    }
+
+    @Test
+    void test_generateShortUrls_reports_invalid_items_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortUrl = "as123d";
+        List<UrlCreateParam> createParams = List.of(
+                UrlCreateParam.builder().originalUrl("not a url").build(),
+                UrlCreateParam.builder().originalUrl(originalUrl).build());
+
+        UrlCreateResult<String> result = UrlCreateResult.<String>builder().success(true).data(shortUrl).build();
+        given(urlService.generateShortUrls(List.of(originalUrl))).willReturn(List.of(result));
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                .contentType(APPLICATION_JSON)
+                .content(toJson(createParams)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data[0].success", Matchers.is(false)))
+                .andExpect(jsonPath("$.data[0].data[0].field", Matchers.is("originalUrl")))
+                .andExpect(jsonPath("$.data[1].success", Matchers.is(true)))
+                .andExpect(jsonPath("$.data[1].data", Matchers.is(shortUrl)));
+    }
+
+    @Test
+    void test_generateShortUrls_reports_failed_expiring_items_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        String shortUrl = "as123d";
+        Instant expiresAt = Instant.parse("2099-01-01T00:00:00Z");
+        String createParams = "[{\"originalUrl\":\"https://stackoverflow.com\",\"expiresAt\":\"2099-01-01T00:00:00Z\"},"
+                + "{\"originalUrl\":\"https://github.com\",\"expiresAt\":\"2099-01-01T00:00:00Z\"}]";
+        given(urlService.generateShortUrl("https://stackoverflow.com", expiresAt))
+                .willThrow(new ShortUrlConflictException(SHORT_URL_CONFLICT_MESSAGE));
+        given(urlService.generateShortUrl("https://github.com", expiresAt))
+                .willReturn(UrlCreateResult.<String>builder().success(true).data(shortUrl).build());
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                .contentType(APPLICATION_JSON)
+                .content(createParams))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data[0].success", Matchers.is(false)))
+                .andExpect(jsonPath("$.data[0].data[0].message", Matchers.is(SHORT_URL_CONFLICT_MESSAGE)))
+                .andExpect(jsonPath("$.data[1].success", Matchers.is(true)))
+                .andExpect(jsonPath("$.data[1].data", Matchers.is(shortUrl)));
+    }
+
+    @Test
+    void test_generateShortUrls_too_large_isBadRequest() throws Exception {
+        // given -------------------------------------------------------------
+        given(batchProperties.getMaxSize()).willReturn(2);
+        String createParams = "[{\"originalUrl\":\"https://stackoverflow.com\",\"expiresAt\":\"2099-01-01T00:00:00Z\"},"
+                + "{\"originalUrl\":\"https://github.com\",\"expiresAt\":\"2099-01-01T00:00:00Z\"},"
+                + "{\"originalUrl\":\"https://gitlab.com\",\"expiresAt\":\"2099-01-01T00:00:00Z\"}]";
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                .contentType(APPLICATION_JSON)
+                .content(createParams))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", Matchers.is(String.format(BATCH_TOO_LARGE_MESSAGE, 2))));
+        verifyNoInteractions(urlService, rateLimiter);
+    }
+
+    @Test
+    void test_generateShortUrls_charges_only_valid_items_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        List<UrlCreateParam> createParams = List.of(
+                UrlCreateParam.builder().originalUrl("not a url").build(),
+                UrlCreateParam.builder().originalUrl("not a url either").build(),
+                UrlCreateParam.builder().originalUrl(originalUrl).build());
+        List<UrlCreateParam> invalidParams = createParams.subList(0, 2);
+        given(urlService.generateShortUrls(List.of(originalUrl)))
+                .willReturn(List.of(UrlCreateResult.<String>builder().success(true).data("as123d").build()));
+
+
+        // when --------------------------------------------------------------
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                .contentType(APPLICATION_JSON)
+                .content(toJson(invalidParams)))
+                .andExpect(status().isCreated());
+        verifyNoInteractions(rateLimiter);
+        mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                .with(request -> {
+                    request.setRemoteAddr("10.0.0.1");
+                    return request;
+                })
+                .contentType(APPLICATION_JSON)
+                .content(toJson(createParams)))
+                .andExpect(status().isCreated());
+
+        // then --------------------------------------------------------------
+        verify(rateLimiter).acquireBatch("10.0.0.1", null, 1);
+    }
+
+    @Test
+    void test_generateShortUrls_above_the_burst_with_the_default_rate_limit_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        var defaultLimiter = new CreateRateLimiter(new UrlRateLimitProperties(), new InMemoryStringRedisTemplate(),
+                new UrlMetrics(new SimpleMeterRegistry()));
+        willAnswer(invocation -> {
+            defaultLimiter.acquireBatch(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).given(rateLimiter).acquireBatch(any(), any(), anyInt());
+        List<String> originalUrls = IntStream.range(0, 100)
+                .mapToObj(i -> "https://stackoverflow.com/questions/" + i)
+                .collect(Collectors.toList());
+        List<UrlCreateParam> createParams = originalUrls.stream()
+                .map(originalUrl -> UrlCreateParam.builder().originalUrl(originalUrl).build())
+                .collect(Collectors.toList());
+        given(urlService.generateShortUrls(originalUrls)).willReturn(originalUrls.stream()
+                .map(originalUrl -> UrlCreateResult.<String>builder().success(true).data("as123d").build())
+                .collect(Collectors.toList()));
+
+
+        // when --------------------------------------------------------------
+        // then --------------------------------------------------------------
+        for (int i = 0; i < 3; i++)
+            mockMvc.perform(post("/api/urlShortenerService/generateShortUrls")
+                    .contentType(APPLICATION_JSON)
+                    .content(toJson(createParams)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.data", Matchers.hasSize(100)));
+        verify(rateLimiter, never()).acquire(any(), any(), anyInt());
+    }
+
+    @Test
+    void test_loadOriginalUrls_streams_partial_results_isOk() throws Exception {
+        // given -------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        List<String> shortUrls = List.of("as123d", "missing");
+        given(urlService.loadOriginalUrls(shortUrls)).willReturn(Stream.of(
+                UrlBatchFindResult.builder().shortUrl("as123d").originalUrl(originalUrl).found(true).build(),
+                UrlBatchFindResult.builder().shortUrl("missing").found(false).build()));
+
+
+        // when -------------------------------------------------------------
+        MvcResult asyncResult = mockMvc.perform(post("/api/urlShortenerService/loadOriginalUrls")
+                .contentType(APPLICATION_JSON)
+                .content(toJson(shortUrls)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then -------------------------------------------------------------
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].originalUrl", Matchers.is(originalUrl)))
+                .andExpect(jsonPath("$.data[0].found", Matchers.is(true)))
+                .andExpect(jsonPath("$.data[1].shortUrl", Matchers.is("missing")))
+                .andExpect(jsonPath("$.data[1].found", Matchers.is(false)));
+    }
+
+    String toJson(Object param) throws JsonProcessingException {
         ObjectMapper mapper = new ObjectMapper();
         return mapper.writeValueAsString(param);
     }
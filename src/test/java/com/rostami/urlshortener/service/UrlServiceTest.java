@@ -1,25 +1,64 @@
 package com.rostami.urlshortener.service;
 
+import com.rostami.urlshortener.config.ShortCodeProperties;
+import com.rostami.urlshortener.config.UrlAnalyticsProperties;
+import com.rostami.urlshortener.config.UrlBatchProperties;
+import com.rostami.urlshortener.config.UrlCacheProperties;
+import com.rostami.urlshortener.config.UrlDedupProperties;
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlHotKeyProperties;
+import com.rostami.urlshortener.config.UrlLookupBatchingProperties;
+import com.rostami.urlshortener.config.UrlLookupCoalescingProperties;
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.dto.out.UrlBatchFindResult;
 import com.rostami.urlshortener.dto.out.UrlCreateResult;
 import com.rostami.urlshortener.dto.out.UrlFindResult;
 import com.rostami.urlshortener.exception.NullUrlException;
+import com.rostami.urlshortener.exception.ShortUrlConflictException;
+import com.rostami.urlshortener.exception.UrlExpiredException;
 import com.rostami.urlshortener.exception.UrlNotFoundException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.analytics.ClickAnalytics;
+import com.rostami.urlshortener.service.cache.UrlNearCache;
+import com.rostami.urlshortener.service.code.HashShortCodeGenerator;
+import com.rostami.urlshortener.service.dedup.UrlDeduplicator;
+import com.rostami.urlshortener.service.hotkey.HotKeyTracker;
+import com.rostami.urlshortener.service.resilience.ResolveGuard;
+import com.rostami.urlshortener.service.storage.CoalescingUrlLookup;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.service.storage.UrlLookupBatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 
 import static com.rostami.urlshortener.exception.message.ExceptionMessages.NULL_URL_MESSAGE;
+import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_EXPIRED_MESSAGE;
 import static com.rostami.urlshortener.exception.message.ExceptionMessages.URL_NOT_FOUND_EXCEPTION_MESSAGE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 
@@ -29,12 +68,31 @@ class UrlServiceTest {
 
     @Mock private StringRedisTemplate redisTemplate;
     @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private ReactiveStringRedisTemplate reactiveRedisTemplate;
     private UrlService urlService;
 
 
     @BeforeEach
     void setup(){
-        urlService = new UrlService(redisTemplate);
+        urlService = newUrlService(new UrlBatchProperties());
+    }
+
+    private UrlService newUrlService(UrlBatchProperties batchProperties) {
+        var metrics = new UrlMetrics(new SimpleMeterRegistry());
+        var urlRepository = new FlatUrlRepository(redisTemplate, reactiveRedisTemplate);
+        return new UrlService(urlRepository,
+                new UrlNearCache(new UrlCacheProperties(), redisTemplate, reactiveRedisTemplate),
+                batchProperties,
+                new HashShortCodeGenerator(7),
+                new ShortCodeProperties(),
+                new UrlDeduplicator(new UrlDedupProperties(), redisTemplate, reactiveRedisTemplate),
+                metrics,
+                new ClickAnalytics(new UrlAnalyticsProperties(), redisTemplate, reactiveRedisTemplate, metrics),
+                new UrlExpiryProperties(),
+                new HotKeyTracker(new UrlHotKeyProperties(), urlRepository, redisTemplate, metrics),
+                new CoalescingUrlLookup(new UrlLookupCoalescingProperties(),
+                        new UrlLookupBatcher(new UrlLookupBatchingProperties(), urlRepository, metrics), metrics),
+                new ResolveGuard(new UrlResilienceProperties(), metrics));
     }
 
     @Test
@@ -42,7 +100,7 @@ class UrlServiceTest {
         // given ----------------------------------------------------------------------------------
         String url = "https:stackoverflow.com";
         given(redisTemplate.opsForValue()).willReturn(valueOperations);
-        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(anyString(), eq(url))).willReturn(true);
 
         // when ----------------------------------------------------------------------------------
         UrlCreateResult<String> urlCreateResult = urlService.generateShortUrl(url);
@@ -50,7 +108,7 @@ class UrlServiceTest {
         // then ----------------------------------------------------------------------------------
         ArgumentCaptor<String> originalUrlCapture = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> shortedUrlCapture = ArgumentCaptor.forClass(String.class);
-        verify(redisTemplate.opsForValue()).set(shortedUrlCapture.capture(), originalUrlCapture.capture());
+        verify(redisTemplate.opsForValue()).setIfAbsent(shortedUrlCapture.capture(), originalUrlCapture.capture());
 
         String originalUrl = originalUrlCapture.getValue();
         String shortedUrl = shortedUrlCapture.getValue();
@@ -60,6 +118,72 @@ class UrlServiceTest {
         assertThat(urlCreateResult.isSuccess()).isTrue();
     }
 
+    @Test
+    void test_generate_shortUrl_rehashes_on_collision_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://stackoverflow.com";
+        String firstCode = new HashShortCodeGenerator(7).generate(url, 0);
+        String secondCode = new HashShortCodeGenerator(7).generate(url, 1);
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(firstCode, url)).willReturn(false);
+        given(valueOperations.get(firstCode)).willReturn("https://github.com");
+        given(valueOperations.setIfAbsent(secondCode, url)).willReturn(true);
+
+        // when ----------------------------------------------------------------------------------
+        UrlCreateResult<String> urlCreateResult = urlService.generateShortUrl(url);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(urlCreateResult.getData()).isEqualTo(secondCode);
+    }
+
+    @Test
+    void test_generate_shortUrl_reuses_code_of_same_url_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://stackoverflow.com";
+        String code = new HashShortCodeGenerator(7).generate(url, 0);
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(code, url)).willReturn(false);
+        given(valueOperations.get(code)).willReturn(url);
+
+        // when ----------------------------------------------------------------------------------
+        UrlCreateResult<String> urlCreateResult = urlService.generateShortUrl(url);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(urlCreateResult.getData()).isEqualTo(code);
+    }
+
+    @Test
+    void test_generate_shortUrl_repeated_url_is_answered_from_reverse_index_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://stackoverflow.com";
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(anyString(), eq(url))).willReturn(true);
+        String shortUrl = urlService.generateShortUrl(url).getData();
+        given(valueOperations.get(startsWith("url-shortener:reverse:"))).willReturn(shortUrl);
+
+        // when ----------------------------------------------------------------------------------
+        UrlCreateResult<String> urlCreateResult = urlService.generateShortUrl(url);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(urlCreateResult.getData()).isEqualTo(shortUrl);
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), eq(url));
+        verify(valueOperations, times(1)).set(startsWith("url-shortener:reverse:"), eq(shortUrl));
+    }
+
+    @Test
+    void test_generate_shortUrl_will_throw_when_every_code_isTaken() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://stackoverflow.com";
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(anyString(), eq(url))).willReturn(false);
+        given(valueOperations.get(anyString())).willReturn("https://github.com");
+
+        // when ----------------------------------------------------------------------------------
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> urlService.generateShortUrl(url))
+                .isInstanceOf(ShortUrlConflictException.class);
+    }
+
     @Test
     void test_loadOriginalUrl_will_throw_when_urlIsNull_isOk() {
         // given ----------------------------------------------------------------------------------
@@ -97,6 +221,55 @@ class UrlServiceTest {
                 .hasMessage(URL_NOT_FOUND_EXCEPTION_MESSAGE);
     }
 
+    @Test
+    void test_generate_expiring_shortUrl_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://stackoverflow.com";
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(1));
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).willReturn(true);
+
+        // when ----------------------------------------------------------------------------------
+        UrlCreateResult<String> result = urlService.generateShortUrl(url, expiresAt);
+
+        // then ----------------------------------------------------------------------------------
+        ArgumentCaptor<Duration> ttlCapture = ArgumentCaptor.forClass(Duration.class);
+        verify(valueOperations).setIfAbsent(eq(result.getData()),
+                eq("~" + expiresAt.toEpochMilli() + " " + url), ttlCapture.capture());
+        assertThat(ttlCapture.getValue()).isBetween(Duration.ofHours(24), Duration.ofHours(25));
+        verify(valueOperations, never()).set(startsWith("url-shortener:reverse:"), anyString());
+    }
+
+    @Test
+    void test_generate_shortUrl_will_throw_when_expiry_isPast() {
+        // when ----------------------------------------------------------------------------------
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> urlService.generateShortUrl("https://stackoverflow.com", Instant.now().minusSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_loadOriginalUrl_will_throw_once_shortUrl_expired_isOk() throws InterruptedException {
+        // given ----------------------------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortLink = "13Ads4";
+        Instant expiresAt = Instant.now().plusMillis(200);
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(shortLink)).willReturn("~" + expiresAt.toEpochMilli() + " " + originalUrl);
+
+        // when ----------------------------------------------------------------------------------
+        UrlFindResult beforeDeadline = urlService.loadOriginalUrl(shortLink);
+        Thread.sleep(Duration.between(Instant.now(), expiresAt).toMillis() + 50);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(beforeDeadline.getOriginalUrl()).isEqualTo(originalUrl);
+        assertThatThrownBy(() -> urlService.loadOriginalUrl(shortLink))
+                .isInstanceOf(UrlExpiredException.class)
+                .hasMessage(URL_EXPIRED_MESSAGE);
+        // the near cache must not have kept the url past its deadline
+        verify(valueOperations, times(2)).get(shortLink);
+    }
+
     @Test
     void test_loadOriginalUrl_returnValue_isOk(){
         // given ----------------------------------------------------------------------------------
@@ -114,4 +287,81 @@ class UrlServiceTest {
         assertThat(result.getShortUrl()).isEqualTo(shortLink);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_loadOriginalUrl_is_served_from_nearCache_isOk(){
+        // given ----------------------------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        String shortLink = "13Ads4";
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(shortLink)).willReturn(originalUrl);
+
+        // when ----------------------------------------------------------------------------------
+        urlService.loadOriginalUrl(shortLink);
+        UrlFindResult result = urlService.loadOriginalUrl(shortLink);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(result.getOriginalUrl()).isEqualTo(originalUrl);
+        verify(valueOperations, times(1)).get(shortLink);
+    }
+
+    @Test
+    void test_loadOriginalUrl_miss_is_negatively_cached_isOk(){
+        // given ----------------------------------------------------------------------------------
+        String shortUrl = "132dAfd";
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(shortUrl)).willReturn(null);
+
+        // when ----------------------------------------------------------------------------------
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> urlService.loadOriginalUrl(shortUrl)).isInstanceOf(UrlNotFoundException.class);
+        assertThatThrownBy(() -> urlService.loadOriginalUrl(shortUrl)).isInstanceOf(UrlNotFoundException.class);
+        verify(valueOperations, times(1)).get(shortUrl);
+    }
+
+    @Test
+    void test_generate_shortUrls_in_pipelines_isOk() {
+        // given ----------------------------------------------------------------------------------
+        List<String> urls = List.of("https://stackoverflow.com", "https://github.com", "https://stackoverflow.com");
+        given(redisTemplate.executePipelined(any(RedisCallback.class))).willReturn(List.of(true, true));
+
+        // when ----------------------------------------------------------------------------------
+        List<UrlCreateResult<String>> results = urlService.generateShortUrls(urls);
+
+        // then ----------------------------------------------------------------------------------
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        assertThat(results).hasSize(3).allMatch(UrlCreateResult::isSuccess);
+        assertThat(results.get(0).getData()).isEqualTo(results.get(2).getData());
+        assertThat(results.get(0).getData()).isNotEqualTo(results.get(1).getData());
+    }
+
+    @Test
+    void test_generate_shortUrls_will_throw_when_batch_isTooLarge() {
+        // given ----------------------------------------------------------------------------------
+        UrlBatchProperties batchProperties = new UrlBatchProperties();
+        batchProperties.setMaxSize(1);
+        urlService = newUrlService(batchProperties);
+
+        // when ----------------------------------------------------------------------------------
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> urlService.generateShortUrls(List.of("https://github.com", "https://gitlab.com")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_loadOriginalUrls_returns_partial_results_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String originalUrl = "https://stackoverflow.com";
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.multiGet(List.of("13Ads4", "132dAfd"))).willReturn(Arrays.asList(originalUrl, null));
+
+        // when ----------------------------------------------------------------------------------
+        List<UrlBatchFindResult> results = urlService.loadOriginalUrls(Arrays.asList("13Ads4", "132dAfd", ""))
+                .collect(Collectors.toList());
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(results).extracting(UrlBatchFindResult::getShortUrl).containsExactly("13Ads4", "132dAfd", "");
+        assertThat(results).extracting(UrlBatchFindResult::isFound).containsExactly(true, false, false);
+        assertThat(results.get(0).getOriginalUrl()).isEqualTo(originalUrl);
+    }
+}
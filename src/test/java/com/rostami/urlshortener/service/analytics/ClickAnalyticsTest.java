@@ -0,0 +1,144 @@
+package com.rostami.urlshortener.service.analytics;
+
+import com.rostami.urlshortener.config.UrlAnalyticsProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickAnalyticsTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final UrlAnalyticsProperties properties = new UrlAnalyticsProperties();
+
+    @Test
+    void test_clicks_are_flushed_in_batches_isOk() {
+        // given ----------------------------------------------------------------------------------
+        ClickAnalytics analytics = newClickAnalytics();
+        for (int i = 0; i < 3; i++) analytics.record("abc");
+        analytics.record("xyz");
+
+        // when ----------------------------------------------------------------------------------
+        long commandsBeforeFlush = redisTemplate.commandCount();
+        analytics.flush();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(commandsBeforeFlush).isZero();
+        assertThat(redisTemplate.hash(properties.getClicksKey())).containsEntry("abc", "3").containsEntry("xyz", "1");
+        assertThat(redisTemplate.data()).containsEntry(properties.getTotalClicksKey(), "4");
+        assertThat(redisTemplate.commandCount()).isEqualTo(3);
+        assertThat(analytics.clicks("abc")).isEqualTo(3);
+    }
+
+    @Test
+    void test_clicks_include_pending_counts() {
+        // given ----------------------------------------------------------------------------------
+        ClickAnalytics analytics = newClickAnalytics();
+        analytics.record("abc");
+        analytics.flush();
+        analytics.record("abc");
+
+        // when ----------------------------------------------------------------------------------
+        long clicks = analytics.clicks("abc");
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(clicks).isEqualTo(2);
+        assertThat(redisTemplate.hash(properties.getClicksKey())).containsEntry("abc", "1");
+    }
+
+    @Test
+    void test_untracked_codes_only_count_towards_total() {
+        // given ----------------------------------------------------------------------------------
+        properties.setMaxTrackedCodes(2);
+        ClickAnalytics analytics = newClickAnalytics();
+        for (int i = 0; i < 10; i++) analytics.record("code" + i);
+
+        // when ----------------------------------------------------------------------------------
+        analytics.flush();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(redisTemplate.hash(properties.getClicksKey())).hasSize(2);
+        assertThat(redisTemplate.data()).containsEntry(properties.getTotalClicksKey(), "10");
+    }
+
+    @Test
+    void test_only_unwritten_chunks_are_put_back_when_a_flush_fails_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setFlushChunkSize(1);
+        ClickAnalytics analytics = newClickAnalytics();
+        for (int i = 0; i < 3; i++) analytics.record("abc");
+        analytics.record("xyz");
+        analytics.record("def");
+        redisTemplate.injectFailuresAfter(1);
+
+        // when ----------------------------------------------------------------------------------
+        analytics.flush();
+        int writtenBeforeRetry = redisTemplate.hash(properties.getClicksKey()).size();
+        redisTemplate.injectFailures(false);
+        analytics.flush();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(writtenBeforeRetry).isEqualTo(1);
+        assertThat(redisTemplate.hash(properties.getClicksKey()))
+                .containsEntry("abc", "3").containsEntry("xyz", "1").containsEntry("def", "1");
+        assertThat(redisTemplate.data()).containsEntry(properties.getTotalClicksKey(), "5");
+    }
+
+    @Test
+    void test_failed_total_does_not_put_back_written_counts_isOk() {
+        // given ----------------------------------------------------------------------------------
+        ClickAnalytics analytics = newClickAnalytics();
+        for (int i = 0; i < 3; i++) analytics.record("abc");
+        analytics.record("xyz");
+        redisTemplate.injectFailuresAfter(2);
+
+        // when ----------------------------------------------------------------------------------
+        analytics.flush();
+        boolean totalBeforeRetry = redisTemplate.data().containsKey(properties.getTotalClicksKey());
+        redisTemplate.injectFailures(false);
+        analytics.flush();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(totalBeforeRetry).isFalse();
+        assertThat(redisTemplate.hash(properties.getClicksKey())).containsEntry("abc", "3").containsEntry("xyz", "1");
+        assertThat(redisTemplate.data()).containsEntry(properties.getTotalClicksKey(), "4");
+    }
+
+    @Test
+    void test_no_click_is_lost_while_flushing_concurrently() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        ClickAnalytics analytics = newClickAnalytics();
+        int threads = 8;
+        int clicksPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // when ----------------------------------------------------------------------------------
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < clicksPerThread; i++) analytics.record("code" + i % 100);
+            }, executor));
+        while (!writers.stream().allMatch(CompletableFuture::isDone)) {
+            analytics.flush();
+            Thread.sleep(1);
+        }
+        executor.shutdown();
+        analytics.stop();
+
+        // then ----------------------------------------------------------------------------------
+        long flushed = redisTemplate.hash(properties.getClicksKey()).values().stream().mapToLong(Long::parseLong).sum();
+        assertThat(flushed).isEqualTo((long) threads * clicksPerThread);
+        assertThat(redisTemplate.data()).containsEntry(properties.getTotalClicksKey(), String.valueOf(flushed));
+    }
+
+    private ClickAnalytics newClickAnalytics() {
+        return new ClickAnalytics(properties, redisTemplate, null, new UrlMetrics(new SimpleMeterRegistry()));
+    }
+}
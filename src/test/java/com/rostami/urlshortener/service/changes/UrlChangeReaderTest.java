@@ -0,0 +1,143 @@
+package com.rostami.urlshortener.service.changes;
+
+import com.rostami.urlshortener.config.UrlChangeProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlChangeReaderTest {
+    private static final String STREAM_KEY = "url-shortener:changes";
+
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<UrlChangeReader> readers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (UrlChangeReader reader : readers) reader.stop();
+    }
+
+    @Test
+    void test_events_are_handed_to_the_listeners_in_batches_and_acknowledged_isOk() {
+        // given ----------------------------------------------------------------------------------
+        for (int i = 0; i < 25; i++) append("abc" + i, "https://example.com/" + i);
+        List<List<UrlChange>> batches = new CopyOnWriteArrayList<>();
+
+        // when ----------------------------------------------------------------------------------
+        start("node-1", batches::add);
+        await(() -> received(batches).size() == 25);
+        append("abc25", "https://stackoverflow.com");
+        await(() -> received(batches).size() == 26);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+        assertThat(received(batches)).startsWith("abc0", "abc1", "abc2").endsWith("abc24", "abc25");
+        assertThat(batches.get(batches.size() - 1).get(0).getStoredUrl()).isEqualTo("https://stackoverflow.com");
+        assertThat(batches.get(0).get(0).createdAtMillis()).isPositive();
+        await(() -> redisTemplate.pending(STREAM_KEY, "url-shortener").isEmpty());
+        assertThat(registry.counter("url.shortener.changes.read").count()).isEqualTo(26);
+    }
+
+    @Test
+    void test_failed_batches_are_retried_then_dropped_isOk() {
+        // given ----------------------------------------------------------------------------------
+        append("abc1234", "https://stackoverflow.com");
+        List<List<UrlChange>> batches = new CopyOnWriteArrayList<>();
+        var calls = new AtomicInteger();
+
+        // when ----------------------------------------------------------------------------------
+        start("node-1", changes -> {
+            if (changes.get(0).getShortUrl().equals("poison") || calls.incrementAndGet() <= 2)
+                throw new IllegalStateException("Index is down");
+            batches.add(changes);
+        });
+        await(() -> batches.size() == 1);
+        append("poison", "https://github.com");
+        await(() -> registry.counter("url.shortener.changes.dropped").count() == 1);
+        append("abc1235", "https://gitlab.com");
+        await(() -> batches.size() == 2);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(received(batches)).containsExactly("abc1234", "abc1235");
+        assertThat(calls).hasValue(4);
+        await(() -> redisTemplate.pending(STREAM_KEY, "url-shortener").isEmpty());
+    }
+
+    @Test
+    void test_events_read_but_not_acknowledged_are_delivered_after_a_restart_isOk() {
+        // given ----------------------------------------------------------------------------------
+        append("abc1234", "https://stackoverflow.com");
+        append("abc1235", "https://github.com");
+        redisTemplate.execute((RedisCallback<String>) connection -> ((StringRedisConnection) connection)
+                .xGroupCreate(STREAM_KEY, ReadOffset.from("0"), "url-shortener", true));
+        var crashed = newReader("node-1", changes -> {
+        });
+        List<StringRecord> unacknowledged = crashed.read(">");
+        List<List<UrlChange>> batches = new CopyOnWriteArrayList<>();
+
+        // when ----------------------------------------------------------------------------------
+        start("node-1", batches::add);
+        await(() -> received(batches).size() == 2);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(unacknowledged).hasSize(2);
+        assertThat(received(batches)).containsExactly("abc1234", "abc1235");
+        await(() -> redisTemplate.pending(STREAM_KEY, "url-shortener").isEmpty());
+    }
+
+    private void append(String shortUrl, String storedUrl) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> ((StringRedisConnection) connection).xAdd(
+                StreamRecords.string(Map.of(UrlChange.SHORT_URL_FIELD, shortUrl, UrlChange.STORED_URL_FIELD, storedUrl))
+                        .withStreamKey(STREAM_KEY)));
+    }
+
+    private void start(String consumer, UrlChangeListener listener) {
+        newReader(consumer, listener).start();
+    }
+
+    private UrlChangeReader newReader(String consumer, UrlChangeListener listener) {
+        var properties = new UrlChangeProperties();
+        properties.setReaderEnabled(true);
+        properties.setConsumer(consumer);
+        properties.setReadBatchSize(10);
+        properties.setReadBlock(Duration.ofMillis(10));
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        properties.setMaxAttempts(3);
+        var reader = new UrlChangeReader(properties, redisTemplate, new UrlMetrics(registry),
+                new StaticListableBeanFactory(Map.of("listener", listener)).getBeanProvider(UrlChangeListener.class));
+        readers.add(reader);
+        return reader;
+    }
+
+    private static List<String> received(List<List<UrlChange>> batches) {
+        return batches.stream().flatMap(List::stream).map(UrlChange::getShortUrl).collect(Collectors.toList());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("waited too long").isLessThan(deadline);
+            LockSupport.parkNanos(Duration.ofMillis(1).toNanos());
+        }
+    }
+}
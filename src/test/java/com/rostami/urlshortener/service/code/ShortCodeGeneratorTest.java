@@ -0,0 +1,75 @@
+package com.rostami.urlshortener.service.code;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShortCodeGeneratorTest {
+
+    @Test
+    void test_base62_encode_isOk() {
+        assertThat(Base62.encode(0)).isEqualTo("0");
+        assertThat(Base62.encode(61)).isEqualTo("z");
+        assertThat(Base62.encode(62)).isEqualTo("10");
+        assertThat(Base62.encode(62, 4)).isEqualTo("0010");
+        assertThat(Base62.encode(Long.MAX_VALUE)).isEqualTo("AzL8n0Y58m7");
+    }
+
+    @Test
+    void test_hash_generator_is_stable_and_rehashes_per_attempt() {
+        // given ----------------------------------------------------------------------------------
+        ShortCodeGenerator generator = new HashShortCodeGenerator(7);
+        String url = "https://stackoverflow.com";
+
+        // when ----------------------------------------------------------------------------------
+        String first = generator.generate(url, 0);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(first).hasSize(7).isEqualTo(generator.generate(url, 0));
+        assertThat(generator.generate(url, 1)).hasSize(7).isNotEqualTo(first);
+    }
+
+    @Test
+    void test_counter_generator_reserves_one_range_per_batch() {
+        // given ----------------------------------------------------------------------------------
+        AtomicLong sequence = new AtomicLong();
+        ShortCodeGenerator generator = new CounterShortCodeGenerator(sequence::addAndGet);
+
+        // when ----------------------------------------------------------------------------------
+        String single = generator.generate("https://github.com", 0);
+        List<String> batch = generator.generateAll(List.of("a", "b", "c"));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(single).isEqualTo("1");
+        assertThat(batch).containsExactly("2", "3", "4");
+    }
+
+    @Test
+    void test_block_generator_hands_out_unique_codes_across_nodes() {
+        // given ----------------------------------------------------------------------------------
+        AtomicLong sequence = new AtomicLong();
+        AtomicLong roundTrips = new AtomicLong();
+        SequenceAllocator allocator = count -> {
+            roundTrips.incrementAndGet();
+            return sequence.addAndGet(count);
+        };
+        ShortCodeGenerator nodeA = new BlockShortCodeGenerator(allocator, 100);
+        ShortCodeGenerator nodeB = new BlockShortCodeGenerator(allocator, 100);
+
+        // when ----------------------------------------------------------------------------------
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            codes.add(nodeA.generate("a", 0));
+            codes.add(nodeB.generate("b", 0));
+        }
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(codes).hasSize(2_000);
+        assertThat(roundTrips.get()).isEqualTo(20);
+    }
+}
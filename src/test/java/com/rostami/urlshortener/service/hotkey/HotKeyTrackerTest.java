@@ -0,0 +1,71 @@
+package com.rostami.urlshortener.service.hotkey;
+
+import com.rostami.urlshortener.config.UrlHotKeyProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyTrackerTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final UrlHotKeyProperties properties = new UrlHotKeyProperties();
+
+    @Test
+    void test_hot_short_url_is_pinned_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setSampleRate(1);
+        properties.setThreshold(1_000);
+        var tracker = newTracker();
+        redisTemplate.data().put("viral01", "https://stackoverflow.com");
+        for (int i = 0; i < 2_000; i++) tracker.record("viral01");
+        for (int i = 0; i < 5_000; i++) tracker.record("cold" + i % 500);
+
+        // when ----------------------------------------------------------------------------------
+        tracker.detect();
+        long commands = redisTemplate.commandCount();
+        String pinned = tracker.pinned("viral01");
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(pinned).isEqualTo("https://stackoverflow.com");
+        assertThat(redisTemplate.commandCount()).isEqualTo(commands);
+        assertThat(tracker.pinned("cold1")).isNull();
+        assertThat(tracker.pinnedKeys()).containsExactly("viral01");
+        assertThat(tracker.topKeys()).extracting(HotKeyTracker.HotKey::getShortUrl).containsExactly("viral01");
+        assertThat(tracker.topKeys().get(0).getResolvesPerSecond()).isBetween(2_000L, 2_100L);
+    }
+
+    @Test
+    void test_cooled_off_and_removed_short_urls_are_unpinned_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setPinDuration(Duration.ofMinutes(1));
+        var tracker = newTracker();
+        redisTemplate.data().put("viral01", "https://stackoverflow.com");
+        redisTemplate.data().put("viral02", "https://github.com");
+        tracker.pin(List.of("viral01", "viral02", "missing"));
+        redisTemplate.data().remove("viral02");
+
+        // when ----------------------------------------------------------------------------------
+        tracker.refresh();
+        Set<String> refreshed = tracker.pinnedKeys();
+        properties.setPinDuration(Duration.ofMillis(-1));
+        tracker.pin(List.of("viral01"));
+        tracker.refresh();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(refreshed).containsExactly("viral01");
+        assertThat(tracker.pinned("viral01")).isNull();
+        assertThat(tracker.pinnedKeys()).isEmpty();
+    }
+
+    private HotKeyTracker newTracker() {
+        return new HotKeyTracker(properties, new FlatUrlRepository(redisTemplate, null), redisTemplate,
+                new UrlMetrics(new SimpleMeterRegistry()));
+    }
+}
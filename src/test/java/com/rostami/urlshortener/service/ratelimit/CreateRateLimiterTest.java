@@ -0,0 +1,122 @@
+package com.rostami.urlshortener.service.ratelimit;
+
+import com.rostami.urlshortener.config.UrlRateLimitProperties;
+import com.rostami.urlshortener.exception.RateLimitExceededException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CreateRateLimiterTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final UrlRateLimitProperties properties = new UrlRateLimitProperties();
+
+    @Test
+    void test_burst_then_rejected_without_redis_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBurst(5);
+        properties.setLimit(100);
+        properties.setPeriod(Duration.ofHours(1));
+        var limiter = newLimiter();
+
+        // when ----------------------------------------------------------------------------------
+        for (int i = 0; i < 5; i++) limiter.acquire("10.0.0.1", null, 1);
+
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.1", null, 1))
+                .isInstanceOf(RateLimitExceededException.class)
+                .satisfies(ex -> assertThat(((RateLimitExceededException) ex).getRetryAfterSeconds()).isEqualTo(36));
+        assertThatCode(() -> limiter.acquire("10.0.0.2", null, 1)).doesNotThrowAnyException();
+        assertThat(redisTemplate.commandCount()).isZero();
+    }
+
+    @Test
+    void test_batches_never_put_the_client_in_debt_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBurst(5);
+        properties.setLimit(100);
+        properties.setPeriod(Duration.ofHours(1));
+        var limiter = newLimiter();
+
+        // when ----------------------------------------------------------------------------------
+        limiter.acquire("10.0.0.1", null, 3);
+
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.1", null, 6))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.1", null, 3))
+                .isInstanceOf(RateLimitExceededException.class)
+                .satisfies(ex -> assertThat(((RateLimitExceededException) ex).getRetryAfterSeconds()).isEqualTo(36));
+        assertThatCode(() -> limiter.acquire("10.0.0.1", null, 2)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void test_batches_have_a_budget_of_their_own_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBurst(5);
+        properties.setLimit(100);
+        properties.setBatchBurst(1_000);
+        properties.setBatchLimit(1_500);
+        properties.setPeriod(Duration.ofHours(1));
+        var limiter = newLimiter();
+
+        // when ----------------------------------------------------------------------------------
+        limiter.acquireBatch("10.0.0.1", null, 1_000);
+        limiter.sync();
+
+        // then ----------------------------------------------------------------------------------
+        assertThatCode(() -> limiter.acquire("10.0.0.1", null, 5)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> limiter.acquireBatch("10.0.0.1", null, 1_001))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> limiter.acquireBatch("10.0.0.1", null, 10))
+                .isInstanceOf(RateLimitExceededException.class);
+        assertThat(redisTemplate.data().values()).containsExactly("1000");
+    }
+
+    @Test
+    void test_shared_budget_is_enforced_across_nodes_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBurst(10);
+        properties.setLimit(10);
+        properties.setPeriod(Duration.ofHours(1));
+        var node1 = newLimiter();
+        var node2 = newLimiter();
+
+        // when ----------------------------------------------------------------------------------
+        for (int i = 0; i < 6; i++) node1.acquire("10.0.0.1", null, 1);
+        node2.acquire("10.0.0.1", null, 1);
+        node1.sync();
+        node2.sync();
+        for (int i = 0; i < 3; i++) node2.acquire("10.0.0.1", null, 1);
+
+        // then ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> node2.acquire("10.0.0.1", null, 1)).isInstanceOf(RateLimitExceededException.class);
+        assertThat(redisTemplate.data()).hasSize(1);
+        assertThat(redisTemplate.data().values()).containsExactly("7");
+    }
+
+    @Test
+    void test_forwarded_for_only_when_trusted_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBurst(1);
+        properties.setTrustForwardedFor(true);
+        var limiter = newLimiter();
+
+        // when ----------------------------------------------------------------------------------
+        limiter.acquire("10.0.0.1", "203.0.113.7, 10.0.0.1", 1);
+
+        // then ----------------------------------------------------------------------------------
+        assertThatCode(() -> limiter.acquire("10.0.0.1", "203.0.113.8", 1)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.9", "203.0.113.7", 1)).isInstanceOf(RateLimitExceededException.class);
+    }
+
+    private CreateRateLimiter newLimiter() {
+        return new CreateRateLimiter(properties, redisTemplate, new UrlMetrics(new SimpleMeterRegistry()));
+    }
+}
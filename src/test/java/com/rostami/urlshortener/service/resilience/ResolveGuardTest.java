@@ -0,0 +1,124 @@
+package com.rostami.urlshortener.service.resilience;
+
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.exception.StorageUnavailableException;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResolveGuardTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final FlatUrlRepository urlRepository = new FlatUrlRepository(redisTemplate, null);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ResolveGuard resolveGuard;
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.injectLatency(Duration.ZERO);
+        resolveGuard.stop();
+    }
+
+    @Test
+    void test_lookups_over_budget_are_answered_from_the_stale_copy_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var properties = enabledProperties();
+        properties.setBudget(Duration.ofMillis(20));
+        resolveGuard = new ResolveGuard(properties, new UrlMetrics(registry));
+        redisTemplate.data().put("abc1234", "https://stackoverflow.com");
+        String resolved = resolveGuard.find("abc1234", urlRepository::find);
+        // warms the reactive path up, so its first use doesn't count against the budget
+        resolveGuard.findReactive("abc1234", this::findReactive).block();
+        redisTemplate.injectLatency(Duration.ofMillis(300));
+
+        // when ----------------------------------------------------------------------------------
+        long started = System.nanoTime();
+        String stale = resolveGuard.find("abc1234", urlRepository::find);
+        String staleReactive = resolveGuard.findReactive("abc1234", this::findReactive).block();
+        long staleMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(resolved).isEqualTo("https://stackoverflow.com");
+        assertThat(stale).isEqualTo("https://stackoverflow.com");
+        assertThat(staleReactive).isEqualTo("https://stackoverflow.com");
+        assertThat(staleMillis).isLessThan(250);
+        assertThat(registry.counter("url.shortener.resolves.stale").count()).isEqualTo(2);
+        assertThatThrownBy(() -> resolveGuard.find("abc1235", urlRepository::find))
+                .isSameAs(StorageUnavailableException.INSTANCE);
+        assertThatThrownBy(() -> resolveGuard.findReactive("abc1235", this::findReactive).block())
+                .isSameAs(StorageUnavailableException.INSTANCE);
+    }
+
+    @Test
+    void test_failing_storage_opens_the_breaker_until_it_recovers_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var properties = enabledProperties();
+        properties.setBreakerWindow(10);
+        properties.setBreakerMinimumCalls(5);
+        properties.setBreakerOpenDuration(Duration.ofMillis(200));
+        resolveGuard = new ResolveGuard(properties, new UrlMetrics(registry));
+        redisTemplate.injectFailures(true);
+        for (int i = 0; i < 5; i++)
+            assertThatThrownBy(() -> resolveGuard.find("abc1234", urlRepository::find))
+                    .isInstanceOf(RedisConnectionFailureException.class);
+        long commands = redisTemplate.commandCount();
+
+        // when ----------------------------------------------------------------------------------
+        for (int i = 0; i < 10; i++)
+            assertThatThrownBy(() -> resolveGuard.find("abc1234", urlRepository::find))
+                    .isSameAs(StorageUnavailableException.INSTANCE);
+        long commandsWhileOpen = redisTemplate.commandCount() - commands;
+        redisTemplate.injectFailures(false);
+        redisTemplate.data().put("abc1234", "https://stackoverflow.com");
+        LockSupport.parkNanos(Duration.ofMillis(250).toNanos());
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(commandsWhileOpen).isZero();
+        assertThat(registry.counter("url.shortener.breaker.rejected").count()).isEqualTo(10);
+        assertThat(resolveGuard.find("abc1234", urlRepository::find)).isEqualTo("https://stackoverflow.com");
+        assertThat(resolveGuard.find("abc1234", urlRepository::find)).isEqualTo("https://stackoverflow.com");
+        assertThat(redisTemplate.commandCount() - commands).isEqualTo(2);
+    }
+
+    @Test
+    void test_cancelled_lookups_do_not_open_the_breaker_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var properties = enabledProperties();
+        properties.setBreakerWindow(10);
+        properties.setBreakerMinimumCalls(5);
+        resolveGuard = new ResolveGuard(properties, new UrlMetrics(registry));
+        redisTemplate.data().put("abc1234", "https://stackoverflow.com");
+        redisTemplate.injectLatency(Duration.ofMillis(50));
+
+        // when ----------------------------------------------------------------------------------
+        for (int i = 0; i < 10; i++)
+            resolveGuard.findReactive("abc1234", this::findReactive).subscribe().dispose();
+        redisTemplate.injectLatency(Duration.ZERO);
+        String resolved = resolveGuard.findReactive("abc1234", this::findReactive).block();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(resolved).isEqualTo("https://stackoverflow.com");
+        assertThat(registry.counter("url.shortener.breaker.rejected").count()).isZero();
+    }
+
+    private Mono<String> findReactive(String shortUrl) {
+        return Mono.fromCallable(() -> urlRepository.find(shortUrl)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static UrlResilienceProperties enabledProperties() {
+        var properties = new UrlResilienceProperties();
+        properties.setEnabled(true);
+        return properties;
+    }
+}
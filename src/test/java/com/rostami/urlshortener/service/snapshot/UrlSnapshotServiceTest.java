@@ -0,0 +1,103 @@
+package com.rostami.urlshortener.service.snapshot;
+
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlSnapshotProperties;
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.StoredUrl;
+import com.rostami.urlshortener.service.storage.BucketedUrlRepository;
+import com.rostami.urlshortener.service.storage.FlatUrlRepository;
+import com.rostami.urlshortener.service.storage.UrlRepository;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UrlSnapshotServiceTest {
+    private final InMemoryStringRedisTemplate flatRedis = new InMemoryStringRedisTemplate();
+    private final InMemoryStringRedisTemplate bucketedRedis = new InMemoryStringRedisTemplate();
+    private final UrlSnapshotProperties properties = new UrlSnapshotProperties();
+    private final UrlStorageProperties storageProperties = new UrlStorageProperties();
+
+    @Test
+    void test_export_from_flat_and_import_into_bucketed_isOk() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        properties.setBatchSize(7);
+        properties.setImportParallelism(3);
+        storageProperties.setBuckets(4);
+        for (int i = 0; i < 100; i++) flatRedis.data().put("code" + i, "https://stackoverflow.com/questions/" + i);
+        String expiring = StoredUrl.encode("https://github.com", Instant.now().plus(Duration.ofDays(1)));
+        String longExpired = StoredUrl.encode("https://gitlab.com", Instant.now().minus(Duration.ofDays(30)));
+        flatRedis.data().put("expiring", expiring);
+        flatRedis.data().put("longExpired", longExpired);
+        flatRedis.data().put("url-shortener:sequence", "42");
+        flatRedis.data().put("unrelated", "not a url");
+        var bucketed = new BucketedUrlRepository(storageProperties, bucketedRedis, null);
+        bucketed.claim("code0", "https://stackoverflow.com/questions/0", null);
+        bucketed.claim("code1", "https://bitbucket.org", null);
+        var exporter = service(new FlatUrlRepository(flatRedis, null));
+        var importer = service(bucketed);
+
+        // when ----------------------------------------------------------------------------------
+        var snapshot = new ByteArrayOutputStream();
+        long exported = exporter.exportTo(snapshot);
+        var result = importer.importFrom(new ByteArrayInputStream(snapshot.toByteArray()));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(exported).isEqualTo(102);
+        assertThat(result.getRead()).isEqualTo(102);
+        assertThat(result.getImported()).isEqualTo(100);
+        assertThat(result.getConflicts()).isEqualTo(1);
+        assertThat(result.getSkipped()).isEqualTo(1);
+        assertThat(bucketed.find("code99")).isEqualTo("https://stackoverflow.com/questions/99");
+        assertThat(bucketed.find("code1")).isEqualTo("https://bitbucket.org");
+        assertThat(bucketed.find("expiring")).isEqualTo(expiring);
+        assertThat(bucketed.find("longExpired")).isNull();
+        assertThat(bucketedRedis.sortedSet(storageProperties.getExpiryIndexKey())).containsOnlyKeys("expiring");
+
+        var reexported = new ByteArrayOutputStream();
+        assertThat(importer.exportTo(reexported)).isEqualTo(101);
+    }
+
+    @Test
+    void test_import_rejects_corrupt_and_truncated_snapshots_isOk() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        for (int i = 0; i < 10; i++) flatRedis.data().put("code" + i, "https://stackoverflow.com/questions/" + i);
+        var snapshot = new ByteArrayOutputStream();
+        service(new FlatUrlRepository(flatRedis, null)).exportTo(snapshot);
+        byte[] raw = new GZIPInputStream(new ByteArrayInputStream(snapshot.toByteArray())).readAllBytes();
+        byte[] corrupt = raw.clone();
+        corrupt[SnapshotWriter.MAGIC.length + 20] ^= 1;
+        byte[] truncated = Arrays.copyOf(raw, raw.length - 12);
+        var importer = service(new BucketedUrlRepository(storageProperties, bucketedRedis, null));
+
+        // when / then ---------------------------------------------------------------------------
+        assertThatThrownBy(() -> importer.importFrom(new ByteArrayInputStream(gzip(corrupt))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("corrupt");
+        assertThatThrownBy(() -> importer.importFrom(new ByteArrayInputStream(gzip(truncated))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("truncated");
+    }
+
+    private UrlSnapshotService service(UrlRepository repository) {
+        return new UrlSnapshotService(repository, properties, new UrlExpiryProperties());
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlExpiryProperties;
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import com.rostami.urlshortener.service.StoredUrl;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BucketedUrlRepositoryTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final UrlStorageProperties properties = new UrlStorageProperties();
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.script(BucketedUrlRepository.TAKE_DUE_SCRIPT, (keys, args) -> {
+            Map<String, Double> index = redisTemplate.sortedSet(keys.get(0));
+            List<String> due = index.entrySet().stream()
+                    .filter(entry -> entry.getValue() <= Double.parseDouble(args.get(0)))
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(Long.parseLong(args.get(1)))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            due.forEach(index::remove);
+            return due;
+        });
+    }
+
+    @Test
+    void test_claim_and_find_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setBuckets(16);
+        var repository = new BucketedUrlRepository(properties, redisTemplate, null);
+
+        // when ----------------------------------------------------------------------------------
+        boolean claimed = repository.claim("abc1234", "https://stackoverflow.com", null);
+        boolean claimedAgain = repository.claim("abc1234", "https://github.com", null);
+        List<Boolean> batch = repository.claimAll(List.of("abc1235", "abc1234"), List.of("https://github.com", "https://github.com"));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).isTrue();
+        assertThat(claimedAgain).isFalse();
+        assertThat(batch).containsExactly(true, false);
+        assertThat(repository.find("abc1234")).isEqualTo("https://stackoverflow.com");
+        assertThat(repository.findAll(List.of("abc1235", "missing", "abc1234")))
+                .containsExactly("https://github.com", null, "https://stackoverflow.com");
+        assertThat(redisTemplate.data()).isEmpty();
+        assertThat(redisTemplate.hashes()).allSatisfy((key, hash) -> assertThat(key).startsWith(properties.getBucketKeyPrefix()));
+    }
+
+    @Test
+    void test_long_urls_are_compressed_isOk() {
+        // given ----------------------------------------------------------------------------------
+        String url = "https://www.example.com/questions/11227809/why-is-processing-a-sorted-array-faster"
+                + "?utm_source=newsletter&utm_medium=email&utm_campaign=spring";
+        var codec = new UrlValueCodec(64);
+
+        // when ----------------------------------------------------------------------------------
+        byte[] encoded = codec.encode(url);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(encoded.length).isLessThan(url.length());
+        assertThat(codec.decode(encoded)).isEqualTo(url);
+        assertThat(codec.decode(codec.encode("https://a.co"))).isEqualTo("https://a.co");
+        assertThat(new String(codec.encode("https://a.co"), StandardCharsets.UTF_8)).isEqualTo("https://a.co");
+    }
+
+    @Test
+    void test_expired_short_urls_are_swept_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = new BucketedUrlRepository(properties, redisTemplate, null);
+        repository.claim("expired", StoredUrl.encode("https://github.com", Instant.now()), Duration.ofMillis(-1));
+        repository.claim("expiring", StoredUrl.encode("https://github.com", Instant.now().plusSeconds(60)), Duration.ofMinutes(1));
+        repository.claim("permanent", "https://stackoverflow.com", null);
+
+        // when ----------------------------------------------------------------------------------
+        long removed = repository.sweepExpired();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(removed).isEqualTo(1);
+        assertThat(repository.find("expired")).isNull();
+        assertThat(repository.find("expiring")).isNotNull();
+        assertThat(repository.find("permanent")).isEqualTo("https://stackoverflow.com");
+        assertThat(redisTemplate.sortedSet(properties.getExpiryIndexKey())).containsOnlyKeys("expiring");
+    }
+
+    @Test
+    void test_short_urls_claimed_again_are_not_swept_by_other_nodes_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var node1 = new BucketedUrlRepository(properties, redisTemplate, null);
+        var node2 = new BucketedUrlRepository(properties, redisTemplate, null);
+        node1.claim("expired", StoredUrl.encode("https://github.com", Instant.now()), Duration.ofMillis(-1));
+
+        // when ----------------------------------------------------------------------------------
+        long removedByNode1 = node1.sweepExpired();
+        boolean claimedAgain = node1.claim("expired",
+                StoredUrl.encode("https://gitlab.com", Instant.now().plusSeconds(60)), Duration.ofMinutes(1));
+        long removedByNode2 = node2.sweepExpired();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(removedByNode1).isEqualTo(1);
+        assertThat(claimedAgain).isTrue();
+        assertThat(removedByNode2).isZero();
+        assertThat(StoredUrl.originalUrl(node2.find("expired"))).isEqualTo("https://gitlab.com");
+        assertThat(redisTemplate.sortedSet(properties.getExpiryIndexKey())).containsOnlyKeys("expired");
+    }
+
+    @Test
+    void test_claims_missing_from_the_expiry_index_are_taken_back_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = new BucketedUrlRepository(properties, redisTemplate, null);
+        redisTemplate.injectFailuresOn("zAdd");
+
+        // when ----------------------------------------------------------------------------------
+        assertThatThrownBy(() -> repository.claim("expiring",
+                StoredUrl.encode("https://github.com", Instant.now().plusSeconds(60)), Duration.ofMinutes(1)))
+                .isInstanceOf(RedisConnectionFailureException.class);
+        boolean permanent = repository.claim("permanent", "https://stackoverflow.com", null);
+        redisTemplate.injectFailuresOn(null);
+        boolean claimedAgain = repository.claim("expiring",
+                StoredUrl.encode("https://gitlab.com", Instant.now().plusSeconds(60)), Duration.ofMinutes(1));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(permanent).isTrue();
+        assertThat(claimedAgain).isTrue();
+        assertThat(StoredUrl.originalUrl(repository.find("expiring"))).isEqualTo("https://gitlab.com");
+        assertThat(redisTemplate.sortedSet(properties.getExpiryIndexKey())).containsOnlyKeys("expiring");
+    }
+
+    @Test
+    void test_flat_layout_migration_isOk() {
+        // given ----------------------------------------------------------------------------------
+        properties.setMigrationScanCount(2);
+        properties.setMigrationDeleteFlat(true);
+        var flat = new FlatUrlRepository(redisTemplate, null);
+        flat.claim("abc1234", "https://stackoverflow.com", null);
+        flat.claim("abc1235", StoredUrl.encode("https://github.com", Instant.now().plusSeconds(60)), Duration.ofDays(1));
+        flat.claim("abc1236", "https://github.com", null);
+        redisTemplate.opsForValue().set("url-shortener:sequence", "42");
+        var bucketed = new BucketedUrlRepository(properties, redisTemplate, null);
+        bucketed.claim("abc1236", "https://gitlab.com", null);
+        var migrator = new FlatLayoutMigrator(properties, new UrlExpiryProperties(), redisTemplate, bucketed);
+
+        // when ----------------------------------------------------------------------------------
+        FlatLayoutMigrator.Result result = migrator.migrate();
+        FlatLayoutMigrator.Result again = migrator.migrate();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(result.getScanned()).isEqualTo(3);
+        assertThat(result.getMigrated()).isEqualTo(2);
+        assertThat(result.getConflicts()).isEqualTo(1);
+        assertThat(again.getScanned()).isEqualTo(1);
+        assertThat(bucketed.find("abc1234")).isEqualTo("https://stackoverflow.com");
+        assertThat(bucketed.find("abc1236")).isEqualTo("https://gitlab.com");
+        assertThat(StoredUrl.originalUrl(bucketed.find("abc1235"))).isEqualTo("https://github.com");
+        assertThat(redisTemplate.sortedSet(properties.getExpiryIndexKey())).containsOnlyKeys("abc1235");
+        assertThat(redisTemplate.data()).containsOnlyKeys("abc1236", "url-shortener:sequence");
+    }
+}
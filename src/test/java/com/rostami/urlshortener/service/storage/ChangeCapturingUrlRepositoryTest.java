@@ -0,0 +1,103 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlChangeProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeCapturingUrlRepositoryTest {
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private StringRedisConnection connection;
+    private ChangeCapturingUrlRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ChangeCapturingUrlRepository(redisTemplate, null, new UrlChangeProperties());
+    }
+
+    @Test
+    void test_claims_are_sent_by_digest_isOk() {
+        // given ----------------------------------------------------------------------------------
+        givenConnection();
+        given(connection.evalSha(anyString(), eq(ReturnType.BOOLEAN), eq(2), eq("abc1234"), any(), any(), any(), any()))
+                .willReturn(true);
+
+        // when ----------------------------------------------------------------------------------
+        boolean claimed = repository.claim("abc1234", "https://stackoverflow.com", null);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).isTrue();
+        verify(connection, never()).eval(anyString(), any(), any(int.class), any(String[].class));
+    }
+
+    @Test
+    void test_claims_missing_the_script_cache_are_sent_in_full_isOk() {
+        // given ----------------------------------------------------------------------------------
+        givenConnection();
+        given(connection.evalSha(anyString(), eq(ReturnType.BOOLEAN), eq(2), eq("abc1234"), any(), any(), any(), any()))
+                .willThrow(noScript());
+        given(connection.eval(eq(ChangeCapturingUrlRepository.CLAIM_SCRIPT), eq(ReturnType.BOOLEAN), eq(2),
+                eq("abc1234"), any(), any(), any(), any()))
+                .willReturn(true);
+
+        // when ----------------------------------------------------------------------------------
+        boolean claimed = repository.claim("abc1234", "https://stackoverflow.com", null);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).isTrue();
+    }
+
+    @Test
+    void test_batch_claims_missing_the_script_cache_are_sent_again_in_full_isOk() {
+        // given ----------------------------------------------------------------------------------
+        given(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .willThrow(new RedisPipelineException("NOSCRIPT", List.of(true, noScript(), false)))
+                .willAnswer(invocation -> {
+                    invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+                    return List.of(true);
+                });
+
+        // when ----------------------------------------------------------------------------------
+        List<Boolean> claimed = repository.claimAll(List.of("abc1234", "abc1235", "abc1236"),
+                List.of("https://stackoverflow.com", "https://github.com", "https://gitlab.com"));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).containsExactly(true, true, false);
+        verify(connection).eval(eq(ChangeCapturingUrlRepository.CLAIM_SCRIPT), eq(ReturnType.BOOLEAN), eq(2),
+                eq("abc1235"), any(), eq("https://github.com"), any(), any());
+        verify(connection, never()).eval(anyString(), any(), any(int.class), eq("abc1234"), any(), any(), any(), any());
+        verify(connection, never()).eval(anyString(), any(), any(int.class), eq("abc1236"), any(), any(), any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenConnection() {
+        given(redisTemplate.execute(any(RedisCallback.class)))
+                .willAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+    }
+
+    private static RedisSystemException noScript() {
+        return new RedisSystemException("Error in execution",
+                new IllegalStateException("NOSCRIPT No matching script. Please use EVAL."));
+    }
+}
@@ -0,0 +1,108 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlLookupBatchingProperties;
+import com.rostami.urlshortener.config.UrlLookupCoalescingProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingUrlLookupTest {
+    private static final int CALLERS = 32;
+
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UrlMetrics metrics = new UrlMetrics(registry);
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @Test
+    void test_concurrent_lookups_of_one_short_url_make_one_backend_call_isOk() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        redisTemplate.data().put("viral01", "https://stackoverflow.com");
+        var urlLookup = newUrlLookup();
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        var ready = new CountDownLatch(1);
+
+        // when ----------------------------------------------------------------------------------
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++)
+            results.add(callers.submit(() -> {
+                ready.await();
+                return urlLookup.find("viral01");
+            }));
+        ready.countDown();
+        List<String> found = new ArrayList<>();
+        for (Future<String> result : results) found.add(result.get());
+        callers.shutdown();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(found).hasSize(CALLERS).containsOnly("https://stackoverflow.com");
+        assertThat(backendCalls).hasValue(1);
+        assertThat(redisTemplate.commandCount()).isEqualTo(1);
+        assertThat(coalescedLookups()).isEqualTo(CALLERS - 1);
+        assertThat(urlLookup.find("viral01")).isEqualTo("https://stackoverflow.com");
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void test_concurrent_reactive_lookups_of_one_short_url_make_one_backend_call_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var urlLookup = newUrlLookup();
+
+        // when ----------------------------------------------------------------------------------
+        List<String> found = Flux.range(0, CALLERS)
+                .flatMap(i -> urlLookup.findReactive("missing").defaultIfEmpty("none"))
+                .collectList()
+                .block();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(found).hasSize(CALLERS).containsOnly("none");
+        assertThat(backendCalls).hasValue(1);
+        assertThat(coalescedLookups()).isEqualTo(CALLERS - 1);
+    }
+
+    private double coalescedLookups() {
+        return registry.counter("url.shortener.lookups.coalesced").count();
+    }
+
+    /**
+     * The backend holds every lookup until all the other callers have joined it, so they surely overlap.
+     */
+    private CoalescingUrlLookup newUrlLookup() {
+        var urlRepository = new FlatUrlRepository(redisTemplate, null) {
+            @Override
+            public String find(String shortUrl) {
+                backendCalls.incrementAndGet();
+                awaitFollowers();
+                return super.find(shortUrl);
+            }
+
+            @Override
+            public Mono<String> findReactive(String shortUrl) {
+                return Mono.fromCallable(() -> find(shortUrl))
+                        .subscribeOn(Schedulers.boundedElastic());
+            }
+        };
+        var lookupBatcher = new UrlLookupBatcher(new UrlLookupBatchingProperties(), urlRepository, metrics);
+        return new CoalescingUrlLookup(new UrlLookupCoalescingProperties(), lookupBatcher, metrics);
+    }
+
+    private void awaitFollowers() {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (coalescedLookups() < CALLERS - 1 && System.currentTimeMillis() < deadline) LockSupport.parkNanos(100_000);
+    }
+}
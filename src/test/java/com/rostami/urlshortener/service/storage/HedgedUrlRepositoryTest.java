@@ -0,0 +1,117 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlResilienceProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgedUrlRepositoryTest {
+    private final InMemoryStringRedisTemplate primaryTemplate = new InMemoryStringRedisTemplate();
+    private final InMemoryStringRedisTemplate replicaTemplate = new InMemoryStringRedisTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void test_slow_primary_reads_are_answered_by_the_replica_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = newRepository(Duration.ofMillis(100));
+        primaryTemplate.data().put("abc1234", "https://stackoverflow.com");
+        primaryTemplate.data().put("abc1235", "https://github.com");
+        // only the first short url has replicated so far
+        replicaTemplate.data().put("abc1234", "https://stackoverflow.com");
+        primaryTemplate.injectLatency(Duration.ofSeconds(1));
+
+        // when ----------------------------------------------------------------------------------
+        long started = System.nanoTime();
+        String hedged = repository.find("abc1234");
+        long hedgedMillis = (System.nanoTime() - started) / 1_000_000;
+        String notReplicated = repository.find("abc1235");
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(hedged).isEqualTo("https://stackoverflow.com");
+        // answered by the replica, without waiting for the primary
+        assertThat(hedgedMillis).isLessThan(1_000);
+        assertThat(notReplicated).isEqualTo("https://github.com");
+        assertThat(registry.counter("url.shortener.reads.hedged").count()).isEqualTo(2);
+        assertThat(replicaTemplate.commandCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_fast_primary_reads_are_not_hedged_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = newRepository(Duration.ofMillis(500));
+        primaryTemplate.data().put("abc1234", "https://stackoverflow.com");
+        replicaTemplate.data().put("missing", "https://github.com");
+
+        // when ----------------------------------------------------------------------------------
+        String found = repository.find("abc1234");
+        String missing = repository.find("missing");
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(found).isEqualTo("https://stackoverflow.com");
+        assertThat(missing).isNull();
+        assertThat(registry.counter("url.shortener.reads.hedged").count()).isZero();
+        assertThat(replicaTemplate.commandCount()).isZero();
+    }
+
+    @Test
+    void test_hedge_delay_follows_the_primary_latency_percentile_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var properties = new UrlResilienceProperties();
+        properties.setHedgingEnabled(true);
+        properties.setHedgePercentile(0.9);
+        properties.setHedgeMinDelay(Duration.ofMillis(1));
+        properties.setHedgeMaxDelay(Duration.ofMillis(50));
+        var repository = new HedgedUrlRepository(reactive(primaryTemplate), reactive(replicaTemplate), properties,
+                new UrlMetrics(registry));
+
+        // when ----------------------------------------------------------------------------------
+        record(repository, 1_023, Duration.ofMillis(5));
+        Duration beforeWarmedUp = repository.hedgeDelay();
+        record(repository, 1, Duration.ofMillis(5));
+        Duration warmedUp = repository.hedgeDelay();
+        // a quarter of the samples slow puts the percentile among them, above the upper bound
+        record(repository, 256, Duration.ofMillis(200));
+        Duration slow = repository.hedgeDelay();
+        record(repository, 255, Duration.ofNanos(100_000));
+        Duration beforeRecomputed = repository.hedgeDelay();
+        record(repository, 769, Duration.ofNanos(100_000));
+        Duration fast = repository.hedgeDelay();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(beforeWarmedUp).isEqualTo(Duration.ofMillis(50));
+        assertThat(warmedUp).isEqualTo(Duration.ofMillis(5));
+        assertThat(slow).isEqualTo(Duration.ofMillis(50));
+        assertThat(beforeRecomputed).isEqualTo(Duration.ofMillis(50));
+        assertThat(fast).isEqualTo(Duration.ofMillis(1));
+    }
+
+    private static void record(HedgedUrlRepository repository, int samples, Duration latency) {
+        for (int i = 0; i < samples; i++) repository.record(latency.toNanos());
+    }
+
+    private HedgedUrlRepository newRepository(Duration hedgeDelay) {
+        var properties = new UrlResilienceProperties();
+        properties.setHedgingEnabled(true);
+        // a fixed delay, rather than one following the latencies seen so far
+        properties.setHedgeMinDelay(hedgeDelay);
+        properties.setHedgeMaxDelay(hedgeDelay);
+        return new HedgedUrlRepository(reactive(primaryTemplate), reactive(replicaTemplate), properties,
+                new UrlMetrics(registry));
+    }
+
+    private static UrlRepository reactive(InMemoryStringRedisTemplate redisTemplate) {
+        return new FlatUrlRepository(redisTemplate, null) {
+            @Override
+            public Mono<String> findReactive(String shortUrl) {
+                return Mono.fromCallable(() -> find(shortUrl)).subscribeOn(Schedulers.boundedElastic());
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlStorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class LocalUrlRepositoryTest {
+    @TempDir
+    Path directory;
+
+    private final List<LocalUrlRepository> repositories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(LocalUrlRepository::stop);
+    }
+
+    @Test
+    void test_claim_and_find_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+
+        // when ----------------------------------------------------------------------------------
+        boolean claimed = repository.claim("abc1234", "https://stackoverflow.com", null);
+        boolean claimedAgain = repository.claim("abc1234", "https://github.com", null);
+        List<Boolean> batch = repository.claimAll(List.of("abc1235", "abc1234", "abc1235"),
+                List.of("https://github.com", "https://github.com", "https://gitlab.com"));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).isTrue();
+        assertThat(claimedAgain).isFalse();
+        assertThat(batch).containsExactly(true, false, false);
+        assertThat(repository.find("abc1234")).isEqualTo("https://stackoverflow.com");
+        assertThat(repository.findAll(List.of("abc1235", "missing", "abc1234")))
+                .containsExactly("https://github.com", null, "https://stackoverflow.com");
+        assertThat(repository.findReactive("abc1235").block()).isEqualTo("https://github.com");
+        Map<String, String> scanned = new HashMap<>();
+        repository.scan(1, (shortUrls, storedUrls) -> scanned.put(shortUrls.get(0), storedUrls.get(0)));
+        assertThat(scanned).containsOnly(entry("abc1234", "https://stackoverflow.com"), entry("abc1235", "https://github.com"));
+    }
+
+    @Test
+    void test_due_short_url_can_be_claimed_again_isOk() throws InterruptedException {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+        repository.claim("abc1234", "https://stackoverflow.com", Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        // when ----------------------------------------------------------------------------------
+        String due = repository.find("abc1234");
+        boolean reclaimed = repository.claim("abc1234", "https://github.com", null);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(due).isNull();
+        assertThat(reclaimed).isTrue();
+        assertThat(repository.find("abc1234")).isEqualTo("https://github.com");
+    }
+
+    @Test
+    void test_restart_rebuilds_index_and_drops_torn_record_isOk() throws IOException {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+        long end = 0;
+        for (int i = 0; i < 1_000; i++) {
+            repository.claim("code" + i, "https://stackoverflow.com/questions/" + i, null);
+            end += MappedUrlLog.HEADER_SIZE + ("code" + i).length() + ("https://stackoverflow.com/questions/" + i).length();
+        }
+        repository.stop();
+        repositories.remove(repository);
+        try (var file = new RandomAccessFile(directory.resolve("urls.log").toFile(), "rw")) {
+            // half a record, as left by a crash in the middle of an append
+            file.seek(end);
+            file.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 0, 7, 0, 0, 0, 30, 'x'});
+        }
+
+        // when ----------------------------------------------------------------------------------
+        var reopened = open();
+        boolean claimed = reopened.claim("fresh", "https://github.com", null);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(reopened.find("code0")).isEqualTo("https://stackoverflow.com/questions/0");
+        assertThat(reopened.find("code999")).isEqualTo("https://stackoverflow.com/questions/999");
+        assertThat(claimed).isTrue();
+        assertThat(reopened.find("fresh")).isEqualTo("https://github.com");
+    }
+
+    @Test
+    void test_compaction_drops_garbage_and_survives_restart_isOk() throws InterruptedException {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+        for (int i = 0; i < 100; i++)
+            repository.claim("due" + i, "https://stackoverflow.com/questions/" + i, Duration.ofMillis(1));
+        repository.claim("kept", "https://github.com", null);
+        Thread.sleep(5);
+        repository.claim("due0", "https://gitlab.com", null);
+
+        // when ----------------------------------------------------------------------------------
+        double garbageBefore = repository.garbageRatio();
+        repository.compact();
+        double garbageAfter = repository.garbageRatio();
+        repository.stop();
+        repositories.remove(repository);
+        var reopened = open();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(garbageBefore).isGreaterThan(0.9);
+        assertThat(garbageAfter).isZero();
+        assertThat(reopened.find("kept")).isEqualTo("https://github.com");
+        assertThat(reopened.find("due0")).isEqualTo("https://gitlab.com");
+        assertThat(reopened.find("due1")).isNull();
+        assertThat(reopened.garbageRatio()).isZero();
+    }
+
+    @Test
+    void test_index_grows_past_initial_capacity_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+
+        // when ----------------------------------------------------------------------------------
+        for (int i = 0; i < 10_000; i++) repository.claim("code" + i, "https://stackoverflow.com/questions/" + i, null);
+
+        // then ----------------------------------------------------------------------------------
+        for (int i = 0; i < 10_000; i++)
+            assertThat(repository.find("code" + i)).isEqualTo("https://stackoverflow.com/questions/" + i);
+        assertThat(repository.find("code10000")).isNull();
+    }
+
+    private LocalUrlRepository open() {
+        var properties = new UrlStorageProperties();
+        properties.setLocalDirectory(directory.toString());
+        properties.setLocalIndexCapacity(16);
+        var repository = new LocalUrlRepository(properties);
+        repositories.add(repository);
+        return repository;
+    }
+}
@@ -0,0 +1,36 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaReadingUrlRepositoryTest {
+    private final InMemoryStringRedisTemplate primaryTemplate = new InMemoryStringRedisTemplate();
+    private final InMemoryStringRedisTemplate replicaTemplate = new InMemoryStringRedisTemplate();
+
+    @Test
+    void test_reads_go_to_the_replica_and_misses_to_the_primary_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = new ReplicaReadingUrlRepository(new FlatUrlRepository(primaryTemplate, null),
+                new FlatUrlRepository(replicaTemplate, null));
+        repository.claimAll(List.of("abc1234", "abc1235"), List.of("https://stackoverflow.com", "https://github.com"));
+        // only the first claim has replicated so far
+        replicaTemplate.data().put("abc1234", "https://stackoverflow.com");
+        long primaryCommands = primaryTemplate.commandCount();
+
+        // when ----------------------------------------------------------------------------------
+        String replicated = repository.find("abc1234");
+        long primaryCommandsAfterHit = primaryTemplate.commandCount();
+        List<String> batch = repository.findAll(List.of("abc1235", "missing", "abc1234"));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(replicated).isEqualTo("https://stackoverflow.com");
+        assertThat(primaryCommandsAfterHit).isEqualTo(primaryCommands);
+        assertThat(batch).containsExactly("https://github.com", null, "https://stackoverflow.com");
+        assertThat(repository.find("abc1235")).isEqualTo("https://github.com");
+        assertThat(replicaTemplate.data()).doesNotContainKey("abc1235");
+    }
+}
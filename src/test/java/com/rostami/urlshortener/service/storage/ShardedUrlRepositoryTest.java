@@ -0,0 +1,116 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedUrlRepositoryTest {
+    private final Map<String, InMemoryStringRedisTemplate> redisTemplates = new LinkedHashMap<>();
+
+    @Test
+    void test_short_urls_are_spread_over_the_shards_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var repository = new ShardedUrlRepository(shards("a", "b", "c"), 160, false);
+        List<String> shortUrls = shortUrls(3_000);
+
+        // when ----------------------------------------------------------------------------------
+        List<Boolean> claimed = repository.claimAll(shortUrls, storedUrls(shortUrls));
+        boolean claimedAgain = repository.claim(shortUrls.get(0), "https://github.com", null);
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).hasSize(3_000).containsOnly(true);
+        assertThat(claimedAgain).isFalse();
+        assertThat(repository.findAll(List.of(shortUrls.get(7), "missing", shortUrls.get(2_999))))
+                .containsExactly("https://example.com/7", null, "https://example.com/2999");
+        assertThat(repository.find(shortUrls.get(42))).isEqualTo("https://example.com/42");
+        assertThat(redisTemplates.values()).allSatisfy(redisTemplate ->
+                assertThat(redisTemplate.data().size()).isBetween(700, 1_300));
+        List<String> scanned = new ArrayList<>();
+        repository.scan(500, (batch, storedUrls) -> scanned.addAll(batch));
+        assertThat(scanned).containsExactlyInAnyOrderElementsOf(shortUrls);
+    }
+
+    @Test
+    void test_adding_a_shard_only_moves_short_urls_to_it_isOk() {
+        // given ----------------------------------------------------------------------------------
+        var before = new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c"), 160);
+        var after = new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c", "d", "d"), 160);
+        List<String> shortUrls = shortUrls(10_000);
+
+        // when ----------------------------------------------------------------------------------
+        long moved = 0;
+        boolean movedFromSuccessor = true;
+        for (String shortUrl : shortUrls) {
+            if (before.route(shortUrl).equals(after.route(shortUrl))) continue;
+            moved++;
+            movedFromSuccessor &= after.route(shortUrl).equals("d")
+                    && after.successor(shortUrl).equals(before.route(shortUrl));
+        }
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(moved).isBetween(2_000L, 3_000L);
+        assertThat(movedFromSuccessor).isTrue();
+    }
+
+    @Test
+    void test_rebalance_after_adding_a_shard_isOk() {
+        // given ----------------------------------------------------------------------------------
+        Map<String, UrlRepository> shards = shards("a", "b", "c");
+        List<String> shortUrls = shortUrls(1_000);
+        new ShardedUrlRepository(shards, 160, false).claimAll(shortUrls, storedUrls(shortUrls));
+        shards.putAll(shards("d"));
+        var rebalancing = new ShardedUrlRepository(shards, 160, true);
+        List<String> beforeRebalance = rebalancing.findAll(shortUrls);
+        boolean claimedMoved = rebalancing.claim(movedShortUrl(shortUrls), "https://github.com", null);
+
+        // when ----------------------------------------------------------------------------------
+        ShardedUrlRepository.Result result = rebalancing.rebalance(100, Duration.ofDays(1));
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(beforeRebalance).containsExactlyElementsOf(storedUrls(shortUrls));
+        assertThat(claimedMoved).isFalse();
+        assertThat(result.getScanned()).isGreaterThanOrEqualTo(1_000);
+        assertThat(result.getMoved()).isEqualTo(redisTemplates.get("d").data().size()).isBetween(150L, 350L);
+        assertThat(result.getConflicts()).isZero();
+        assertThat(new ShardedUrlRepository(shards, 160, false).findAll(shortUrls))
+                .containsExactlyElementsOf(storedUrls(shortUrls));
+    }
+
+    private String movedShortUrl(List<String> shortUrls) {
+        return shortUrls.stream()
+                .filter(shortUrl -> !redisTemplates.get("d").data().containsKey(shortUrl))
+                .filter(shortUrl -> new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c", "d", "d"), 160)
+                        .route(shortUrl).equals("d"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Map<String, UrlRepository> shards(String... names) {
+        Map<String, UrlRepository> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            var redisTemplate = new InMemoryStringRedisTemplate();
+            redisTemplates.put(name, redisTemplate);
+            shards.put(name, new FlatUrlRepository(redisTemplate, null));
+        }
+        return shards;
+    }
+
+    private static List<String> shortUrls(int count) {
+        List<String> shortUrls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) shortUrls.add(String.format("s%06d", i));
+        return shortUrls;
+    }
+
+    private static List<String> storedUrls(List<String> shortUrls) {
+        List<String> storedUrls = new ArrayList<>(shortUrls.size());
+        for (String shortUrl : shortUrls) storedUrls.add("https://example.com/" + Integer.parseInt(shortUrl.substring(1)));
+        return storedUrls;
+    }
+}
@@ -0,0 +1,81 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlLookupBatchingProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlLookupBatcherTest {
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final UrlLookupBatchingProperties properties = new UrlLookupBatchingProperties();
+    private final UrlMetrics metrics = new UrlMetrics(new SimpleMeterRegistry());
+    private UrlLookupBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) batcher.stop();
+    }
+
+    @Test
+    void test_concurrent_lookups_are_batched_isOk() throws Exception {
+        // given ----------------------------------------------------------------------------------
+        properties.setEnabled(true);
+        properties.setMaxWait(Duration.ofMillis(20));
+        batcher = new UrlLookupBatcher(properties, new FlatUrlRepository(redisTemplate, null), metrics);
+        batcher.start();
+        for (int i = 0; i < 32; i++) redisTemplate.data().put("short" + i, "https://example.com/" + i);
+        ExecutorService callers = Executors.newFixedThreadPool(64);
+        var ready = new CountDownLatch(1);
+
+        // when ----------------------------------------------------------------------------------
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            String shortUrl = "short" + i;
+            results.add(callers.submit(() -> {
+                ready.await();
+                return batcher.find(shortUrl);
+            }));
+        }
+        ready.countDown();
+        List<String> found = new ArrayList<>();
+        for (Future<String> result : results) found.add(result.get());
+        callers.shutdown();
+
+        // then ----------------------------------------------------------------------------------
+        for (int i = 0; i < 64; i++)
+            assertThat(found.get(i)).isEqualTo(i < 32 ? "https://example.com/" + i : null);
+        assertThat(redisTemplate.commandCount()).isLessThan(64);
+        assertThat(metrics.lookupBatchSize().count()).isEqualTo(redisTemplate.commandCount());
+        assertThat(metrics.lookupBatchSize().totalAmount()).isEqualTo(64);
+        assertThat(batcher.findReactive("short7").block()).isEqualTo("https://example.com/7");
+        assertThat(batcher.findReactive("missing").blockOptional()).isEmpty();
+    }
+
+    @Test
+    void test_disabled_batcher_looks_up_directly_isOk() {
+        // given ----------------------------------------------------------------------------------
+        batcher = new UrlLookupBatcher(properties, new FlatUrlRepository(redisTemplate, null), metrics);
+        batcher.start();
+        redisTemplate.data().put("short1", "https://github.com");
+
+        // when ----------------------------------------------------------------------------------
+        String found = batcher.find("short1");
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(found).isEqualTo("https://github.com");
+        assertThat(batcher.find("missing")).isNull();
+        assertThat(metrics.lookupBatchSize().count()).isZero();
+    }
+}
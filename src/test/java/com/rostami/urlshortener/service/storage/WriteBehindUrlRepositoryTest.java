@@ -0,0 +1,122 @@
+package com.rostami.urlshortener.service.storage;
+
+import com.rostami.urlshortener.config.UrlWriteBehindProperties;
+import com.rostami.urlshortener.metrics.UrlMetrics;
+import com.rostami.urlshortener.support.InMemoryStringRedisTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindUrlRepositoryTest {
+    @TempDir
+    Path directory;
+
+    private final InMemoryStringRedisTemplate redisTemplate = new InMemoryStringRedisTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> flushed = new ArrayList<>();
+    private final List<WriteBehindUrlRepository> repositories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(WriteBehindUrlRepository::stop);
+    }
+
+    @Test
+    void test_claims_are_acknowledged_before_they_reach_redis_isOk() throws IOException {
+        // given ----------------------------------------------------------------------------------
+        var repository = open();
+        redisTemplate.data().put("taken01", "https://gitlab.com");
+        List<String> shortUrls = new ArrayList<>();
+        List<String> storedUrls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            shortUrls.add("batch" + i);
+            storedUrls.add("https://example.com/" + i);
+        }
+        long commands = redisTemplate.commandCount();
+
+        // when ----------------------------------------------------------------------------------
+        boolean claimed = repository.claim("abc1234", "https://stackoverflow.com", null);
+        boolean claimedAgain = repository.claim("abc1234", "https://github.com", null);
+        boolean expiring = repository.claim("exp1234", "https://github.com", Duration.ofHours(1));
+        List<Boolean> batch = repository.claimAll(shortUrls, storedUrls);
+        repository.claim("taken01", "https://github.com", null);
+        long commandsBeforeDrain = redisTemplate.commandCount() - commands;
+        List<String> beforeDrain = repository.findAll(List.of("abc1234", "batch7", "missing"));
+        repository.drain();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(claimed).isTrue();
+        assertThat(claimedAgain).isFalse();
+        assertThat(expiring).isTrue();
+        assertThat(batch).hasSize(100).containsOnly(true);
+        assertThat(commandsBeforeDrain).isZero();
+        assertThat(beforeDrain).containsExactly("https://stackoverflow.com", "https://example.com/7", null);
+        assertThat(registry.summary("url.shortener.write.behind.commit.size").count()).isEqualTo(4);
+        assertThat(registry.summary("url.shortener.write.behind.commit.size").max()).isEqualTo(100);
+        assertThat(redisTemplate.data())
+                .containsEntry("abc1234", "https://stackoverflow.com")
+                .containsEntry("exp1234", "https://github.com")
+                .containsEntry("batch99", "https://example.com/99")
+                .containsEntry("taken01", "https://gitlab.com");
+        assertThat(registry.counter("url.shortener.write.behind.conflicts").count()).isEqualTo(1);
+        assertThat(registry.get("url.shortener.write.behind.pending").gauge().value()).isZero();
+        assertThat(flushed).hasSize(103).contains("abc1234", "batch0");
+        assertThat(repository.find("abc1234")).isEqualTo("https://stackoverflow.com");
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void test_logged_claims_are_replayed_after_a_crash_isOk() throws IOException {
+        // given ----------------------------------------------------------------------------------
+        var crashed = open();
+        crashed.claim("abc1234", "https://stackoverflow.com", null);
+        crashed.claimAll(List.of("abc1235", "abc1236"), List.of("https://github.com", "https://gitlab.com"));
+        Files.write(segments().get(0), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20},
+                StandardOpenOption.APPEND);
+
+        // when ----------------------------------------------------------------------------------
+        var restarted = open();
+        String beforeDrain = restarted.find("abc1236");
+        long commandsBeforeDrain = redisTemplate.commandCount();
+        restarted.drain();
+
+        // then ----------------------------------------------------------------------------------
+        assertThat(beforeDrain).isEqualTo("https://gitlab.com");
+        assertThat(commandsBeforeDrain).isZero();
+        assertThat(redisTemplate.data())
+                .containsEntry("abc1234", "https://stackoverflow.com")
+                .containsEntry("abc1235", "https://github.com")
+                .containsEntry("abc1236", "https://gitlab.com");
+        assertThat(segments()).hasSize(1);
+    }
+
+    private WriteBehindUrlRepository open() {
+        var properties = new UrlWriteBehindProperties();
+        properties.setDirectory(directory.toString());
+        properties.setDrainInterval(Duration.ofHours(1));
+        var repository = new WriteBehindUrlRepository(properties, new FlatUrlRepository(redisTemplate, null),
+                new UrlMetrics(registry), flushed::addAll);
+        repository.start();
+        repositories.add(repository);
+        return repository;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.rostami.urlshortener.support;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultScriptExecutor;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Redis stand-in for benchmarks and concurrency tests, backed by {@link ConcurrentHashMap}s.
+ * <p>
+ * Only the string, hash, sorted set and stream (consumer group) commands the services use are implemented,
+ * both through the string operations and through raw (byte[]) connections, along with scripts a test
+ * {@link #script registered} a stand-in for; everything else throws {@link UnsupportedOperationException}.
+ * {@link #commandCount()} tells how many commands reached "redis".
+ * <p>
+ * {@link #injectLatency(Duration)} and {@link #injectFailures(boolean)} make every command slow or fail, to
+ * stand in for a redis that is forking for a snapshot or failing over.
+ */
+public class InMemoryStringRedisTemplate extends StringRedisTemplate {
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+    private final Map<String, RedisStream> streams = new ConcurrentHashMap<>();
+    private final Map<String, BiFunction<List<String>, List<String>, Object>> scripts = new ConcurrentHashMap<>();
+    private final AtomicLong commands = new AtomicLong();
+    private volatile long latencyNanos;
+    private volatile long failingAfter = Long.MAX_VALUE;
+    private volatile String failingCommand;
+    private final ValueOperations<String, String> valueOperations = valueOperationsProxy();
+    private final HashOperations<String, Object, Object> hashOperations = hashOperationsProxy();
+
+    public InMemoryStringRedisTemplate() {
+        setScriptExecutor(new DefaultScriptExecutor<>(this));
+    }
+
+    public Map<String, String> data() {
+        return data;
+    }
+
+    public Map<String, Map<String, String>> hashes() {
+        return hashes;
+    }
+
+    public Map<String, String> hash(String key) {
+        return hashes.getOrDefault(key, Map.of());
+    }
+
+    public Map<String, Double> sortedSet(String key) {
+        return sortedSets.getOrDefault(key, Map.of());
+    }
+
+    public List<StringRecord> stream(String key) {
+        RedisStream stream = streams.get(key);
+        if (stream == null) return List.of();
+        synchronized (stream) {
+            return new ArrayList<>(stream.entries);
+        }
+    }
+
+    /**
+     * @return ids of the entries the group delivered but that weren't acknowledged yet
+     */
+    public Set<RecordId> pending(String key, String group) {
+        RedisStream stream = streams.get(key);
+        if (stream == null || !stream.groups.containsKey(group)) return Set.of();
+        synchronized (stream) {
+            return new LinkedHashSet<>(stream.groups.get(group).pending.keySet());
+        }
+    }
+
+    public long commandCount() {
+        return commands.get();
+    }
+
+    public void injectLatency(Duration latency) {
+        latencyNanos = latency.toNanos();
+    }
+
+    public void injectFailures(boolean failing) {
+        failingAfter = failing ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    /**
+     * Lets the given number of further commands through and fails all the ones after them.
+     */
+    public void injectFailuresAfter(long commands) {
+        failingAfter = this.commands.get() + commands;
+    }
+
+    /**
+     * Fails every call of the given connection command, such as "zAdd"; null lets them through again.
+     */
+    public void injectFailuresOn(String command) {
+        failingCommand = command;
+    }
+
+    /**
+     * Lua can't run here, so a test stands in for a script with what it does to its keys and arguments;
+     * EVAL and EVALSHA of it then run that, atomically as in redis.
+     */
+    public void script(String script, BiFunction<List<String>, List<String>, Object> handler) {
+        scripts.put(script, handler);
+        scripts.put(RedisScript.of(script).getSha1(), handler);
+    }
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+        return (HashOperations<String, HK, HV>) hashOperations;
+    }
+
+    @Override
+    public void convertAndSend(String channel, Object message) {
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+        commands.incrementAndGet();
+        injectFaults();
+        return keys.stream().filter(key -> data.remove(key) != null).count();
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action) {
+        return action.doInRedis(connectionProxy(null));
+    }
+
+    @Override
+    public <T extends Closeable> T executeWithStickyConnection(RedisCallback<T> callback) {
+        return execute(callback);
+    }
+
+    @Override
+    public List<Object> executePipelined(RedisCallback<?> action) {
+        List<Object> results = new ArrayList<>();
+        action.doInRedis(connectionProxy(results));
+        return results;
+    }
+
+    @Override
+    public List<Object> executePipelined(RedisCallback<?> action, RedisSerializer<?> resultSerializer) {
+        return executePipelined(action);
+    }
+
+    private Object execute(String command, Object[] args) {
+        commands.incrementAndGet();
+        injectFaults();
+        if (command.equals(failingCommand)) throw new RedisConnectionFailureException("Injected failure");
+        switch (command) {
+            case "get":
+                return data.get((String) args[0]);
+            case "set":
+                data.put((String) args[0], (String) args[1]);
+                return args.length > 2 ? Boolean.TRUE : null;
+            case "setIfAbsent":
+            case "setNX":
+                return data.putIfAbsent((String) args[0], (String) args[1]) == null;
+            case "multiGet":
+            case "mGet": {
+                List<String> values = new ArrayList<>();
+                for (Object key : (Collection<?>) args[0]) values.add(data.get((String) key));
+                return values;
+            }
+            case "increment":
+            case "incrBy": {
+                long delta = args.length > 1 ? ((Number) args[1]).longValue() : 1;
+                return Long.parseLong(data.merge((String) args[0], String.valueOf(delta),
+                        (current, increment) -> String.valueOf(Long.parseLong(current) + Long.parseLong(increment))));
+            }
+            case "pExpire":
+                return data.containsKey((String) args[0]);
+            case "hIncrBy": {
+                Map<String, String> hash = hashes.computeIfAbsent((String) args[0], key -> new ConcurrentHashMap<>());
+                return Long.parseLong(hash.merge((String) args[1], String.valueOf(args[2]),
+                        (current, increment) -> String.valueOf(Long.parseLong(current) + Long.parseLong(increment))));
+            }
+            case "hGet":
+                return hash((String) args[0]).get((String) args[1]);
+            case "hGetAll":
+                return new HashMap<>(hash((String) args[0]));
+            case "hSetNX":
+                return hashes.computeIfAbsent((String) args[0], key -> new ConcurrentHashMap<>())
+                        .putIfAbsent((String) args[1], (String) args[2]) == null;
+            case "hDel": {
+                Map<String, String> hash = hashes.getOrDefault((String) args[0], new ConcurrentHashMap<>());
+                long removed = 0;
+                for (int i = 1; i < args.length; i++) if (hash.remove((String) args[i]) != null) removed++;
+                return removed;
+            }
+            case "zAdd":
+                return sortedSets.computeIfAbsent((String) args[0], key -> new ConcurrentHashMap<>())
+                        .put((String) args[2], (Double) args[1]) == null;
+            case "zRangeByScore": {
+                double min = (Double) args[1];
+                double max = (Double) args[2];
+                return sortedSet((String) args[0]).entrySet().stream()
+                        .filter(entry -> entry.getValue() >= min && entry.getValue() <= max)
+                        .sorted(Map.Entry.comparingByValue())
+                        .skip((Long) args[3])
+                        .limit((Long) args[4])
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+            }
+            case "zRem": {
+                Map<String, Double> sortedSet = sortedSets.getOrDefault((String) args[0], new ConcurrentHashMap<>());
+                long removed = 0;
+                for (int i = 1; i < args.length; i++) if (sortedSet.remove((String) args[i]) != null) removed++;
+                return removed;
+            }
+            case "eval":
+            case "evalSha":
+                return eval(args);
+            case "xAdd":
+                return xAdd((StringRecord) args[0]);
+            case "xGroupCreate":
+                return xGroupCreate((String) args[0], (ReadOffset) args[1], (String) args[2]);
+            case "xReadGroupAsString":
+                return xReadGroup((Consumer) args[0], (StreamReadOptions) args[1],
+                        (StreamOffset<?>) (args[2] instanceof StreamOffset[] ? ((StreamOffset<?>[]) args[2])[0] : args[2]));
+            case "xAck":
+                return xAck((String) args[0], (String) args[1], (RecordId[]) args[2]);
+            case "scan": {
+                // only trailing * patterns, as used by the application
+                String pattern = args.length > 0 ? ((ScanOptions) args[0]).getPattern() : null;
+                String prefix = pattern != null ? pattern.substring(0, pattern.length() - 1) : "";
+                return cursor(Stream.of(data.keySet(), hashes.keySet(), sortedSets.keySet())
+                        .flatMap(Set::stream)
+                        .filter(key -> key.startsWith(prefix))
+                        .collect(Collectors.toList())
+                        .iterator());
+            }
+            default:
+                throw new UnsupportedOperationException(command);
+        }
+    }
+
+    private void injectFaults() {
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+        if (commands.get() > failingAfter) throw new RedisConnectionFailureException("Injected failure");
+    }
+
+    /**
+     * Arguments: script or its digest, return type, number of keys, then the keys and arguments, either
+     * flattened already or as one array.
+     */
+    private Object eval(Object[] args) {
+        BiFunction<List<String>, List<String>, Object> handler = scripts.get((String) args[0]);
+        if (handler == null) throw new UnsupportedOperationException("Script " + args[0]);
+        int numKeys = ((Number) args[2]).intValue();
+        List<String> keysAndArgs = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            if (args[i] instanceof byte[][]) {
+                for (byte[] value : (byte[][]) args[i]) keysAndArgs.add(new String(value, StandardCharsets.ISO_8859_1));
+            } else if (args[i] instanceof String[]) {
+                keysAndArgs.addAll(List.of((String[]) args[i]));
+            } else {
+                keysAndArgs.add((String) args[i]);
+            }
+        }
+        synchronized (scripts) {
+            return handler.apply(keysAndArgs.subList(0, numKeys), keysAndArgs.subList(numKeys, keysAndArgs.size()));
+        }
+    }
+
+    private RecordId xAdd(StringRecord record) {
+        RedisStream stream = streams.computeIfAbsent(record.getStream(), key -> new RedisStream());
+        synchronized (stream) {
+            RecordId id = RecordId.of(System.currentTimeMillis(), stream.sequence++);
+            stream.entries.add(record.withId(id));
+            return id;
+        }
+    }
+
+    private String xGroupCreate(String key, ReadOffset offset, String group) {
+        RedisStream stream = streams.computeIfAbsent(key, ignored -> new RedisStream());
+        synchronized (stream) {
+            if (stream.groups.containsKey(group))
+                throw new RedisSystemException("Error in execution",
+                        new IllegalStateException("BUSYGROUP Consumer Group name already exists"));
+            ConsumerGroup created = new ConsumerGroup();
+            created.delivered = "$".equals(offset.getOffset()) ? stream.entries.size() : 0;
+            stream.groups.put(group, created);
+            return "OK";
+        }
+    }
+
+    /**
+     * Delivers entries the group hasn't delivered yet for {@code >}, and the consumer's unacknowledged ones
+     * otherwise. A blocking read that finds nothing new waits its block time and returns nothing.
+     */
+    private List<StringRecord> xReadGroup(Consumer consumer, StreamReadOptions options, StreamOffset<?> offset) {
+        RedisStream stream = streams.get((String) offset.getKey());
+        if (stream == null) throw new RedisSystemException("Error in execution", new IllegalStateException("NOGROUP"));
+        long count = options.getCount() != null ? options.getCount() : Long.MAX_VALUE;
+        List<StringRecord> records = new ArrayList<>();
+        synchronized (stream) {
+            ConsumerGroup group = stream.groups.get(consumer.getGroup());
+            if (group == null) throw new RedisSystemException("Error in execution", new IllegalStateException("NOGROUP"));
+            if (">".equals(offset.getOffset().getOffset())) {
+                while (group.delivered < stream.entries.size() && records.size() < count) {
+                    StringRecord record = stream.entries.get(group.delivered++);
+                    group.pending.put(record.getId(), consumer.getName());
+                    records.add(record);
+                }
+            } else {
+                for (StringRecord record : stream.entries)
+                    if (records.size() < count && consumer.getName().equals(group.pending.get(record.getId())))
+                        records.add(record);
+            }
+        }
+        if (records.isEmpty() && options.isBlocking()) LockSupport.parkNanos(options.getBlock() * 1_000_000);
+        return records;
+    }
+
+    private long xAck(String key, String group, RecordId[] ids) {
+        RedisStream stream = streams.get(key);
+        if (stream == null || !stream.groups.containsKey(group)) return 0;
+        synchronized (stream) {
+            Map<RecordId, String> pending = stream.groups.get(group).pending;
+            long acknowledged = 0;
+            for (RecordId id : ids) if (pending.remove(id) != null) acknowledged++;
+            return acknowledged;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, String> valueOperationsProxy() {
+        return (ValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ValueOperations.class},
+                (proxy, method, args) -> method.getDeclaringClass() == Object.class
+                        ? method.invoke(this, args)
+                        : execute(method.getName(), args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashOperations<String, Object, Object> hashOperationsProxy() {
+        return (HashOperations<String, Object, Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HashOperations.class},
+                (proxy, method, args) -> method.getDeclaringClass() == Object.class
+                        ? method.invoke(this, args)
+                        : execute(method.getName().equals("get") ? "hGet" : method.getName(), args));
+    }
+
+    /**
+     * String and raw connection in one: byte[] arguments are turned into strings (ISO-8859-1, so binary
+     * values survive) and results of raw calls back into byte[]. Pipelined results are collected instead
+     * of returned.
+     */
+    private StringRedisConnection connectionProxy(List<Object> pipelineResults) {
+        return (StringRedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StringRedisConnection.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) return method.invoke(this, args);
+                    // asked by the script executor, which doesn't run scripts in pipelines or transactions
+                    if (method.getName().equals("isPipelined")) return pipelineResults != null;
+                    if (method.getName().equals("isQueueing")) return false;
+                    boolean raw = isRaw(method);
+                    Object result = execute(method.getName(), raw ? fromBytes(args) : args);
+                    if (raw) result = toBytes(result);
+                    if (pipelineResults == null) return result;
+                    pipelineResults.add(result);
+                    return null;
+                });
+    }
+
+    private static boolean isRaw(Method method) {
+        return method.getParameterCount() > 0 && method.getParameterTypes()[0] == byte[].class;
+    }
+
+    private static Object[] fromBytes(Object[] args) {
+        List<Object> converted = new ArrayList<>();
+        for (Object arg : args) {
+            if (arg instanceof byte[][]) {
+                for (byte[] value : (byte[][]) arg) converted.add(new String(value, StandardCharsets.ISO_8859_1));
+            } else if (arg instanceof byte[]) {
+                converted.add(new String((byte[]) arg, StandardCharsets.ISO_8859_1));
+            } else if (arg instanceof Number && !(arg instanceof Long)) {
+                converted.add(((Number) arg).doubleValue());
+            } else {
+                converted.add(arg);
+            }
+        }
+        return converted.toArray();
+    }
+
+    private static Object toBytes(Object result) {
+        if (result instanceof String) return ((String) result).getBytes(StandardCharsets.ISO_8859_1);
+        if (result instanceof Map)
+            return ((Map<?, ?>) result).entrySet().stream().collect(Collectors.toMap(
+                    entry -> ((String) entry.getKey()).getBytes(StandardCharsets.ISO_8859_1),
+                    entry -> ((String) entry.getValue()).getBytes(StandardCharsets.ISO_8859_1)));
+        if (result instanceof Set)
+            return ((Set<?>) result).stream()
+                    .map(value -> ((String) value).getBytes(StandardCharsets.ISO_8859_1))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<byte[]> cursor(Iterator<String> keys) {
+        return (Cursor<byte[]>) Proxy.newProxyInstance(InMemoryStringRedisTemplate.class.getClassLoader(),
+                new Class<?>[]{Cursor.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasNext":
+                            return keys.hasNext();
+                        case "next":
+                            return keys.next().getBytes(StandardCharsets.UTF_8);
+                        case "close":
+                            return null;
+                        case "isClosed":
+                            return !keys.hasNext();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static final class RedisStream {
+        final List<StringRecord> entries = new ArrayList<>();
+        final Map<String, ConsumerGroup> groups = new HashMap<>();
+        long sequence;
+    }
+
+    private static final class ConsumerGroup {
+        final Map<RecordId, String> pending = new LinkedHashMap<>();
+        int delivered;
+    }
+}
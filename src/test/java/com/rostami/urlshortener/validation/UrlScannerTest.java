@@ -0,0 +1,90 @@
+package com.rostami.urlshortener.validation;
+
+import com.rostami.urlshortener.dto.in.UrlCreateParam;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlScannerTest {
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "((http|https)://)(www.)?[a-zA-Z0-9@:%._+~#?&/=]{2,256}\\.[a-z]{2,6}\\b([-a-zA-Z0-9@:%._+~#?&/=]*)");
+    private static final String[] FRAGMENTS = {
+            "http://", "https://", "www", "www.", ".", "..", "com", "io", "museum", "abcdefg", "A", "Z9", "_",
+            "-", "/", "?q=1", "#", "&", "=", "%20", "@", ":", "+", "~", " ", "!", "\n", "\u2028", "\u00E9", "\uD83D\uDE00",
+            "\uD83D", "a", "b", "x"
+    };
+
+    @Test
+    void test_scanner_agrees_with_regex_on_crafted_inputs() {
+        List<String> inputs = new ArrayList<>(List.of(
+                "", "http://", "https://a.co", "https://ab.co", "https://ab.c", "https://ab.comcomc",
+                "https://ab.com", "https://ab.coM", "https://ab.co1", "https://ab.co_", "https://ab.co-x",
+                "https://ab.co/path?x=1#frag", "http://www.ab.co", "http://www.a.co", "http://wwwXab.co",
+                "http://www\nab.co", "http://www\u2028ab.co", "http://www\uD83D\uDE00ab.co", "http://www\uD83Dab.co",
+                "https://stackoverflow.com", "ftp://ab.co", "HTTP://ab.co", "https://a.b.c.d.e.com",
+                "https://ab.co.", "https://ab.co.uk", "https://ab..co", "https://ab.co \u00E9", "https://ab.co\u00E9",
+                "https://" + "a".repeat(256) + ".com", "https://" + "a".repeat(257) + ".com",
+                "https://www." + "a".repeat(256) + ".com", "https://www." + "a".repeat(257) + ".com",
+                "https://" + "a".repeat(255) + ".com.com", "https://" + "a.".repeat(200) + "!"));
+        inputs.add("https://www." + "a".repeat(253) + ".com");
+
+        for (String input : inputs)
+            assertThat(UrlScanner.matches(input)).as(input).isEqualTo(URL_PATTERN.matcher(input).matches());
+    }
+
+    @Test
+    void test_scanner_agrees_with_regex_on_random_inputs() {
+        // given ----------------------------------------------------------------------------------
+        Random random = new Random(42);
+        int accepted = 0;
+
+        for (int i = 0; i < 100_000; i++) {
+            // when ----------------------------------------------------------------------------------
+            String input = randomUrl(random);
+            boolean expected = URL_PATTERN.matcher(input).matches();
+
+            // then ----------------------------------------------------------------------------------
+            assertThat(UrlScanner.matches(input)).as(input).isEqualTo(expected);
+            if (expected) accepted++;
+        }
+        assertThat(accepted).isGreaterThan(1_000);
+    }
+
+    @Test
+    void test_validator_caps_url_length() {
+        // given ----------------------------------------------------------------------------------
+        try (ValidatorFactory factory = Validation.buildDefaultValidatorFactory()) {
+            var validator = factory.getValidator();
+            String url = "https://stackoverflow.com/";
+
+            // when ----------------------------------------------------------------------------------
+            var atLimit = validator.validate(UrlCreateParam.builder()
+                    .originalUrl(url + "a".repeat(2048 - url.length()))
+                    .build());
+            var overLimit = validator.validate(UrlCreateParam.builder()
+                    .originalUrl(url + "a".repeat(2049 - url.length()))
+                    .build());
+
+            // then ----------------------------------------------------------------------------------
+            assertThat(atLimit).isEmpty();
+            assertThat(overLimit).hasSize(1);
+            assertThat(overLimit.iterator().next().getPropertyPath().toString()).isEqualTo("originalUrl");
+        }
+    }
+
+    private static String randomUrl(Random random) {
+        StringBuilder builder = new StringBuilder(random.nextBoolean() ? "https://" : "http://");
+        int fragments = random.nextInt(12);
+        for (int i = 0; i < fragments; i++) builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        if (random.nextInt(100) == 0) builder.append("a".repeat(250 + random.nextInt(10)));
+        if (random.nextInt(3) == 0) builder.append('.').append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        return builder.toString();
+    }
+}